@@ -0,0 +1,56 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces a window of random changes (all DiffTypes) spread over a fixed set of items and drains the net changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharePointChangeCoalescerBenchmark {
+
+    @Param({"1000000"})
+    private int changes;
+
+    @Param({"50000"})
+    private int items;
+
+    private String[] ids;
+    private int[] itemOfChange;
+    private DiffType[] typeOfChange;
+
+    @Setup
+    public void setup() {
+        DiffType[] types = DiffType.values();
+        Random random = new Random(7);
+        ids = new String[items];
+        for (int i = 0; i < items; i++) {
+            ids[i] = "LIST/" + i;
+        }
+        itemOfChange = new int[changes];
+        typeOfChange = new DiffType[changes];
+        for (int i = 0; i < changes; i++) {
+            itemOfChange[i] = random.nextInt(items);
+            typeOfChange[i] = types[random.nextInt(types.length)];
+        }
+    }
+
+    @Benchmark
+    public List<MediaChangeLogDto> coalesceAndDrain() {
+        SharePointChangeCoalescer<Integer> coalescer = new SharePointChangeCoalescer<>();
+        for (int i = 0; i < changes; i++) {
+            coalescer.add(ids[itemOfChange[i]], typeOfChange[i], i);
+        }
+        return coalescer.drain(String::valueOf);
+    }
+}
@@ -0,0 +1,220 @@
+package com.microsoft.sharepoint;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates synthetic SharePoint REST responses (Atom feeds and JSON change tokens) for the benchmarks.
+ * Generation is deterministic for a given entry count so runs are comparable.
+ */
+final class SharePointFixtures {
+
+    static final String SITE = "/sites/bench";
+    static final String LIBRARY = "Shared Documents";
+
+    private static final String FEED_START = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+            "<feed xml:base=\"https://sp.bench.com/sites/bench/_api/\" xmlns=\"http://www.w3.org/2005/Atom\" " +
+            "xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\" " +
+            "xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\">";
+    private static final String FEED_END = "</feed>";
+
+    private SharePointFixtures() {
+    }
+
+    static byte[] listItemsFeed(int entries) {
+        Random random = new Random(entries);
+        StringBuilder sb = new StringBuilder(entries * 1200).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            boolean folder = i % 10 == 0;
+            sb.append("<entry><id>Web/Lists(guid'").append(listGuid(entries)).append("')/Items(").append(i).append(")</id>")
+                    .append("<link rel=\"edit\" href=\"Web/Lists/Items(").append(i).append(")\" />")
+                    .append("<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/Author\" type=\"application/atom+xml;type=entry\" title=\"Author\">")
+                    .append("<m:inline><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:LoginName>i:0#.w|bench\\user").append(i % 50).append("</d:LoginName>")
+                    .append("</m:properties></content></entry></m:inline></link>")
+                    .append("<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/FieldValuesAsText\" title=\"FieldValuesAsText\">")
+                    .append("<m:inline><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:FileRef>").append(filePath(i, folder)).append("</d:FileRef>")
+                    .append("</m:properties></content></entry></m:inline></link>");
+            if (!folder) {
+                sb.append("<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/File\" title=\"File\">")
+                        .append("<m:inline><entry><content type=\"application/xml\"><m:properties>")
+                        .append("<d:Length m:type=\"Edm.Int64\">").append(random.nextInt(10_000_000)).append("</d:Length>")
+                        .append("</m:properties></content></entry></m:inline></link>");
+            }
+            sb.append("<content type=\"application/xml\"><m:properties>")
+                    .append("<d:FileSystemObjectType m:type=\"Edm.Int32\">").append(folder ? 1 : 0).append("</d:FileSystemObjectType>")
+                    .append("<d:Id m:type=\"Edm.Int32\">").append(i).append("</d:Id>")
+                    .append("<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">").append(i % 97 == 0).append("</d:HasUniqueRoleAssignments>")
+                    .append("<d:Authorid m:type=\"Edm.Int32\">").append(i % 50).append("</d:Authorid>")
+                    .append("<d:Modified m:type=\"Edm.DateTime\">").append(timestamp(random, true)).append("</d:Modified>")
+                    .append("<d:Created m:type=\"Edm.DateTime\">").append(timestamp(random, true)).append("</d:Created>")
+                    .append("</m:properties></content></entry>");
+        }
+        sb.append("<link rel=\"next\" href=\"https://sp.bench.com/sites/bench/_api/Web/Lists(guid'")
+                .append(listGuid(entries)).append("')/Items?%24skiptoken=Paged%3dTRUE%26p_ID%3d").append(entries).append("\" />");
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The same items as {@link #listItemsFeed} as returned for {@link SharePointListItemProjection#METADATA}: no
+     * Author/FieldValuesAsText expansions, no author and creation fields.
+     */
+    static byte[] projectedListItemsFeed(int entries) {
+        Random random = new Random(entries);
+        StringBuilder sb = new StringBuilder(entries * 600).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            boolean folder = i % 10 == 0;
+            sb.append("<entry><id>Web/Lists(guid'").append(listGuid(entries)).append("')/Items(").append(i).append(")</id>");
+            if (!folder) {
+                sb.append("<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/File\" title=\"File\">")
+                        .append("<m:inline><entry><content type=\"application/xml\"><m:properties>")
+                        .append("<d:Length m:type=\"Edm.Int64\">").append(random.nextInt(10_000_000)).append("</d:Length>")
+                        .append("</m:properties></content></entry></m:inline></link>");
+            }
+            sb.append("<content type=\"application/xml\"><m:properties>")
+                    .append("<d:Id m:type=\"Edm.Int32\">").append(i).append("</d:Id>")
+                    .append("<d:FileRef>").append(filePath(i, folder)).append("</d:FileRef>")
+                    .append("<d:FileSystemObjectType m:type=\"Edm.Int32\">").append(folder ? 1 : 0).append("</d:FileSystemObjectType>")
+                    .append("<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">").append(i % 97 == 0).append("</d:HasUniqueRoleAssignments>")
+                    .append("<d:Modified m:type=\"Edm.DateTime\">").append(timestamp(random, true)).append("</d:Modified>")
+                    .append("</m:properties></content></entry>");
+        }
+        sb.append("<link rel=\"next\" href=\"https://sp.bench.com/sites/bench/_api/Web/Lists(guid'")
+                .append(listGuid(entries)).append("')/Items?%24skiptoken=Paged%3dTRUE%26p_ID%3d").append(entries).append("\" />");
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] foldersFeed(int entries) {
+        StringBuilder sb = new StringBuilder(entries * 600).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            sb.append("<entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:ItemCount m:type=\"Edm.Int32\">").append(i % 40).append("</d:ItemCount>")
+                    .append("<d:Name>Folder ").append(i).append("</d:Name>")
+                    .append("<d:ServerRelativeUrl>").append(SITE).append('/').append(LIBRARY).append("/Folder ").append(i).append("</d:ServerRelativeUrl>")
+                    .append("</m:properties></content>")
+                    .append("<link title=\"Properties\"><m:inline><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:vti_x005f_folderItemcount m:type=\"Edm.Int32\">").append(i % 40).append("</d:vti_x005f_folderItemcount>")
+                    .append("<d:vti_x005f_listtitle>Shared_x0020_Documents</d:vti_x005f_listtitle>")
+                    .append("</m:properties></content></entry></m:inline></link>")
+                    .append("</entry>");
+        }
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] roleAssignmentsFeed(int entries) {
+        StringBuilder sb = new StringBuilder(entries * 700).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            sb.append("<entry>")
+                    .append("<link title=\"Member\"><m:inline><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:LoginName>i:0#.w|bench\\user").append(i).append("</d:LoginName>")
+                    .append("</m:properties></content></entry></m:inline></link>")
+                    .append("<link title=\"RoleDefinitionBindings\"><m:inline><feed><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:RoleTypeKind m:type=\"Edm.Int32\">").append(i % 6).append("</d:RoleTypeKind>")
+                    .append("</m:properties></content></entry></feed></m:inline></link>")
+                    .append("<content type=\"application/xml\"><m:properties><d:PrincipalId m:type=\"Edm.Int32\">").append(i)
+                    .append("</d:PrincipalId></m:properties></content></entry>");
+        }
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] fileItemsFeed(int entries) {
+        Random random = new Random(entries);
+        StringBuilder sb = new StringBuilder(entries * 900).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            sb.append("<entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:ID m:type=\"Edm.Int32\">").append(i).append("</d:ID>")
+                    .append("<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">").append(i % 97 == 0).append("</d:HasUniqueRoleAssignments>")
+                    .append("</m:properties></content>")
+                    .append("<link title=\"FieldValuesAsText\"><m:inline><entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:FileRef>").append(filePath(i, false)).append("</d:FileRef>")
+                    .append("<d:vti_x005f_filesize>").append(random.nextInt(10_000_000)).append("</d:vti_x005f_filesize>")
+                    .append("<d:vti_x005f_author>i:0#.w|bench\\user").append(i % 50).append("</d:vti_x005f_author>")
+                    .append("<d:vti_x005f_timecreated>").append(timestamp(random, false)).append("</d:vti_x005f_timecreated>")
+                    .append("<d:vti_x005f_timelastmodified>").append(timestamp(random, false)).append("</d:vti_x005f_timelastmodified>")
+                    .append("</m:properties></content></entry></m:inline></link>")
+                    .append("</entry>");
+        }
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] changeLogFeed(int entries) {
+        String listId = listGuid(entries);
+        StringBuilder sb = new StringBuilder(entries * 500).append(FEED_START);
+        for (int i = 1; i <= entries; i++) {
+            sb.append("<entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:ChangeToken m:type=\"SP.ChangeToken\"><d:StringValue>1;3;").append(listId).append(";636123456789000000;")
+                    .append(100_000 + i).append("</d:StringValue></d:ChangeToken>")
+                    .append("<d:ChangeType m:type=\"Edm.Int32\">").append(1 + i % 7).append("</d:ChangeType>")
+                    .append("<d:ItemId m:type=\"Edm.Int32\">").append(i).append("</d:ItemId>")
+                    .append("<d:ListId m:type=\"Edm.Guid\">").append(listId).append("</d:ListId>")
+                    .append("</m:properties></content></entry>");
+        }
+        return sb.append(FEED_END).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String[] changeTokensJson(int entries) {
+        String listId = listGuid(entries);
+        String[] tokens = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            tokens[i] = "{\"scope\":\"LIST\",\"version\":1,\"scopeId\":\"" + listId + "\",\"date\":" + (1476000000000L + i * 1000L)
+                    + ",\"changeNumber\":" + (100_000 + i) + "}";
+        }
+        return tokens;
+    }
+
+    static String[] mediaItemIds(int entries) {
+        String listId = listGuid(entries).toUpperCase();
+        String[] ids = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            ids[i] = listId + SharePointParseUtils.LIST_ITEM_ID_SEPARATOR + (i + 1)
+                    + (i % 3 == 0 ? SharePointParseUtils.SITE_DELIMITER + "SUB" + i % 7 : "")
+                    + (i % 5 == 0 ? SharePointParseUtils.BASE_PATH_COMPLETION_DELIMITER + "base/path" : "");
+        }
+        return ids;
+    }
+
+    static String[] sitePaths(int entries) {
+        String[] paths = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            paths[i] = "https://sp.bench.com" + SITE + "/{sub" + i % 7 + "}/{inner}//" + LIBRARY + "/folder-" + i % 31 + "/file-" + i + ".docx/";
+        }
+        return paths;
+    }
+
+    /**
+     * Item paths of a deep, narrow library in creation (ID) order: chains of nested folders, each folder holding a
+     * few files and the next folder of its chain. Folder paths have no extension.
+     */
+    static String[] deepNarrowTree(int chains, int depth, int filesPerFolder) {
+        String[] paths = new String[chains * depth * (1 + filesPerFolder)];
+        String[] chainPaths = new String[chains];
+        int i = 0;
+        for (int level = 0; level < depth; level++) {
+            for (int chain = 0; chain < chains; chain++) {
+                String folder = level == 0 ? SITE + "/" + LIBRARY + "/chain-" + chain : chainPaths[chain] + "/level-" + level;
+                chainPaths[chain] = folder;
+                paths[i++] = folder;
+                for (int file = 0; file < filesPerFolder; file++) {
+                    paths[i++] = folder + "/file-" + file + ".docx";
+                }
+            }
+        }
+        return paths;
+    }
+
+    static String filePath(int i, boolean folder) {
+        String path = SITE + "/" + LIBRARY + "/level-" + i % 13 + "/level-" + i % 7;
+        return folder ? path + "/folder-" + i : path + "/file-" + i + ".docx";
+    }
+
+    private static String listGuid(int seed) {
+        return new UUID(seed * 0x9E3779B97F4A7C15L, ~seed * 0xC2B2AE3D27D4EB4FL).toString();
+    }
+
+    private static String timestamp(Random random, boolean endsWithZ) {
+        return String.format("%04d-%02d-%02dT%02d:%02d:%02d%s", 2010 + random.nextInt(10), 1 + random.nextInt(12),
+                1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60), endsWithZ ? "Z" : "");
+    }
+}
@@ -0,0 +1,102 @@
+package com.microsoft.sharepoint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion throughput of a parsed list items page: the former String-field item model (ids and timestamps parsed
+ * again at conversion time) vs. primitive item objects vs. the columnar page read through a reused item.
+ * See {@link SharePointListItemFootprint} for the heap side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SharePointListItemBenchmark {
+
+    @Param({"5000", "50000"})
+    public int entries;
+
+    private List<StringFieldItem> stringFieldItems;
+    private List<SharePointListItem> items;
+    private SharePointListItemColumns columns;
+
+    @Setup
+    public void setup() throws Exception {
+        SharePointListItemPage page = SharePointParseUtils.parseSharePointListItems(
+                new ByteArrayInputStream(SharePointFixtures.listItemsFeed(entries)));
+        columns = page.getColumns();
+        items = columns.toItems();
+        stringFieldItems = new ArrayList<>(items.size());
+        for (SharePointListItem item : items) {
+            stringFieldItems.add(new StringFieldItem(item));
+        }
+    }
+
+    @Benchmark
+    public long stringFieldItems() {
+        long result = 0;
+        for (StringFieldItem item : stringFieldItems) {
+            result += Integer.parseInt(item.id) + Integer.parseInt(item.authorId)
+                    + SharePointParseUtils.getTimeInMillis(item.modified, true)
+                    + SharePointParseUtils.getTimeInMillis(item.created, true)
+                    + (item.size == null ? 0 : item.size)
+                    + ("1".equals(item.fileSystemObjectType) ? 1 : 0)
+                    + item.fileRef.length();
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long primitiveItems() {
+        long result = 0;
+        for (SharePointListItem item : items) {
+            result += accumulate(item);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long columnarFlyweight() {
+        long result = 0;
+        SharePointListItem item = new SharePointListItem();
+        for (int row = 0; row < columns.size(); row++) {
+            result += accumulate(columns.read(row, item));
+        }
+        return result;
+    }
+
+    private static long accumulate(SharePointListItem item) {
+        return item.getIdAsInt() + item.getAuthorIdAsInt() + item.getModifiedTime() + item.getCreatedTime()
+                + Math.max(item.getSizeValue(), 0) + (item.isFolder() ? 1 : 0) + item.getFileRef().length();
+    }
+
+    /**
+     * The item layout before ids, timestamps and size became primitives.
+     */
+    static final class StringFieldItem {
+        final String fileRef;
+        final String id;
+        final String authorId;
+        final String modified;
+        final String created;
+        final Long size;
+        final String fileSystemObjectType;
+
+        StringFieldItem(SharePointListItem item) {
+            fileRef = item.getFileRef();
+            id = item.getId();
+            authorId = item.getAuthorId();
+            modified = item.getModified();
+            created = item.getCreated();
+            size = item.getSize();
+            fileSystemObjectType = item.isFolder() ? "1" : "0";
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.microsoft.sharepoint;
+
+/**
+ * Response bytes of a list item page with the client's default fields and with the
+ * {@link SharePointListItemProjection#METADATA} projection, for the page sizes {@link SharePointParseUtilsBenchmark}
+ * parses.
+ * <p>
+ * Not a JMH benchmark - the generated feeds are measured directly.
+ */
+public class SharePointListItemFeedSizes {
+
+    private static final int[] ENTRIES = {100, 5000, 50000};
+
+    public static void main(String[] args) {
+        for (int entries : ENTRIES) {
+            int full = SharePointFixtures.listItemsFeed(entries).length;
+            int projected = SharePointFixtures.projectedListItemsFeed(entries).length;
+            System.out.printf("%,7d list items: %,12d bytes, %,12d bytes projected (%d%%)%n",
+                    entries, full, projected, projected * 100L / full);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.microsoft.sharepoint;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained heap per list item for the former String-field item objects, primitive item objects and the columnar page.
+ * File refs are shared between the three forms so only the per-item fields are compared.
+ * <p>
+ * Not a JMH benchmark - retained size is measured directly (used heap after GC). Run with a fixed heap, e.g.
+ * {@code -Xms2g -Xmx2g}, for stable numbers.
+ */
+public class SharePointListItemFootprint {
+
+    private static final int ITEMS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        SharePointListItemColumns parsed = SharePointParseUtils.parseSharePointListItems(
+                new ByteArrayInputStream(SharePointFixtures.listItemsFeed(ITEMS))).getColumns();
+        List<SharePointListItem> source = parsed.toItems();
+        parsed = null;
+
+        long baseline = usedHeap();
+        List<SharePointListItemBenchmark.StringFieldItem> stringFieldItems = new ArrayList<>(ITEMS);
+        for (SharePointListItem item : source) {
+            stringFieldItems.add(new SharePointListItemBenchmark.StringFieldItem(item));
+        }
+        report("String fields", usedHeap() - baseline);
+        stringFieldItems = null;
+
+        baseline = usedHeap();
+        List<SharePointListItem> items = new ArrayList<>(ITEMS);
+        SharePointListItem flyweight = new SharePointListItem();
+        SharePointListItemColumns columns = new SharePointListItemColumns(ITEMS);
+        for (SharePointListItem item : source) {
+            columns.add(item);
+        }
+        long columnsHeap = usedHeap() - baseline;
+        for (int row = 0; row < columns.size(); row++) {
+            items.add(columns.read(row, new SharePointListItem()));
+        }
+        report("Primitive fields", usedHeap() - baseline - columnsHeap);
+        report("Columnar page", columnsHeap);
+        System.out.println("(check: " + columns.read(ITEMS - 1, flyweight) + ", " + items.size() + ")");
+    }
+
+    private static void report(String label, long bytes) {
+        System.out.printf("%-40s %,d bytes total, %,d bytes/item%n", label, bytes, bytes / ITEMS);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
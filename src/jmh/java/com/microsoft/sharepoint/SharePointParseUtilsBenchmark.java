@@ -0,0 +1,126 @@
+package com.microsoft.sharepoint;
+
+import com.file.ClaFilePropertiesDto;
+import com.media.MediaChangeLogDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link SharePointParseUtils} response parsers on generated feeds of 100, 5,000 and 50,000 entries.
+ * <p>
+ * Run through {@link #main} to get ops/s together with the GC profiler's {@code gc.alloc.rate.norm}
+ * (bytes allocated per op).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SharePointParseUtilsBenchmark {
+
+    @Param({"100", "5000", "50000"})
+    public int entries;
+
+    private byte[] listItemsFeed;
+    private byte[] projectedListItemsFeed;
+    private byte[] foldersFeed;
+    private byte[] roleAssignmentsFeed;
+    private byte[] fileItemsFeed;
+    private byte[] changeLogFeed;
+    private String[] changeTokensJson;
+    private String[] changeTokensCompact;
+    private SharePointChangeTokenDto[] changeTokenDtos;
+
+    @Setup
+    public void setup() {
+        listItemsFeed = SharePointFixtures.listItemsFeed(entries);
+        projectedListItemsFeed = SharePointFixtures.projectedListItemsFeed(entries);
+        foldersFeed = SharePointFixtures.foldersFeed(entries);
+        roleAssignmentsFeed = SharePointFixtures.roleAssignmentsFeed(entries);
+        fileItemsFeed = SharePointFixtures.fileItemsFeed(entries);
+        changeLogFeed = SharePointFixtures.changeLogFeed(entries);
+        changeTokensJson = SharePointFixtures.changeTokensJson(entries);
+        changeTokensCompact = new String[entries];
+        changeTokenDtos = new SharePointChangeTokenDto[entries];
+        for (int i = 0; i < entries; i++) {
+            changeTokenDtos[i] = SharePointChangeTokenCodec.decode(changeTokensJson[i]);
+            changeTokensCompact[i] = SharePointChangeTokenCodec.encode(changeTokenDtos[i]);
+        }
+    }
+
+    @Benchmark
+    public SharePointListItemPage parseSharePointListItems() throws Exception {
+        return SharePointParseUtils.parseSharePointListItems(new ByteArrayInputStream(listItemsFeed));
+    }
+
+    @Benchmark
+    public SharePointListItemPage parseProjectedListItems() throws Exception {
+        return SharePointParseUtils.parseSharePointListItems(new ByteArrayInputStream(projectedListItemsFeed), null,
+                SharePointListItemProjection.METADATA);
+    }
+
+    @Benchmark
+    public List<SharePointExtendedFolder> parseFolders() throws Exception {
+        return SharePointParseUtils.parseFolders(new ByteArrayInputStream(foldersFeed));
+    }
+
+    @Benchmark
+    public List<SharePointRoleAssignment> parseRoleAssignments() throws Exception {
+        return SharePointParseUtils.parseRoleAssignments(new ByteArrayInputStream(roleAssignmentsFeed));
+    }
+
+    @Benchmark
+    public List<ClaFilePropertiesDto> convertFileItemListToFileList() throws Exception {
+        return SharePointParseUtils.convertFileItemListToFileList(new ByteArrayInputStream(fileItemsFeed));
+    }
+
+    @Benchmark
+    public List<MediaChangeLogDto> convertToMediaChangeLog() throws Exception {
+        return SharePointParseUtils.convertToMediaChangeLog(new ByteArrayInputStream(changeLogFeed));
+    }
+
+    @Benchmark
+    public long convertToSharePointChangeToken() {
+        long sum = 0;
+        for (String token : changeTokensJson) {
+            sum += SharePointParseUtils.convertToSharePointChangeToken(token).getChangeNumber();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long decodeCompactChangeToken() {
+        long sum = 0;
+        for (String token : changeTokensCompact) {
+            sum += SharePointParseUtils.convertToSharePointChangeToken(token).getChangeNumber();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long encodeChangeToken() {
+        long sum = 0;
+        for (SharePointChangeTokenDto token : changeTokenDtos) {
+            sum += SharePointParseUtils.convertSharePointChangeTokenDtoToString(token).length();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SharePointParseUtilsBenchmark.class.getSimpleName())
+                .include(SharePointPathAndIdBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
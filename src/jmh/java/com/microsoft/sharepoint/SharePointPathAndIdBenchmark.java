@@ -0,0 +1,81 @@
+package com.microsoft.sharepoint;
+
+import com.microsoft.MSItemKey;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the path and media item id helpers of {@link SharePointParseUtils}. Each op processes 1,024 inputs.
+ * See {@link SharePointParseUtilsBenchmark#main} for running with allocation figures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharePointPathAndIdBenchmark {
+
+    private static final int INPUTS = 1024;
+
+    private String[] mediaItemIds;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        mediaItemIds = SharePointFixtures.mediaItemIds(INPUTS);
+        paths = SharePointFixtures.sitePaths(INPUTS);
+    }
+
+    @Benchmark
+    public void splitMediaItemIdAndSite(Blackhole blackhole) {
+        for (String id : mediaItemIds) {
+            MSItemKey key = SharePointParseUtils.splitMediaItemIdAndSite(id);
+            blackhole.consume(key);
+        }
+    }
+
+    @Benchmark
+    public void calculateMediaItemId(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(SharePointParseUtils.calculateMediaItemId("sub" + (i & 7), mediaItemIds[i]));
+        }
+    }
+
+    @Benchmark
+    public void applyBasePathCompletionToMediaItemId(Blackhole blackhole) {
+        for (String id : mediaItemIds) {
+            blackhole.consume(SharePointParseUtils.applyBasePathCompletionToMediaItemId("/Base/Path", id));
+        }
+    }
+
+    @Benchmark
+    public void normalizePath(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(SharePointParseUtils.normalizePath(path));
+        }
+    }
+
+    @Benchmark
+    public void splitPathAndSubsite(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(SharePointParseUtils.splitPathAndSubsite(path));
+        }
+    }
+
+    @Benchmark
+    public void applySiteMark(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(SharePointParseUtils.applySiteMark(paths[i], "sub" + i % 7 + "/inner"));
+        }
+    }
+
+    @Benchmark
+    public void parseInternalName(Blackhole blackhole) {
+        for (int i = 0; i < INPUTS; i++) {
+            blackhole.consume(SharePointParseUtils.parseInternalName((i & 1) == 0 ? "Shared_x0020_Documents" : "Documents"));
+        }
+    }
+}
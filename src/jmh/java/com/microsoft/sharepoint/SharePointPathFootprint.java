@@ -0,0 +1,53 @@
+package com.microsoft.sharepoint;
+
+/**
+ * Retained heap of 1M file refs of a synthetic library, kept as full Strings vs. interned {@link SharePointPath} nodes.
+ * <p>
+ * Not a JMH benchmark - retained size is measured directly (used heap after GC). Run with a fixed heap, e.g.
+ * {@code -Xms2g -Xmx2g}, for stable numbers.
+ */
+public class SharePointPathFootprint {
+
+    private static final int ITEMS = 1_000_000;
+    private static final String PREFIX = "https://sharepoint.bench.com/sites/bench/Shared Documents";
+
+    public static void main(String[] args) {
+        long baseline = usedHeap();
+        String[] strings = new String[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            strings[i] = path(i);
+        }
+        long stringsHeap = usedHeap() - baseline;
+        report("String", stringsHeap);
+        strings = null;
+
+        baseline = usedHeap();
+        SharePointPathTable table = new SharePointPathTable();
+        SharePointPath[] paths = new SharePointPath[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            paths[i] = table.intern(path(i));
+        }
+        long pathsHeap = usedHeap() - baseline;
+        report("SharePointPath (" + table.size() + " folder nodes)", pathsHeap);
+
+        System.out.printf("Saved %.1f%% (check: %s)%n", 100.0 * (stringsHeap - pathsHeap) / stringsHeap, paths[ITEMS - 1]);
+    }
+
+    // 10 top level folders x 20 x 50 leaf folders x 100 files
+    private static String path(int i) {
+        return PREFIX + "/Department " + (i / 100_000) + "/Project " + (i / 5_000 % 20) + "/Folder " + (i / 100 % 50)
+                + "/Document-" + i + ".docx";
+    }
+
+    private static void report(String label, long bytes) {
+        System.out.printf("%-40s %,d bytes total, %,d bytes/item%n", label, bytes, bytes / ITEMS);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,60 @@
+package com.microsoft.sharepoint;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SharePointTimestampParser} with the {@code DateTimeFormatter} path
+ * {@link SharePointParseUtils#getTimeInMillis} used before (a formatter built per call).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharePointTimestampParserBenchmark {
+
+    private static final DateTimeFormatter CACHED_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    private String[] timestamps;
+    private int index;
+
+    @Setup
+    public void setup() {
+        timestamps = new String[1024];
+        LocalDateTime time = LocalDateTime.of(2012, 1, 1, 0, 0);
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = time.plusSeconds(i * 987_654L).format(CACHED_FORMATTER);
+        }
+    }
+
+    private String next() {
+        return timestamps[index++ & (timestamps.length - 1)];
+    }
+
+    @Benchmark
+    public long fixedFormatParser() {
+        return SharePointTimestampParser.parseEpochMillis(next(), true);
+    }
+
+    @Benchmark
+    public long formatterPerCall() {
+        return LocalDateTime.parse(next(), DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'"))
+                .atOffset(ZoneOffset.UTC)
+                .toInstant()
+                .toEpochMilli();
+    }
+
+    @Benchmark
+    public long cachedFormatter() {
+        return LocalDateTime.parse(next(), CACHED_FORMATTER)
+                .atOffset(ZoneOffset.UTC)
+                .toInstant()
+                .toEpochMilli();
+    }
+}
@@ -0,0 +1,90 @@
+package com.microsoft.sharepoint;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folder recursive vs list recursive traversal ({@link SharePointTraversalMode}) of a deep, narrow library - 200
+ * chains of 50 nested folders with 3 files each (10,000 folders, 40,000 items). Each request to the server costs
+ * {@code requestCost} tokens of {@link Blackhole#consumeCPU}, standing in for the round trip; with 0 only the
+ * client side work is measured, e.g. rebuilding the folders from the item paths.
+ * <p>
+ * Folder recursive makes one request per folder (10,001 with the root), list recursive one per page of 5,000
+ * items (8).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharePointTraversalBenchmark {
+
+    private static final int PAGE_SIZE = 5000;
+
+    @Param({"0", "20000"})
+    public int requestCost;
+
+    private String root;
+    private String[] paths;
+    private boolean[] folders;
+    // folder path -> indexes of its items, what a folder listing request returns
+    private Map<String, List<Integer>> children;
+
+    @Setup
+    public void setup() {
+        root = SharePointFixtures.SITE + "/" + SharePointFixtures.LIBRARY;
+        paths = SharePointFixtures.deepNarrowTree(200, 50, 3);
+        folders = new boolean[paths.length];
+        children = new HashMap<>();
+        for (int i = 0; i < paths.length; i++) {
+            folders[i] = !paths[i].endsWith(".docx");
+            children.computeIfAbsent(paths[i].substring(0, paths[i].lastIndexOf('/')), parent -> new ArrayList<>()).add(i);
+        }
+    }
+
+    @Benchmark
+    public int folderRecursive(Blackhole blackhole) {
+        int requests = 0;
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            String folder = pending.pop();
+            Blackhole.consumeCPU(requestCost);
+            requests++;
+            for (int index : children.getOrDefault(folder, Collections.emptyList())) {
+                blackhole.consume(paths[index]);
+                if (folders[index]) {
+                    pending.push(paths[index]);
+                }
+            }
+        }
+        return requests;
+    }
+
+    @Benchmark
+    public int listRecursive(Blackhole blackhole) {
+        int requests = 0;
+        SharePointFolderTree tree = new SharePointFolderTree(root);
+        for (int offset = 0; offset < paths.length; offset += PAGE_SIZE) {
+            Blackhole.consumeCPU(requestCost);
+            requests++;
+            int end = Math.min(paths.length, offset + PAGE_SIZE);
+            for (int i = offset; i < end; i++) {
+                blackhole.consume(paths[i]);
+                tree.add(paths[i], folders[i]);
+            }
+        }
+        tree.forEach(blackhole::consume);
+        return requests;
+    }
+}
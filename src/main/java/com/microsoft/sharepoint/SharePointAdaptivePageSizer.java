@@ -0,0 +1,358 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the {@code $top} of list item pages per list from what the previous pages of that list cost.
+ * <p>
+ * A page that came back well within the target latency and the byte budget lets the next one grow by a quarter,
+ * but never beyond what the observed per item latency and size project to fit the targets. A slow or large page
+ * shrinks the next one in proportion to the overshoot (at most by half). A throttled request (429/503) halves the
+ * size and holds growth for a few pages, and the list's next request waits for the Retry-After delay the server asked
+ * for ({@link #getRetryDelayMillis}); the throttled page itself is requested again at the smaller size, up to
+ * {@link #getMaxThrottledRetries} times. Sizes always stay between the configured min and max.
+ * <p>
+ * The current size, pages, items, throttles and items/sec of each list are available through {@link #getStats}.
+ */
+public class SharePointAdaptivePageSizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointAdaptivePageSizer.class);
+
+    private static final Pattern TOP_PARAM = Pattern.compile("(\\$|%24)top=\\d+");
+
+    private static final double GROWTH = 1.25;
+
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final int initialPageSize;
+    private final long targetLatencyMillis;
+    private final long maxPageBytes;
+    private final int throttleHoldPages;
+    private final long maxRetryAfterMillis;
+    private final int maxThrottledRetries;
+
+    private final Map<String, ListState> lists = Maps.newConcurrentMap();
+
+    private SharePointAdaptivePageSizer(Builder builder) {
+        this.minPageSize = builder.minPageSize;
+        this.maxPageSize = builder.maxPageSize;
+        this.initialPageSize = Math.max(minPageSize, Math.min(maxPageSize, builder.initialPageSize));
+        this.targetLatencyMillis = builder.targetLatencyMillis;
+        this.maxPageBytes = builder.maxPageBytes;
+        this.throttleHoldPages = builder.throttleHoldPages;
+        this.maxRetryAfterMillis = builder.maxRetryAfterMillis;
+        this.maxThrottledRetries = builder.maxThrottledRetries;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the {@code $top} for the next page of the list
+     */
+    public int getPageSize(String listId) {
+        ListState state = lists.get(listId);
+        return state == null ? initialPageSize : state.pageSize;
+    }
+
+    /**
+     * Records a page the list returned and picks the size of its next page.
+     *
+     * @param requested the {@code $top} the page was requested with
+     * @param bytes     response size, negative when unknown
+     */
+    public void onPage(String listId, int requested, int items, long bytes, long durationMillis) {
+        ListState state = getState(listId);
+        synchronized (state) {
+            state.pages++;
+            state.items += items;
+            state.millis += durationMillis;
+            if (bytes >= 0) {
+                state.bytes += bytes;
+            }
+
+            double factor = (double) targetLatencyMillis / Math.max(1, durationMillis);
+            if (bytes > 0) {
+                factor = Math.min(factor, (double) maxPageBytes / bytes);
+            }
+            int next = state.pageSize;
+            if (factor < 1) {
+                next = (int) (requested * Math.max(0.5, factor));
+            } else if (state.holdPages > 0) {
+                state.holdPages--;
+            } else if (items >= requested && factor >= 2) {
+                // a full page well within both targets - grow, but not beyond what the per item cost projects to fit
+                next = (int) Math.min(requested * GROWTH, requested * factor);
+            }
+            setPageSize(listId, state, next);
+        }
+    }
+
+    /**
+     * Records a throttled (429/503) request of the list.
+     */
+    public void onThrottled(String listId) {
+        onThrottled(listId, -1);
+    }
+
+    /**
+     * Records a throttled request of the list that asked to retry after the given delay.
+     *
+     * @param retryAfterMillis the Retry-After delay, negative when the server sent none
+     */
+    public void onThrottled(String listId, long retryAfterMillis) {
+        ListState state = getState(listId);
+        synchronized (state) {
+            state.throttles++;
+            state.holdPages = throttleHoldPages;
+            if (retryAfterMillis >= 0) {
+                state.retryAt = Math.max(state.retryAt, System.currentTimeMillis() + Math.min(retryAfterMillis, maxRetryAfterMillis));
+            }
+            setPageSize(listId, state, state.pageSize / 2);
+        }
+    }
+
+    /**
+     * Records a failed request; throttling failures shrink the list's page size and delay its next request.
+     *
+     * @return true if the failure was throttling
+     */
+    public boolean onFailure(String listId, Throwable t) {
+        SharePointHttpStatusException throttling = getThrottling(t);
+        if (throttling != null) {
+            onThrottled(listId, throttling.getRetryAfterMillis());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return how long the list's next request should wait for the Retry-After of a throttled one, 0 for not at all
+     */
+    public long getRetryDelayMillis(String listId) {
+        ListState state = lists.get(listId);
+        return state == null ? 0 : Math.max(0, state.retryAt - System.currentTimeMillis());
+    }
+
+    /**
+     * @return how many times a throttled page is requested again before its listing fails
+     */
+    public int getMaxThrottledRetries() {
+        return maxThrottledRetries;
+    }
+
+    public PageSizeStats getStats(String listId) {
+        ListState state = lists.get(listId);
+        if (state == null) {
+            return new PageSizeStats(initialPageSize, 0, 0, 0, 0, 0);
+        }
+        synchronized (state) {
+            return new PageSizeStats(state.pageSize, state.pages, state.items, state.bytes, state.millis, state.throttles);
+        }
+    }
+
+    public Map<String, PageSizeStats> getStats() {
+        Map<String, PageSizeStats> stats = Maps.newTreeMap();
+        for (String listId : lists.keySet()) {
+            stats.put(listId, getStats(listId));
+        }
+        return stats;
+    }
+
+    /**
+     * Replaces the {@code $top} of a next page URL, which SharePoint copies from the first request of the list.
+     */
+    public static String withTop(String url, int top) {
+        Matcher matcher = TOP_PARAM.matcher(url);
+        if (!matcher.find()) {
+            return url;
+        }
+        return url.substring(0, matcher.start()) + matcher.group(1) + "top=" + top + url.substring(matcher.end());
+    }
+
+    /**
+     * Throttling is recognized from the status and Retry-After header of transport responses (429/503); failures
+     * of the client's own requests carry neither and are not taken for throttling.
+     */
+    static boolean isThrottling(Throwable t) {
+        return getThrottling(t) != null;
+    }
+
+    private static SharePointHttpStatusException getThrottling(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SharePointHttpStatusException && ((SharePointHttpStatusException) cause).isThrottling()) {
+                return (SharePointHttpStatusException) cause;
+            }
+        }
+        return null;
+    }
+
+    private ListState getState(String listId) {
+        return lists.computeIfAbsent(listId, id -> new ListState(initialPageSize));
+    }
+
+    private void setPageSize(String listId, ListState state, int pageSize) {
+        pageSize = Math.max(minPageSize, Math.min(maxPageSize, pageSize));
+        if (pageSize != state.pageSize) {
+            logger.debug("Page size of list {} changed from {} to {} ({} items/sec so far)", listId, state.pageSize,
+                    pageSize, String.format("%.1f", itemsPerSecond(state.items, state.millis)));
+            state.pageSize = pageSize;
+        }
+    }
+
+    private static double itemsPerSecond(long items, long millis) {
+        return millis == 0 ? 0 : items * 1000.0 / millis;
+    }
+
+    private static class ListState {
+        private volatile int pageSize;
+        private int holdPages;
+        private long retryAt;
+        private long pages;
+        private long items;
+        private long bytes;
+        private long millis;
+        private long throttles;
+
+        private ListState(int pageSize) {
+            this.pageSize = pageSize;
+        }
+    }
+
+    public static class PageSizeStats {
+        private final int pageSize;
+        private final long pages;
+        private final long items;
+        private final long bytes;
+        private final long millis;
+        private final long throttles;
+
+        private PageSizeStats(int pageSize, long pages, long items, long bytes, long millis, long throttles) {
+            this.pageSize = pageSize;
+            this.pages = pages;
+            this.items = items;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.throttles = throttles;
+        }
+
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        public long getPages() {
+            return pages;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getThrottles() {
+            return throttles;
+        }
+
+        public double getItemsPerSecond() {
+            return itemsPerSecond(items, millis);
+        }
+
+        @Override
+        public String toString() {
+            return "PageSizeStats{" +
+                    "pageSize=" + pageSize +
+                    ", pages=" + pages +
+                    ", items=" + items +
+                    ", bytes=" + bytes +
+                    ", millis=" + millis +
+                    ", throttles=" + throttles +
+                    ", itemsPerSecond=" + String.format("%.1f", getItemsPerSecond()) +
+                    '}';
+        }
+    }
+
+    public static class Builder {
+        private int minPageSize = 100;
+        private int maxPageSize = 5000;
+        private int initialPageSize = 500;
+        private long targetLatencyMillis = 2000;
+        private long maxPageBytes = 8 * 1024 * 1024;
+        private int throttleHoldPages = 5;
+        private long maxRetryAfterMillis = TimeUnit.MINUTES.toMillis(2);
+        private int maxThrottledRetries = 3;
+
+        private Builder() {
+        }
+
+        /**
+         * SharePoint serves at most 5000 items per page (the list view threshold).
+         */
+        public Builder withPageSizeRange(int minPageSize, int maxPageSize) {
+            this.minPageSize = minPageSize;
+            this.maxPageSize = maxPageSize;
+            return this;
+        }
+
+        public Builder withInitialPageSize(int initialPageSize) {
+            this.initialPageSize = initialPageSize;
+            return this;
+        }
+
+        public Builder withTargetLatencyMillis(long targetLatencyMillis) {
+            this.targetLatencyMillis = targetLatencyMillis;
+            return this;
+        }
+
+        public Builder withMaxPageBytes(long maxPageBytes) {
+            this.maxPageBytes = maxPageBytes;
+            return this;
+        }
+
+        /**
+         * How many pages after a throttled request keep their size before growing again.
+         */
+        public Builder withThrottleHoldPages(int throttleHoldPages) {
+            this.throttleHoldPages = throttleHoldPages;
+            return this;
+        }
+
+        /**
+         * The longest Retry-After delay honoured; longer ones are cut to it.
+         */
+        public Builder withMaxRetryAfterMillis(long maxRetryAfterMillis) {
+            this.maxRetryAfterMillis = maxRetryAfterMillis;
+            return this;
+        }
+
+        public Builder withMaxThrottledRetries(int maxThrottledRetries) {
+            this.maxThrottledRetries = maxThrottledRetries;
+            return this;
+        }
+
+        public SharePointAdaptivePageSizer build() {
+            if (minPageSize <= 0 || maxPageSize < minPageSize || targetLatencyMillis <= 0 || maxPageBytes <= 0
+                    || throttleHoldPages < 0 || maxRetryAfterMillis < 0 || maxThrottledRetries < 0) {
+                throw new IllegalArgumentException("Illegal page sizer parameters: pageSizes=" + minPageSize + ".." + maxPageSize +
+                        ", targetLatencyMillis=" + targetLatencyMillis + ", maxPageBytes=" + maxPageBytes +
+                        ", throttleHoldPages=" + throttleHoldPages + ", maxRetryAfterMillis=" + maxRetryAfterMillis +
+                        ", maxThrottledRetries=" + maxThrottledRetries);
+            }
+            return new SharePointAdaptivePageSizer(this);
+        }
+    }
+}
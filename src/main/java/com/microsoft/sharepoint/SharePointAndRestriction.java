@@ -0,0 +1,30 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.queryoptions.IFilterRestriction;
+
+/**
+ * Conjunction of filter restrictions, e.g. {@code (startswith(FileRef, '/sites/a')) and (...)}.
+ */
+public class SharePointAndRestriction implements IFilterRestriction {
+
+    private IFilterRestriction[] restrictions;
+
+    public SharePointAndRestriction(IFilterRestriction... restrictions) {
+        if (restrictions == null || restrictions.length == 0) {
+            throw new IllegalArgumentException("restrictions");
+        }
+        this.restrictions = restrictions;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (IFilterRestriction restriction : restrictions) {
+            if (sb.length() > 0) {
+                sb.append(" and ");
+            }
+            sb.append('(').append(restriction).append(')');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,319 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups small independent GET requests into OData {@code $batch} requests and hands each caller its own response.
+ * <p>
+ * Submitted requests are collected until {@code maxBatchSize} are pending or the first of them waited
+ * {@code lingerMillis}, whichever comes first, and are then sent as one multipart request. Callers on many threads
+ * (e.g. a concurrent scan) share batches this way; a caller with many requests at hand should use
+ * {@link #getAll(List)}, which fills whole batches without waiting for the linger time.
+ * <p>
+ * The form digest SharePoint requires on POST requests is read from {@code contextinfo} and cached until shortly
+ * before it expires; it can be turned off for transports that authenticate with bearer tokens.
+ */
+public class SharePointBatchExecutor implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointBatchExecutor.class);
+
+    // SharePoint rejects $batch requests with more than 100 operations
+    public static final int MAX_BATCH_SIZE = 100;
+
+    private static final long DIGEST_EXPIRY_MARGIN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Shared by all executors - connectors are recreated per sub-site, their batch executors must stay cheap
+    private static final ScheduledExecutorService lingerTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("sp-batch-linger-%d").setDaemon(true).build());
+    private static final ExecutorService senders = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("sp-batch-send-%d").setDaemon(true).build());
+
+    private final SharePointHttpTransport transport;
+    private final String apiUrl;
+    private final int maxBatchSize;
+    private final long lingerMillis;
+    private final boolean formDigest;
+    private final String accept;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final Object lock = new Object();
+    private List<PendingRequest> pending = Lists.newArrayList();
+    private ScheduledFuture<?> lingerFlush;
+
+    private volatile String digest;
+    private volatile long digestExpiresAt;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private SharePointBatchExecutor(Builder builder) {
+        this.transport = builder.transport;
+        this.apiUrl = builder.apiUrl.endsWith("/") ? builder.apiUrl : builder.apiUrl + "/";
+        this.maxBatchSize = builder.maxBatchSize;
+        this.lingerMillis = builder.lingerMillis;
+        this.formDigest = builder.formDigest;
+        this.accept = builder.accept;
+    }
+
+    /**
+     * @param apiUrl the REST root of the site, e.g. {@code https://host/sites/test/_api/}
+     */
+    public static Builder builder(SharePointHttpTransport transport, String apiUrl) {
+        return new Builder(transport, apiUrl);
+    }
+
+    /**
+     * @param url request URL, absolute or relative to the REST root (e.g. {@code Web/Lists(guid'...')/Items(5)})
+     */
+    public CompletableFuture<SharePointHttpResponse> submit(String url) {
+        PendingRequest request = new PendingRequest(toAbsoluteUrl(url));
+        List<PendingRequest> full = null;
+        synchronized (lock) {
+            pending.add(request);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                lingerFlush = lingerTimer.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            sendAsync(full);
+        }
+        return request.future;
+    }
+
+    /**
+     * Sends the requests in full batches right away and waits for all responses, in request order.
+     */
+    public List<SharePointHttpResponse> getAll(List<String> urls) throws IOException {
+        List<CompletableFuture<SharePointHttpResponse>> futures = Lists.newArrayListWithCapacity(urls.size());
+        for (String url : urls) {
+            futures.add(submit(url));
+        }
+        flush();
+        List<SharePointHttpResponse> responses = Lists.newArrayListWithCapacity(urls.size());
+        for (CompletableFuture<SharePointHttpResponse> future : futures) {
+            responses.add(await(future));
+        }
+        return responses;
+    }
+
+    public SharePointHttpResponse get(String url) throws IOException {
+        return await(submit(url));
+    }
+
+    /**
+     * Sends whatever is pending without waiting for the linger time.
+     */
+    public void flush() {
+        List<PendingRequest> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        sendAsync(batch);
+    }
+
+    /**
+     * Drops the cached form digest after a POST request was rejected with it.
+     */
+    public void invalidateFormDigest() {
+        digest = null;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private List<PendingRequest> takePending() {
+        List<PendingRequest> batch = pending;
+        pending = Lists.newArrayList();
+        if (lingerFlush != null) {
+            lingerFlush.cancel(false);
+            lingerFlush = null;
+        }
+        return batch;
+    }
+
+    private void sendAsync(List<PendingRequest> batch) {
+        try {
+            senders.execute(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void send(List<PendingRequest> batch) {
+        List<String> urls = Lists.newArrayListWithCapacity(batch.size());
+        for (PendingRequest request : batch) {
+            urls.add(request.url);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            List<SharePointHttpResponse> responses = execute(urls, true);
+            if (responses.size() != batch.size()) {
+                throw new IOException("Batch of " + batch.size() + " requests returned " + responses.size() + " responses");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(responses.get(i));
+            }
+            logger.debug("Batch of {} requests took {} ms", batch.size(), System.currentTimeMillis() - start);
+        } catch (Throwable t) {
+            logger.warn("Failed to execute batch of {} requests", batch.size(), t);
+            fail(batch, t);
+        }
+    }
+
+    private List<SharePointHttpResponse> execute(List<String> urls, boolean retryWithNewDigest) throws IOException {
+        String boundary = SharePointODataBatch.newBoundary();
+        Map<String, String> headers = Maps.newHashMap();
+        headers.put("Content-Type", SharePointODataBatch.contentType(boundary));
+        headers.put("Accept", "multipart/mixed");
+        if (formDigest) {
+            headers.put("X-RequestDigest", getFormDigest());
+        }
+        batches.incrementAndGet();
+        requests.addAndGet(urls.size());
+        SharePointHttpResponse response = transport.execute("POST", apiUrl + "$batch", headers,
+                SharePointODataBatch.encodeRequest(boundary, urls, accept));
+        if (response.getStatus() == 403 && formDigest && retryWithNewDigest) {
+            logger.debug("Batch request was forbidden, retrying with a new form digest");
+            invalidateFormDigest();
+            return execute(urls, false);
+        }
+        if (!response.isSuccessful()) {
+            throw new IOException("Batch request failed with status " + response.getStatus() + ": " + response.getBodyAsString());
+        }
+        return SharePointODataBatch.decodeResponse(response.getHeader("Content-Type"), response.getBody());
+    }
+
+    /**
+     * The cached form digest of the site, for other POST requests of the same site as well.
+     */
+    public synchronized String getFormDigest() throws IOException {
+        if (digest != null && System.currentTimeMillis() < digestExpiresAt) {
+            return digest;
+        }
+        Map<String, String> headers = Maps.newHashMap();
+        headers.put("Accept", "application/json;odata=verbose");
+        SharePointHttpResponse response = transport.execute("POST", apiUrl + "contextinfo", headers, new byte[0]);
+        if (!response.isSuccessful()) {
+            throw new IOException("Failed to get form digest, status " + response.getStatus());
+        }
+        JsonNode root = mapper.readTree(response.getBody());
+        JsonNode value = root.findValue("FormDigestValue");
+        if (value == null) {
+            throw new IOException("No form digest in contextinfo response");
+        }
+        JsonNode timeout = root.findValue("FormDigestTimeoutSeconds");
+        long timeoutMillis = timeout == null ? TimeUnit.MINUTES.toMillis(30) : TimeUnit.SECONDS.toMillis(timeout.asLong());
+        digest = value.asText();
+        digestExpiresAt = System.currentTimeMillis() + Math.max(0, timeoutMillis - DIGEST_EXPIRY_MARGIN_MILLIS);
+        return digest;
+    }
+
+    private String toAbsoluteUrl(String url) {
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+            return url;
+        }
+        return apiUrl + (url.startsWith("/") ? url.substring(1) : url);
+    }
+
+    private static void fail(List<PendingRequest> batch, Throwable t) {
+        for (PendingRequest request : batch) {
+            request.future.completeExceptionally(t);
+        }
+    }
+
+    private static SharePointHttpResponse await(CompletableFuture<SharePointHttpResponse> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batched request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Batched request failed", cause);
+        }
+    }
+
+    private static class PendingRequest {
+        private final String url;
+        private final CompletableFuture<SharePointHttpResponse> future = new CompletableFuture<>();
+
+        private PendingRequest(String url) {
+            this.url = url;
+        }
+    }
+
+    public static class Builder {
+        private final SharePointHttpTransport transport;
+        private final String apiUrl;
+        private int maxBatchSize = 20;
+        private long lingerMillis = 5;
+        private boolean formDigest = true;
+        private String accept = SharePointODataBatch.DEFAULT_ACCEPT;
+
+        private Builder(SharePointHttpTransport transport, String apiUrl) {
+            this.transport = Objects.requireNonNull(transport, "transport");
+            this.apiUrl = Objects.requireNonNull(apiUrl, "apiUrl");
+        }
+
+        public Builder withMaxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1 || maxBatchSize > MAX_BATCH_SIZE) {
+                throw new IllegalArgumentException("maxBatchSize must be between 1 and " + MAX_BATCH_SIZE + ": " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * How long the first pending request waits for others to join its batch.
+         */
+        public Builder withLingerMillis(long lingerMillis) {
+            this.lingerMillis = lingerMillis;
+            return this;
+        }
+
+        public Builder withFormDigest(boolean formDigest) {
+            this.formDigest = formDigest;
+            return this;
+        }
+
+        public Builder withAccept(String accept) {
+            this.accept = accept;
+            return this;
+        }
+
+        public SharePointBatchExecutor build() {
+            return new SharePointBatchExecutor(this);
+        }
+    }
+}
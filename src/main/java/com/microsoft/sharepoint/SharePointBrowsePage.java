@@ -0,0 +1,42 @@
+package com.microsoft.sharepoint;
+
+import com.file.ServerResourceDto;
+
+import java.util.List;
+
+/**
+ * One page of sub folders, ordered by name, and the cursor of the next page (null on the last page).
+ */
+public class SharePointBrowsePage {
+
+    private final List<ServerResourceDto> folders;
+    private final String nextCursor;
+
+    public SharePointBrowsePage(List<ServerResourceDto> folders, String nextCursor) {
+        this.folders = folders;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ServerResourceDto> getFolders() {
+        return folders;
+    }
+
+    /**
+     * @return opaque cursor to pass to the next browse call, null when this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isLastPage() {
+        return nextCursor == null;
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointBrowsePage{" +
+                "folders=" + folders.size() +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,160 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Folds a window of changes into one net change per media item.
+ * <p>
+ * Whether the item existed before the window is taken from its first change (NEW/UNDELETED - it did not), whether
+ * it exists after from its last. Then:
+ * <ul>
+ * <li>absent before and after (e.g. added and deleted in the window) - nothing is emitted</li>
+ * <li>absent before, present after - the first change (NEW or UNDELETED)</li>
+ * <li>present before, absent after - DELETED</li>
+ * <li>present before and after - CONTENT_UPDATED if it was updated or deleted and restored, otherwise RENAMED,
+ * otherwise ACL_UPDATED</li>
+ * </ul>
+ * Each net change carries the position of the item's latest change, and net changes are ordered by that position.
+ *
+ * @param <P> change log position - kept as is and only formatted for the emitted changes
+ */
+public class SharePointChangeCoalescer<P> {
+
+    private static final byte CONTENT_UPDATED = 1;
+    private static final byte RENAMED = 2;
+    private static final byte ACL_UPDATED = 4;
+
+    private static final class ItemChanges<P> {
+        final DiffType first;
+        boolean existsAfter;
+        // Item was removed and came back within the window
+        boolean recreated;
+        byte updates;
+        P position;
+
+        ItemChanges(DiffType first) {
+            this.first = first;
+        }
+    }
+
+    private final Map<String, ItemChanges<P>> items = new LinkedHashMap<>(256, 0.75f, true);
+    private P lastPosition;
+    private long changes;
+
+    public void add(String mediaItemId, DiffType type, P position) {
+        changes++;
+        lastPosition = position;
+        ItemChanges<P> item = items.get(mediaItemId); // access order - moves the item last
+        if (item == null) {
+            item = new ItemChanges<>(type);
+            items.put(mediaItemId, item);
+        } else if (!item.existsAfter && type != DiffType.DELETED) {
+            item.recreated = true;
+        }
+        item.position = position;
+        switch (type) {
+            case NEW:
+            case UNDELETED:
+                item.existsAfter = true;
+                break;
+            case DELETED:
+                item.existsAfter = false;
+                item.updates = 0;
+                break;
+            case RENAMED:
+                item.existsAfter = true;
+                item.updates |= RENAMED;
+                break;
+            case ACL_UPDATED:
+                item.existsAfter = true;
+                item.updates |= ACL_UPDATED;
+                break;
+            case CONTENT_UPDATED:
+            default:
+                item.existsAfter = true;
+                item.updates |= CONTENT_UPDATED;
+                break;
+        }
+    }
+
+    @FunctionalInterface
+    public interface NetChangeConsumer<P> {
+        void accept(String mediaItemId, DiffType diffType, P position);
+    }
+
+    /**
+     * @return the net changes of the window, in order of each item's latest change. The last one carries the
+     * position of the window's last change, so it stays a valid cursor for the whole window. The window is reset.
+     */
+    public List<MediaChangeLogDto> drain(Function<P, String> positionFormatter) {
+        List<MediaChangeLogDto> result = new ArrayList<>(items.size());
+        drainTo((mediaItemId, diffType, position) -> {
+            MediaChangeLogDto dto = new MediaChangeLogDto(mediaItemId, diffType);
+            dto.setChangeLogPosition(positionFormatter.apply(position));
+            result.add(dto);
+        });
+        return result;
+    }
+
+    /**
+     * Same as {@link #drain(Function)}, handing the net changes to {@code consumer}.
+     */
+    public void drainTo(NetChangeConsumer<P> consumer) {
+        String pendingId = null;
+        DiffType pendingType = null;
+        P pendingPosition = null;
+        for (Map.Entry<String, ItemChanges<P>> entry : items.entrySet()) {
+            DiffType net = netDiffType(entry.getValue());
+            if (net != null) {
+                if (pendingId != null) {
+                    consumer.accept(pendingId, pendingType, pendingPosition);
+                }
+                pendingId = entry.getKey();
+                pendingType = net;
+                pendingPosition = entry.getValue().position;
+            }
+        }
+        if (pendingId != null) {
+            consumer.accept(pendingId, pendingType, lastPosition);
+        }
+        items.clear();
+        changes = 0;
+    }
+
+    private static DiffType netDiffType(ItemChanges<?> item) {
+        boolean existedBefore = item.first != DiffType.NEW && item.first != DiffType.UNDELETED;
+        if (!existedBefore) {
+            return item.existsAfter ? item.first : null;
+        }
+        if (!item.existsAfter) {
+            return DiffType.DELETED;
+        }
+        if (item.recreated || (item.updates & CONTENT_UPDATED) != 0) {
+            return DiffType.CONTENT_UPDATED;
+        }
+        return (item.updates & RENAMED) != 0 ? DiffType.RENAMED : DiffType.ACL_UPDATED;
+    }
+
+    /**
+     * @return position of the last change added to the window - the cursor to continue from, also when the net
+     * change of that item was dropped
+     */
+    public P getLastPosition() {
+        return lastPosition;
+    }
+
+    public long getChanges() {
+        return changes;
+    }
+
+    public int getItems() {
+        return items.size();
+    }
+}
@@ -0,0 +1,341 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.media.MediaChangeLogDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Delivers one change stream to several consumers, each on its own thread, so a single read of the
+ * SharePoint change log serves e.g. an indexer, an ACL service and an audit writer at once.
+ * <p>
+ * Changes are published into a preallocated ring buffer (size rounded up to a power of two). Every consumer
+ * keeps its own cursor and drains everything published up to the producer cursor in one batch, so a slow
+ * consumer only falls behind by up to the buffer size before the producer waits for it; the other consumers
+ * are not stalled by it until then. Use it as the change consumer of a scan, e.g.
+ * {@code params.setChangeConsumer(fanOut)}, and {@link #close()} it after the scan to drain and stop.
+ * <p>
+ * A consumer that throws is logged and skips that change; a consumer that fails with an Error is detached
+ * so it can no longer hold the producer back.
+ */
+public class SharePointChangeFanOut implements Consumer<MediaChangeLogDto>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointChangeFanOut.class);
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long DETACHED = Long.MAX_VALUE;
+
+    /**
+     * How a consumer waits for new changes, and the producer for free slots.
+     */
+    public enum WaitStrategy {
+        /**
+         * Lowest latency, keeps a core busy per waiting thread - only when the producer and every consumer
+         * have a core of their own, otherwise spinning threads starve the ones doing the work.
+         */
+        BUSY_SPIN,
+        /**
+         * Spins briefly, then yields the CPU.
+         */
+        YIELDING,
+        /**
+         * Spins, yields, then parks for short periods - a good default.
+         */
+        SLEEPING,
+        /**
+         * Consumers wait on a monitor that the producer signals after each publish - least CPU while idle.
+         */
+        BLOCKING
+    }
+
+    private final MediaChangeLogDto[] ring;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final List<Subscriber> subscribers;
+
+    private final Object producerLock = new Object();
+    private final Object signal = new Object();
+    private final AtomicInteger blockedConsumers = new AtomicInteger();
+    private final AtomicLong published = new AtomicLong(-1);
+
+    private long nextSequence;
+    private long cachedMinConsumed = -1;
+    private long producerWaits;
+
+    private volatile boolean started;
+    private volatile boolean closed;
+
+    private SharePointChangeFanOut(Builder builder) {
+        int size = Integer.highestOneBit(Math.max(builder.bufferSize, 2) - 1) << 1;
+        this.ring = new MediaChangeLogDto[size];
+        this.mask = size - 1;
+        this.waitStrategy = builder.waitStrategy;
+        this.subscribers = Lists.newArrayListWithCapacity(builder.consumers.size());
+        for (int i = 0; i < builder.consumers.size(); i++) {
+            subscribers.add(new Subscriber(builder.names.get(i), builder.consumers.get(i)));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts the consumer threads. Called on the first {@link #accept} if not called before.
+     */
+    public void start() {
+        synchronized (producerLock) {
+            if (started) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.thread.start();
+            }
+            started = true;
+        }
+    }
+
+    /**
+     * Publishes a change to all consumers. Waits while the slowest attached consumer is a full buffer behind.
+     */
+    @Override
+    public void accept(MediaChangeLogDto change) {
+        Objects.requireNonNull(change, "change");
+        synchronized (producerLock) {
+            if (closed) {
+                throw new IllegalStateException("Change fan-out is closed");
+            }
+            if (!started) {
+                start();
+            }
+            long sequence = nextSequence;
+            long wrapPoint = sequence - ring.length;
+            if (cachedMinConsumed < wrapPoint) {
+                int attempt = 0;
+                while ((cachedMinConsumed = minConsumed()) < wrapPoint) {
+                    attempt = idle(attempt, false);
+                }
+                producerWaits++;
+            }
+            ring[(int) (sequence & mask)] = change;
+            published.lazySet(sequence);
+            nextSequence = sequence + 1;
+        }
+        if (waitStrategy == WaitStrategy.BLOCKING && blockedConsumers.get() > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    public long getPublished() {
+        return published.get() + 1;
+    }
+
+    /**
+     * @return how many times the producer had to wait for a free slot
+     */
+    public long getProducerWaits() {
+        synchronized (producerLock) {
+            return producerWaits;
+        }
+    }
+
+    public long getConsumed(String name) {
+        Subscriber subscriber = subscriber(name);
+        long consumed = subscriber.consumed.get();
+        return consumed == DETACHED ? subscriber.delivered : consumed + 1;
+    }
+
+    public long getErrors(String name) {
+        return subscriber(name).errors.get();
+    }
+
+    /**
+     * Stops accepting changes, lets every consumer drain what was published and waits for the consumer threads.
+     */
+    @Override
+    public void close() {
+        synchronized (producerLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        if (!started) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for change consumer {} to drain", subscriber.name);
+                return;
+            }
+        }
+        logger.debug("Change fan-out closed after {} changes, producer waited {} times", getPublished(), producerWaits);
+    }
+
+    private long minConsumed() {
+        long min = Long.MAX_VALUE;
+        for (Subscriber subscriber : subscribers) {
+            min = Math.min(min, subscriber.consumed.get());
+        }
+        return min;
+    }
+
+    private int idle(int attempt, boolean consumer) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELDING:
+                if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                break;
+            case SLEEPING:
+                if (attempt >= SPIN_TRIES + YIELD_TRIES) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                } else if (attempt >= SPIN_TRIES) {
+                    Thread.yield();
+                }
+                break;
+            case BLOCKING:
+                if (consumer) {
+                    blockedConsumers.incrementAndGet();
+                    try {
+                        synchronized (signal) {
+                            // Timed, so a publish racing with the increment costs at most a millisecond
+                            signal.wait(1);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        blockedConsumers.decrementAndGet();
+                    }
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                break;
+        }
+        return attempt + 1;
+    }
+
+    private Subscriber subscriber(String name) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.name.equals(name)) {
+                return subscriber;
+            }
+        }
+        throw new IllegalArgumentException("Unknown change consumer " + name);
+    }
+
+    private final class Subscriber implements Runnable {
+        private final String name;
+        private final Consumer<MediaChangeLogDto> consumer;
+        private final Thread thread;
+        private final AtomicLong consumed = new AtomicLong(-1);
+        private final AtomicLong errors = new AtomicLong();
+        private volatile long delivered;
+
+        private Subscriber(String name, Consumer<MediaChangeLogDto> consumer) {
+            this.name = name;
+            this.consumer = consumer;
+            this.thread = new Thread(this, "sp-change-fan-out-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            int attempt = 0;
+            try {
+                while (true) {
+                    long available = published.get();
+                    if (available < next) {
+                        if (closed && published.get() < next) {
+                            return;
+                        }
+                        if (Thread.currentThread().isInterrupted()) {
+                            logger.warn("Change consumer {} interrupted after {} changes", name, next);
+                            return;
+                        }
+                        attempt = idle(attempt, true);
+                        continue;
+                    }
+                    attempt = 0;
+                    for (; next <= available; next++) {
+                        MediaChangeLogDto change = ring[(int) (next & mask)];
+                        try {
+                            consumer.accept(change);
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                            logger.error("Change consumer {} failed on {}", name, change.getMediaItemId(), e);
+                        }
+                    }
+                    delivered = next;
+                    consumed.lazySet(available);
+                }
+            } catch (Throwable t) {
+                logger.error("Change consumer {} stopped after {} changes, detaching it", name, next, t);
+                errors.incrementAndGet();
+            } finally {
+                delivered = next;
+                consumed.set(DETACHED);
+            }
+        }
+    }
+
+    public static class Builder {
+        private final List<String> names = Lists.newArrayList();
+        private final List<Consumer<MediaChangeLogDto>> consumers = Lists.newArrayList();
+        private int bufferSize = 1024;
+        private WaitStrategy waitStrategy = WaitStrategy.SLEEPING;
+
+        private Builder() {
+        }
+
+        /**
+         * Number of slots, rounded up to a power of two; how far the fastest consumer may run ahead of the slowest.
+         */
+        public Builder withBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+            return this;
+        }
+
+        public Builder withWaitStrategy(WaitStrategy waitStrategy) {
+            this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+            return this;
+        }
+
+        public Builder addConsumer(String name, Consumer<MediaChangeLogDto> consumer) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate change consumer " + name);
+            }
+            names.add(Objects.requireNonNull(name, "name"));
+            consumers.add(Objects.requireNonNull(consumer, "consumer"));
+            return this;
+        }
+
+        public SharePointChangeFanOut build() {
+            if (consumers.isEmpty()) {
+                throw new IllegalStateException("At least one change consumer is required");
+            }
+            return new SharePointChangeFanOut(this);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.middleware.share.Change;
+import com.middleware.share.ChangeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the newest change token (the change log "head") of a list in a bounded number of getChanges calls.
+ * <p>
+ * The first call reads a full page from the start of the log; a short page already holds the head. Otherwise the
+ * change number is galloped forward with single-change probes (probe tokens built from the last real token with a
+ * larger change number) until a probe finds nothing after it, then narrowed by binary search and finished with one
+ * page read from the last real change found. For L changes this is O(log L) calls instead of one call per change.
+ * If a probe token is rejected the search falls back to reading full pages forward.
+ * <p>
+ * Heads are cached per (sub-site, list); a cached head is refreshed by reading forward from it.
+ * {@link #getHead} may return a head up to the cache TTL old, {@link #getExactHead} always reads forward from the
+ * cached head (usually a single call) so changes made since are included.
+ */
+public class SharePointChangeHeadTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointChangeHeadTracker.class);
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    public static final int DEFAULT_MAX_CALLS = 64;
+    private static final long DEFAULT_CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    @FunctionalInterface
+    public interface ChangeFetcher {
+        /**
+         * @param startToken exclusive start of the changes to return, null for the start of the log
+         * @param count      maximal number of changes (Top)
+         */
+        List<Change> fetch(String subSite, String listId, ChangeToken startToken, int count) throws Exception;
+    }
+
+    public static class ChangeHead {
+        private final ChangeToken token;
+        private final int calls;
+        private final long discoveredAt;
+
+        ChangeHead(ChangeToken token, int calls, long discoveredAt) {
+            this.token = token;
+            this.calls = calls;
+            this.discoveredAt = discoveredAt;
+        }
+
+        /**
+         * @return the newest change token, or null when the list has no changes
+         */
+        public ChangeToken getToken() {
+            return token;
+        }
+
+        /**
+         * @return number of getChanges calls the discovery took (0 for a cache hit)
+         */
+        public int getCalls() {
+            return calls;
+        }
+
+        public long getDiscoveredAt() {
+            return discoveredAt;
+        }
+    }
+
+    private final ChangeFetcher fetcher;
+    private final int pageSize;
+    private final int maxCalls;
+    private final long cacheTtlMillis;
+
+    private final Cache<String, ChangeHead> heads = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .build();
+
+    private final AtomicLong totalCalls = new AtomicLong();
+    private final AtomicLong discoveries = new AtomicLong();
+
+    public SharePointChangeHeadTracker(ChangeFetcher fetcher) {
+        this(fetcher, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CALLS, DEFAULT_CACHE_TTL_MILLIS);
+    }
+
+    public SharePointChangeHeadTracker(ChangeFetcher fetcher, int pageSize, int maxCalls, long cacheTtlMillis) {
+        if (pageSize < 2) {
+            throw new IllegalArgumentException("pageSize must be at least 2: " + pageSize);
+        }
+        this.fetcher = fetcher;
+        this.pageSize = pageSize;
+        this.maxCalls = maxCalls;
+        this.cacheTtlMillis = cacheTtlMillis;
+    }
+
+    /**
+     * @return the head of the list's change log - cached when discovered less than the cache TTL ago
+     */
+    public ChangeHead getHead(String subSite, String listId) throws Exception {
+        return getHead(subSite, listId, cacheTtlMillis);
+    }
+
+    /**
+     * @return the current head of the list's change log, refreshed from the cached head if there is one
+     */
+    public ChangeHead getExactHead(String subSite, String listId) throws Exception {
+        return getHead(subSite, listId, 0);
+    }
+
+    private ChangeHead getHead(String subSite, String listId, long maxAgeMillis) throws Exception {
+        String key = key(subSite, listId);
+        ChangeHead cached = heads.getIfPresent(key);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.getDiscoveredAt() < maxAgeMillis) {
+            return new ChangeHead(cached.getToken(), 0, cached.getDiscoveredAt());
+        }
+        ChangeHead head;
+        if (cached == null) {
+            head = discover(subSite, listId, null);
+        } else {
+            try {
+                head = discover(subSite, listId, cached.getToken());
+            } catch (Exception e) {
+                // The cached token may have aged out of the change log
+                logger.debug("Failed to refresh the change head of list {} from {} - rediscovering", listId, cached.getToken(), e);
+                head = discover(subSite, listId, null);
+            }
+        }
+        heads.put(key, head);
+        return head;
+    }
+
+    public void invalidate(String subSite, String listId) {
+        heads.invalidate(key(subSite, listId));
+    }
+
+    /**
+     * @return the number of calls the last discovery for the list took, or -1 when it is not cached
+     */
+    public int getLastDiscoveryCalls(String subSite, String listId) {
+        ChangeHead head = heads.getIfPresent(key(subSite, listId));
+        return head == null ? -1 : head.getCalls();
+    }
+
+    public long getTotalCalls() {
+        return totalCalls.get();
+    }
+
+    public long getDiscoveries() {
+        return discoveries.get();
+    }
+
+    private ChangeHead discover(String subSite, String listId, ChangeToken from) throws Exception {
+        Discovery discovery = new Discovery(subSite, listId);
+        ChangeToken head = discovery.run(from);
+        discoveries.incrementAndGet();
+        totalCalls.addAndGet(discovery.calls);
+        logger.debug("Change head of list {} (subSite={}) is {} - found in {} calls", listId, subSite, head, discovery.calls);
+        return new ChangeHead(head, discovery.calls, System.currentTimeMillis());
+    }
+
+    private static String key(String subSite, String listId) {
+        return (subSite == null ? "" : subSite) + '|' + listId;
+    }
+
+    private class Discovery {
+        private final String subSite;
+        private final String listId;
+        private int calls;
+        private ChangeToken best;
+
+        Discovery(String subSite, String listId) {
+            this.subSite = subSite;
+            this.listId = listId;
+        }
+
+        ChangeToken run(ChangeToken from) throws Exception {
+            best = from;
+            try {
+                List<Change> page = fetch(from, pageSize);
+                ChangeToken lower = newest(page, from);
+                if (page.size() < pageSize) {
+                    return lower;
+                }
+                try {
+                    return gallop(lower);
+                } catch (CallBudgetExceededException e) {
+                    throw e;
+                } catch (Exception e) {
+                    logger.debug("Change number probing failed for list {} ({}) - reading pages forward", listId, e.getMessage());
+                    return readForward(best);
+                }
+            } catch (CallBudgetExceededException e) {
+                // Same as the former 1000 call cap - settle for the newest change seen so far
+                logger.warn("Change head of list {} not reached within {} calls, using {}", listId, maxCalls, best);
+                return best;
+            }
+        }
+
+        /**
+         * @param lower a real token with at least a full page of changes after it
+         */
+        private ChangeToken gallop(ChangeToken lower) throws Exception {
+            long step = pageSize;
+            long upper;
+            while (true) {
+                long probe = lower.getChangeNumber() + step;
+                if (probe >= Integer.MAX_VALUE) {
+                    upper = Integer.MAX_VALUE;
+                    break;
+                }
+                ChangeToken found = probeAfter(lower, (int) probe);
+                if (found == null) {
+                    upper = probe;
+                    break;
+                }
+                lower = found;
+                step <<= 1;
+            }
+            // Invariant: lower is a real change, nothing exists after change number upper
+            while (upper - lower.getChangeNumber() > pageSize) {
+                int mid = (int) ((lower.getChangeNumber() + upper) >>> 1);
+                ChangeToken found = probeAfter(lower, mid);
+                if (found == null) {
+                    upper = mid;
+                } else {
+                    lower = found;
+                }
+            }
+            return readForward(lower);
+        }
+
+        private ChangeToken readForward(ChangeToken lower) throws Exception {
+            while (true) {
+                List<Change> page = fetch(lower, pageSize);
+                lower = newest(page, lower);
+                if (page.size() < pageSize) {
+                    return lower;
+                }
+            }
+        }
+
+        private ChangeToken probeAfter(ChangeToken real, int changeNumber) throws Exception {
+            ChangeToken probe = new ChangeToken(real.getScope(), real.getScopeId(), real.getChangeTime(), changeNumber);
+            List<Change> changes = fetch(probe, 1);
+            return changes.isEmpty() ? null : newest(changes, null);
+        }
+
+        private List<Change> fetch(ChangeToken start, int count) throws Exception {
+            if (calls >= maxCalls) {
+                throw new CallBudgetExceededException();
+            }
+            calls++;
+            return fetcher.fetch(subSite, listId, start, count);
+        }
+
+        private ChangeToken newest(List<Change> changes, ChangeToken current) {
+            for (Change change : changes) {
+                ChangeToken token = change.getToken();
+                if (current == null || token.getChangeNumber() > current.getChangeNumber()) {
+                    current = token;
+                }
+            }
+            if (current != null && (best == null || current.getChangeNumber() > best.getChangeNumber())) {
+                best = current;
+            }
+            return current;
+        }
+    }
+
+    private static class CallBudgetExceededException extends RuntimeException {
+        CallBudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+}
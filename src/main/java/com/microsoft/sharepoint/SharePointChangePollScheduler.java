@@ -0,0 +1,496 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.media.MediaChangeLogDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the change logs of many lists (libraries) polled concurrently.
+ * <p>
+ * A change token cursor is kept per (sub-site, list). Lists are polled on a shared scheduled pool, every
+ * getChanges / head call takes a permit of the global request budget (concurrent requests, optionally
+ * also requests per second), and each list's interval adapts to its activity: halved after a poll that found
+ * changes, doubled after an empty or failed one, between the configured min and max. Cursors are persisted (JSON, in the
+ * {@link SharePointChangeTokenDto} form) to a local file periodically and on {@link #close()}, so a restart resumes
+ * from the last delivered change. A list without a cursor starts from its current change head, not from the
+ * start of its history.
+ * <p>
+ * A cursor whose change token expired (it is older than the change log SharePoint keeps) is dropped: the gap is
+ * reported to {@link ChangeListener#onChangesLost} and the list starts again from its current change head.
+ */
+public class SharePointChangePollScheduler implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointChangePollScheduler.class);
+
+    @FunctionalInterface
+    public interface ChangeSource {
+        List<MediaChangeLogDto> getChanges(String subSite, String listId, String changeTokenStart, int count) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface HeadSource {
+        String getLastChange(String subSite, String listId) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onChange(String subSite, String listId, MediaChangeLogDto change);
+
+        /**
+         * The changes of the list after {@code expiredCursor} can no longer be read, e.g. rescan the list to catch
+         * up. Polling continues from the list's change head after this call.
+         */
+        default void onChangesLost(String subSite, String listId, String expiredCursor) {
+        }
+    }
+
+    // SharePoint's answer to a change token older than the change log it keeps
+    private static final String[] EXPIRED_CHANGE_TOKEN_MARKERS = {
+            "SPInvalidChangeTokenException",
+            "change token refers to a time before the start of the current change log"};
+
+    private final ChangeSource changeSource;
+    private final HeadSource headSource;
+    private final ChangeListener listener;
+    private final int pageSize;
+    private final int maxPagesPerPoll;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final Path cursorFile;
+    private final long persistIntervalMillis;
+
+    private final Semaphore requestPermits;
+    private final RateLimiter rateLimiter;
+    private final ScheduledExecutorService executor;
+    private final ObjectMapper mapper;
+
+    private final Map<String, ListState> lists = Maps.newConcurrentMap();
+    private final Map<String, PersistedCursor> loadedCursors = Maps.newConcurrentMap();
+
+    private volatile boolean running;
+    private volatile boolean dirty;
+
+    private final AtomicLong polls = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private SharePointChangePollScheduler(Builder builder) {
+        this.changeSource = builder.changeSource;
+        this.headSource = builder.headSource;
+        this.listener = builder.listener;
+        this.pageSize = builder.pageSize;
+        this.maxPagesPerPoll = builder.maxPagesPerPoll;
+        this.minIntervalMillis = builder.minIntervalMillis;
+        this.maxIntervalMillis = builder.maxIntervalMillis;
+        this.cursorFile = builder.cursorFile;
+        this.persistIntervalMillis = builder.persistIntervalMillis;
+        this.requestPermits = new Semaphore(builder.maxConcurrentRequests, true);
+        this.rateLimiter = builder.requestsPerSecond > 0 ? RateLimiter.create(builder.requestsPerSecond) : null;
+        this.executor = Executors.newScheduledThreadPool(builder.threads,
+                new ThreadFactoryBuilder().setNameFormat("sp-change-poll-%d").setDaemon(true).build());
+        this.mapper = new ObjectMapper();
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    public static Builder builder(SharePointMediaConnector connector, ChangeListener listener) {
+        return new Builder(connector::getChanges, connector::getLastChange, listener);
+    }
+
+    public static Builder builder(ChangeSource changeSource, HeadSource headSource, ChangeListener listener) {
+        return new Builder(changeSource, headSource, listener);
+    }
+
+    /**
+     * Loads the persisted cursors and starts polling all registered lists.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        loadCursors();
+        running = true;
+        for (ListState state : lists.values()) {
+            applyLoadedCursor(state);
+            schedule(state, 0);
+        }
+        if (cursorFile != null) {
+            executor.scheduleWithFixedDelay(this::persistIfDirty, persistIntervalMillis, persistIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+        logger.info("Change polling started for {} lists", lists.size());
+    }
+
+    public void register(String subSite, String listId) {
+        String key = key(subSite, listId);
+        ListState state = new ListState(subSite, listId, minIntervalMillis);
+        if (lists.putIfAbsent(key, state) == null && running) {
+            applyLoadedCursor(state);
+            schedule(state, 0);
+        }
+    }
+
+    public void unregister(String subSite, String listId) {
+        ListState state = lists.remove(key(subSite, listId));
+        if (state != null) {
+            state.removed = true;
+            ScheduledFuture<?> future = state.future;
+            if (future != null) {
+                future.cancel(false);
+            }
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return the change token of the last change delivered for the list, null if none was delivered yet
+     */
+    public String getCursor(String subSite, String listId) {
+        ListState state = lists.get(key(subSite, listId));
+        return state == null ? null : state.cursor;
+    }
+
+    public long getIntervalMillis(String subSite, String listId) {
+        ListState state = lists.get(key(subSite, listId));
+        return state == null ? -1 : state.intervalMillis;
+    }
+
+    public long getPolls() {
+        return polls.get();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getChanges() {
+        return changes.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                executor.shutdown();
+                return;
+            }
+            running = false;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Change polls did not finish in time, persisting cursors anyway");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persistCursors();
+    }
+
+    private void schedule(ListState state, long delayMillis) {
+        if (!running || state.removed) {
+            return;
+        }
+        try {
+            state.future = executor.schedule(() -> poll(state), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Not scheduling list {} - scheduler is shutting down", state.listId);
+        }
+    }
+
+    private void poll(ListState state) {
+        if (!running || state.removed) {
+            return;
+        }
+        polls.incrementAndGet();
+        int delivered = 0;
+        try {
+            if (!state.initialized) {
+                state.cursor = request(() -> headSource.getLastChange(state.subSite, state.listId));
+                state.initialized = true;
+                dirty = true;
+                logger.debug("Change polling of list {} (subSite={}) starts at {}", state.listId, state.subSite, state.cursor);
+            }
+            for (int page = 0; page < maxPagesPerPoll && running && !state.removed; page++) {
+                String cursor = state.cursor;
+                List<MediaChangeLogDto> pageChanges = request(() -> changeSource.getChanges(state.subSite, state.listId, cursor, pageSize));
+                for (MediaChangeLogDto change : pageChanges) {
+                    listener.onChange(state.subSite, state.listId, change);
+                    state.cursor = change.getChangeLogPosition();
+                    dirty = true;
+                }
+                delivered += pageChanges.size();
+                changes.addAndGet(pageChanges.size());
+                if (pageChanges.size() < pageSize) {
+                    break;
+                }
+            }
+            state.intervalMillis = delivered > 0
+                    ? Math.max(minIntervalMillis, state.intervalMillis / 2)
+                    : Math.min(maxIntervalMillis, state.intervalMillis * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            if (state.initialized && isExpiredChangeToken(e)) {
+                String expiredCursor = state.cursor;
+                logger.warn("Change token of list {} (subSite={}) expired at {}, changes since were lost - restarting from the change head",
+                        state.listId, state.subSite, expiredCursor);
+                state.initialized = false;
+                state.cursor = null;
+                dirty = true;
+                state.intervalMillis = minIntervalMillis;
+                listener.onChangesLost(state.subSite, state.listId, expiredCursor);
+            } else {
+                state.intervalMillis = Math.min(maxIntervalMillis, state.intervalMillis * 2);
+                logger.warn("Failed to poll changes of list {} (subSite={}) from {}, next poll in {} ms",
+                        state.listId, state.subSite, state.cursor, state.intervalMillis, e);
+            }
+        }
+        schedule(state, state.intervalMillis);
+    }
+
+    static boolean isExpiredChangeToken(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null) {
+                for (String marker : EXPIRED_CHANGE_TOKEN_MARKERS) {
+                    if (message.contains(marker)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private <T> T request(Callable<T> call) throws Exception {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+        }
+        requestPermits.acquire();
+        try {
+            requests.incrementAndGet();
+            return call.call();
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private void applyLoadedCursor(ListState state) {
+        PersistedCursor persisted = loadedCursors.remove(key(state.subSite, state.listId));
+        if (persisted != null) {
+            state.cursor = persisted.getToken() == null ? null
+                    : SharePointParseUtils.convertSharePointChangeTokenDtoToString(persisted.getToken());
+            state.initialized = true;
+        }
+    }
+
+    private void loadCursors() {
+        if (cursorFile == null || !Files.exists(cursorFile)) {
+            return;
+        }
+        try {
+            List<PersistedCursor> cursors = mapper.readValue(cursorFile.toFile(), new TypeReference<List<PersistedCursor>>() {
+            });
+            for (PersistedCursor cursor : cursors) {
+                loadedCursors.put(key(cursor.getSubSite(), cursor.getListId()), cursor);
+            }
+            logger.info("Loaded {} change cursors from {}", cursors.size(), cursorFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read change cursors from " + cursorFile, e);
+        }
+    }
+
+    private void persistIfDirty() {
+        if (dirty) {
+            persistCursors();
+        }
+    }
+
+    private synchronized void persistCursors() {
+        if (cursorFile == null) {
+            return;
+        }
+        dirty = false;
+        List<PersistedCursor> cursors = Lists.newArrayList();
+        for (ListState state : lists.values()) {
+            if (state.initialized) {
+                SharePointChangeTokenDto token = state.cursor == null ? null
+                        : SharePointParseUtils.convertToSharePointChangeToken(state.cursor);
+                cursors.add(new PersistedCursor(state.subSite, state.listId, token));
+            }
+        }
+        // Cursors of lists not registered (yet) in this run are kept
+        cursors.addAll(loadedCursors.values());
+        try {
+            Path parent = cursorFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, cursorFile.getFileName().toString(), ".tmp");
+            mapper.writeValue(temp.toFile(), cursors);
+            Files.move(temp, cursorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            logger.error("Failed to persist {} change cursors to {}", cursors.size(), cursorFile, e);
+        }
+    }
+
+    private static String key(String subSite, String listId) {
+        return (subSite == null ? "" : subSite) + '|' + listId;
+    }
+
+    private static class ListState {
+        final String subSite;
+        final String listId;
+        volatile String cursor;
+        volatile boolean initialized;
+        volatile long intervalMillis;
+        volatile boolean removed;
+        volatile ScheduledFuture<?> future;
+
+        ListState(String subSite, String listId, long intervalMillis) {
+            this.subSite = subSite;
+            this.listId = listId;
+            this.intervalMillis = intervalMillis;
+        }
+    }
+
+    public static class PersistedCursor {
+        private String subSite;
+        private String listId;
+        private SharePointChangeTokenDto token;
+
+        public PersistedCursor() {
+        }
+
+        public PersistedCursor(String subSite, String listId, SharePointChangeTokenDto token) {
+            this.subSite = subSite;
+            this.listId = listId;
+            this.token = token;
+        }
+
+        public String getSubSite() {
+            return subSite;
+        }
+
+        public void setSubSite(String subSite) {
+            this.subSite = subSite;
+        }
+
+        public String getListId() {
+            return listId;
+        }
+
+        public void setListId(String listId) {
+            this.listId = listId;
+        }
+
+        public SharePointChangeTokenDto getToken() {
+            return token;
+        }
+
+        public void setToken(SharePointChangeTokenDto token) {
+            this.token = token;
+        }
+    }
+
+    public static class Builder {
+        private final ChangeSource changeSource;
+        private final HeadSource headSource;
+        private final ChangeListener listener;
+        private int threads = 8;
+        private int maxConcurrentRequests = 8;
+        private double requestsPerSecond = -1;
+        private int pageSize = 1000;
+        private int maxPagesPerPoll = 10;
+        private long minIntervalMillis = TimeUnit.SECONDS.toMillis(15);
+        private long maxIntervalMillis = TimeUnit.MINUTES.toMillis(15);
+        private Path cursorFile;
+        private long persistIntervalMillis = TimeUnit.SECONDS.toMillis(30);
+
+        private Builder(ChangeSource changeSource, HeadSource headSource, ChangeListener listener) {
+            this.changeSource = changeSource;
+            this.headSource = headSource;
+            this.listener = listener;
+        }
+
+        public Builder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Global budget - at most this many getChanges/head requests in flight across all lists.
+         */
+        public Builder withMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Optional global rate on top of the concurrency budget; not limited when not positive.
+         */
+        public Builder withRequestsPerSecond(double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        public Builder withPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Pages read from one list per poll before it yields to the others.
+         */
+        public Builder withMaxPagesPerPoll(int maxPagesPerPoll) {
+            this.maxPagesPerPoll = maxPagesPerPoll;
+            return this;
+        }
+
+        public Builder withIntervals(long minIntervalMillis, long maxIntervalMillis) {
+            this.minIntervalMillis = minIntervalMillis;
+            this.maxIntervalMillis = maxIntervalMillis;
+            return this;
+        }
+
+        public Builder withCursorFile(Path cursorFile) {
+            this.cursorFile = cursorFile;
+            return this;
+        }
+
+        public Builder withPersistInterval(long persistIntervalMillis) {
+            this.persistIntervalMillis = persistIntervalMillis;
+            return this;
+        }
+
+        public SharePointChangePollScheduler build() {
+            if (threads <= 0 || maxConcurrentRequests <= 0 || pageSize <= 0 || maxPagesPerPoll <= 0
+                    || minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis || persistIntervalMillis <= 0) {
+                throw new IllegalArgumentException("Illegal change poll scheduler configuration");
+            }
+            return new SharePointChangePollScheduler(this);
+        }
+    }
+}
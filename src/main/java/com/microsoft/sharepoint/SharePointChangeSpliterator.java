@@ -0,0 +1,113 @@
+package com.microsoft.sharepoint;
+
+import com.media.MediaChangeLogDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks a list change log page by page. The next page is requested only when the consumer advances past the
+ * current one, starting from the change log position of the last change seen, and only the current page is held.
+ * <p>
+ * A page shorter than the page size is taken as the end of the log.
+ */
+public class SharePointChangeSpliterator implements Spliterator<MediaChangeLogDto> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointChangeSpliterator.class);
+
+    @FunctionalInterface
+    public interface ChangePageFetcher {
+        List<MediaChangeLogDto> fetch(String startToken, int count) throws Exception;
+    }
+
+    private final ChangePageFetcher fetcher;
+    private final int pageSize;
+
+    private String nextToken;
+    private List<MediaChangeLogDto> page;
+    private int pageIndex;
+    private boolean lastPage;
+    private int pagesFetched;
+
+    public SharePointChangeSpliterator(ChangePageFetcher fetcher, String startToken, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.fetcher = Objects.requireNonNull(fetcher, "fetcher");
+        this.nextToken = startToken;
+        this.pageSize = pageSize;
+    }
+
+    public static Stream<MediaChangeLogDto> stream(ChangePageFetcher fetcher, String startToken, int pageSize) {
+        return StreamSupport.stream(new SharePointChangeSpliterator(fetcher, startToken, pageSize), false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super MediaChangeLogDto> action) {
+        if ((page == null || pageIndex == page.size()) && !fetchNextPage()) {
+            return false;
+        }
+        action.accept(page.get(pageIndex++));
+        return true;
+    }
+
+    private boolean fetchNextPage() {
+        page = null;
+        if (lastPage) {
+            return false;
+        }
+        List<MediaChangeLogDto> changes;
+        try {
+            changes = fetcher.fetch(nextToken, pageSize);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get changes starting at " + nextToken, e);
+        }
+        pagesFetched++;
+        if (changes == null || changes.isEmpty()) {
+            lastPage = true;
+            return false;
+        }
+        String lastToken = changes.get(changes.size() - 1).getChangeLogPosition();
+        lastPage = changes.size() < pageSize;
+        if (!lastPage && (lastToken == null || lastToken.equals(nextToken))) {
+            logger.warn("Change log position did not advance past {} - stopping after {} pages", nextToken, pagesFetched);
+            lastPage = true;
+        }
+        nextToken = lastToken;
+        page = changes;
+        pageIndex = 0;
+        return true;
+    }
+
+    /**
+     * @return the position to resume from - the change log position of the last change fetched so far
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    @Override
+    public Spliterator<MediaChangeLogDto> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -0,0 +1,134 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.middleware.share.ChangeToken;
+import com.middleware.share.ChangeTokenScope;
+
+import java.io.IOException;
+
+/**
+ * Compact text form of change tokens (change log positions):
+ * <pre>1|scope|scopeId|timeMillis|changeNumber|version</pre>
+ * e.g. {@code 1|LIST|6d2b4d5b-44a5-4b74-a9b7-0e67f7a58e11|1476000000000|123456|1}. The leading number is the
+ * encoding version.
+ * <p>
+ * Positions stored before this encoding are {@link SharePointChangeTokenDto} JSON objects; anything starting
+ * with {@code '{'} is still read that way.
+ */
+public final class SharePointChangeTokenCodec {
+
+    static final char VERSION_1 = '1';
+    private static final char SEPARATOR = '|';
+
+    private static final ChangeTokenScope[] SCOPES = ChangeTokenScope.values();
+
+    private static final ObjectMapper legacyMapper = new ObjectMapper();
+
+    static {
+        legacyMapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        legacyMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    private SharePointChangeTokenCodec() {
+    }
+
+    public static String encode(ChangeToken token) {
+        if (token == null) {
+            return null;
+        }
+        return encode(token.getScope(), token.getScopeId(), token.getChangeTime().getTime(), token.getChangeNumber(), token.getVersion());
+    }
+
+    public static String encode(SharePointChangeTokenDto token) {
+        if (token == null) {
+            return null;
+        }
+        return encode(token.getScope(), token.getScopeId(), token.getDate(), token.getChangeNumber(), token.getVersion());
+    }
+
+    private static String encode(ChangeTokenScope scope, String scopeId, long time, int changeNumber, int version) {
+        String scopeName = scope == null ? "" : scope.name();
+        String id = scopeId == null ? "" : scopeId;
+        if (id.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Illegal change token scope id: " + scopeId);
+        }
+        return new StringBuilder(scopeName.length() + id.length() + 40)
+                .append(VERSION_1).append(SEPARATOR)
+                .append(scopeName).append(SEPARATOR)
+                .append(id).append(SEPARATOR)
+                .append(time).append(SEPARATOR)
+                .append(changeNumber).append(SEPARATOR)
+                .append(version)
+                .toString();
+    }
+
+    public static SharePointChangeTokenDto decode(String token) {
+        if (token == null) {
+            return null;
+        }
+        if (token.startsWith("{")) {
+            return decodeLegacyJson(token);
+        }
+        if (token.length() < 2 || token.charAt(0) != VERSION_1 || token.charAt(1) != SEPARATOR) {
+            throw illegal(token, null);
+        }
+        int scopeEnd = token.indexOf(SEPARATOR, 2);
+        int idEnd = scopeEnd < 0 ? -1 : token.indexOf(SEPARATOR, scopeEnd + 1);
+        int timeEnd = idEnd < 0 ? -1 : token.indexOf(SEPARATOR, idEnd + 1);
+        int numberEnd = timeEnd < 0 ? -1 : token.indexOf(SEPARATOR, timeEnd + 1);
+        if (numberEnd < 0 || token.indexOf(SEPARATOR, numberEnd + 1) >= 0) {
+            throw illegal(token, null);
+        }
+        SharePointChangeTokenDto dto = new SharePointChangeTokenDto();
+        dto.setScope(scope(token, 2, scopeEnd));
+        dto.setScopeId(idEnd == scopeEnd + 1 ? null : token.substring(scopeEnd + 1, idEnd));
+        dto.setDate(parseLong(token, idEnd + 1, timeEnd));
+        dto.setChangeNumber((int) parseLong(token, timeEnd + 1, numberEnd));
+        dto.setVersion((int) parseLong(token, numberEnd + 1, token.length()));
+        return dto;
+    }
+
+    private static SharePointChangeTokenDto decodeLegacyJson(String token) {
+        try {
+            return legacyMapper.readValue(token, SharePointChangeTokenDto.class);
+        } catch (IOException e) {
+            throw illegal(token, e);
+        }
+    }
+
+    private static ChangeTokenScope scope(String token, int from, int to) {
+        if (from == to) {
+            return null;
+        }
+        for (ChangeTokenScope scope : SCOPES) {
+            String name = scope.name();
+            if (name.length() == to - from && token.regionMatches(from, name, 0, name.length())) {
+                return scope;
+            }
+        }
+        throw illegal(token, null);
+    }
+
+    private static long parseLong(String token, int from, int to) {
+        boolean negative = from < to && token.charAt(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to || to - i > 18) {
+            throw illegal(token, null);
+        }
+        long result = 0;
+        for (; i < to; i++) {
+            int digit = token.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw illegal(token, null);
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    private static RuntimeException illegal(String token, Exception cause) {
+        return new RuntimeException("Failed to read illegal SharePoint changeToken string " + token, cause);
+    }
+}
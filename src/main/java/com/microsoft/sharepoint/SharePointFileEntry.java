@@ -0,0 +1,50 @@
+package com.microsoft.sharepoint;
+
+import java.util.Objects;
+
+/**
+ * An entry of a folder's Files collection - the name and server relative URL of a file.
+ */
+public class SharePointFileEntry {
+
+    private String name;
+    private String serverRelativeUrl;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getServerRelativeUrl() {
+        return serverRelativeUrl;
+    }
+
+    public void setServerRelativeUrl(String serverRelativeUrl) {
+        this.serverRelativeUrl = serverRelativeUrl;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SharePointFileEntry that = (SharePointFileEntry) o;
+        return Objects.equals(name, that.name) &&
+                Objects.equals(serverRelativeUrl, that.serverRelativeUrl);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, serverRelativeUrl);
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointFileEntry{" +
+                "name='" + name + '\'' +
+                ", serverRelativeUrl='" + serverRelativeUrl + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.queryoptions.IFilterRestriction;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps files with one of the given extensions and all folders, e.g.
+ * {@code ((FSObjType eq 1) or (File_x0020_Type eq 'docx') or (File_x0020_Type eq 'xlsx'))}.
+ * <p>
+ * Folders are always kept so traversal below them still works. The extensions are compared by SharePoint without
+ * the leading dot.
+ */
+public class SharePointFileTypeRestriction implements IFilterRestriction {
+
+    // Each extension adds ~30 characters to the URL, SharePoint rejects URLs over 2048 characters on some farms
+    public static final int MAX_EXTENSIONS = 40;
+
+    private Set<String> extensions;
+
+    public SharePointFileTypeRestriction(Collection<String> extensions) {
+        if (extensions == null) {
+            throw new IllegalArgumentException("extensions");
+        }
+        Set<String> normalized = new TreeSet<>();
+        for (String extension : extensions) {
+            if (extension == null) {
+                continue;
+            }
+            extension = extension.trim().toLowerCase(Locale.ROOT);
+            while (extension.startsWith(".") || extension.startsWith("*")) {
+                extension = extension.substring(1);
+            }
+            if (!extension.isEmpty()) {
+                normalized.add(extension);
+            }
+        }
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("extensions");
+        }
+        this.extensions = Collections.unmodifiableSet(normalized);
+    }
+
+    /**
+     * @return the restriction, null when there are no extensions or too many to send as a filter
+     */
+    public static SharePointFileTypeRestriction of(Collection<String> extensions) {
+        if (extensions == null || extensions.isEmpty() || extensions.size() > MAX_EXTENSIONS) {
+            return null;
+        }
+        try {
+            return new SharePointFileTypeRestriction(extensions);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SharePointFileTypeRestriction that = (SharePointFileTypeRestriction) o;
+        return Objects.equals(extensions, that.extensions);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(extensions);
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder("((FSObjType eq 1)");
+        for (String extension : extensions) {
+            sb.append(" or (File_x0020_Type eq '").append(extension.replace("'", "''")).append("')");
+        }
+        return sb.append(')').toString();
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Rebuilds the folder structure of a list from its items, which a recursive list query returns in ID order rather
+ * than folder by folder. Each item is added by its server relative path (FileRef); folders that contain items but
+ * were not returned themselves (e.g. filtered out) are created from the paths of their items.
+ * <p>
+ * Items come in ID order, so any folder can still get items until the last page: the listings are available once all
+ * items were added. To keep that bounded by the folder count rather than the item count, a folder keeps the names of
+ * its sub folders but only the number of its files - the files themselves are streamed as they are listed.
+ */
+public class SharePointFolderTree {
+
+    private final String rootPath;
+
+    // sorted by path, so a folder comes before its sub folders
+    private final Map<String, FolderListing> folders = Maps.newTreeMap();
+
+    /**
+     * @param rootPath server relative path of the list root folder; items outside it are ignored. Null accepts any
+     *                 path and roots the tree at the top most folders seen.
+     */
+    public SharePointFolderTree(String rootPath) {
+        this.rootPath = rootPath == null ? null : trimSlash(rootPath);
+        if (this.rootPath != null) {
+            folders.put(this.rootPath, new FolderListing(this.rootPath));
+        }
+    }
+
+    /**
+     * @param path   server relative path of the item
+     * @param folder true for folder items
+     * @return false if the path is outside the root
+     */
+    public boolean add(String path, boolean folder) {
+        if (path == null) {
+            return false;
+        }
+        path = trimSlash(path);
+        if (!isUnderRoot(path)) {
+            return false;
+        }
+        if (folder) {
+            addFolder(path);
+        } else {
+            FolderListing parent = getParent(path);
+            if (parent != null) {
+                parent.fileCount++;
+            }
+        }
+        return true;
+    }
+
+    public int getFolderCount() {
+        return folders.size();
+    }
+
+    /**
+     * @return the listing of the folder, null if no item in or of it was added
+     */
+    public FolderListing getListing(String path) {
+        return path == null ? null : folders.get(trimSlash(path));
+    }
+
+    /**
+     * Passes every folder's listing, a folder before its sub folders.
+     */
+    public void forEach(Consumer<FolderListing> consumer) {
+        folders.values().forEach(consumer);
+    }
+
+    private void addFolder(String path) {
+        if (folders.containsKey(path)) {
+            return;
+        }
+        folders.put(path, new FolderListing(path));
+        FolderListing parent = getParent(path);
+        if (parent != null) {
+            parent.subFolders.add(name(path));
+        }
+    }
+
+    private FolderListing getParent(String path) {
+        int index = path.lastIndexOf('/');
+        if (index <= 0 || path.equals(rootPath)) {
+            return null;
+        }
+        String parentPath = path.substring(0, index);
+        if (!isUnderRoot(parentPath)) {
+            return null;
+        }
+        addFolder(parentPath);
+        return folders.get(parentPath);
+    }
+
+    private boolean isUnderRoot(String path) {
+        return rootPath == null || path.equals(rootPath) ||
+                (path.length() > rootPath.length() && path.charAt(rootPath.length()) == '/' && path.startsWith(rootPath));
+    }
+
+    private static String name(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static String trimSlash(String path) {
+        return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    public static class FolderListing {
+        private final String path;
+        private final List<String> subFolders = Lists.newArrayList();
+        private int fileCount;
+
+        private FolderListing(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public List<String> getSubFolders() {
+            return Collections.unmodifiableList(subFolders);
+        }
+
+        public int getFileCount() {
+            return fileCount;
+        }
+
+        @Override
+        public String toString() {
+            return "FolderListing{" +
+                    "path='" + path + '\'' +
+                    ", subFolders=" + subFolders.size() +
+                    ", files=" + fileCount +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.microsoft.sharepoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class SharePointHttpResponse {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final byte[] body;
+
+    public SharePointHttpResponse(int status, Map<String, String> headers, byte[] body) {
+        this.status = status;
+        TreeMap<String, String> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            caseInsensitive.putAll(headers);
+        }
+        this.headers = Collections.unmodifiableMap(caseInsensitive);
+        this.body = body == null ? new byte[0] : body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public InputStream getContent() {
+        return new ByteArrayInputStream(body);
+    }
+
+    public String getBodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointHttpResponse{" +
+                "status=" + status +
+                ", length=" + body.length +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.microsoft.sharepoint;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A request sent through the {@link SharePointHttpTransport} was answered with an unsuccessful status. Keeps the status
+ * and the Retry-After delay, so callers can tell throttling (429/503) from other failures without reading the message.
+ */
+public class SharePointHttpStatusException extends RuntimeException {
+
+    private final int status;
+    private final long retryAfterMillis;
+
+    public SharePointHttpStatusException(String message, SharePointHttpResponse response) {
+        super(message + ", status " + response.getStatus());
+        this.status = response.getStatus();
+        this.retryAfterMillis = parseRetryAfter(response.getHeader("Retry-After"), System.currentTimeMillis());
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the delay the server asked for, -1 when it sent no (readable) Retry-After header
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public boolean isThrottling() {
+        return status == 429 || status == 503 || retryAfterMillis >= 0;
+    }
+
+    /**
+     * @param value delay seconds or an HTTP date, e.g. {@code 120} or {@code Wed, 21 Oct 2015 07:28:00 GMT}
+     * @return the delay in millis, -1 when the value is missing or unreadable
+     */
+    static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // not delay seconds, try an HTTP date
+        }
+        try {
+            long at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - nowMillis);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
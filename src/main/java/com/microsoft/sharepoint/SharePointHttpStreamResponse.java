@@ -0,0 +1,64 @@
+package com.microsoft.sharepoint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A response whose body is still on the connection: {@link #getContent()} reads it as it arrives, and closing the
+ * response without reading the body drops the rest of it.
+ */
+public class SharePointHttpStreamResponse implements Closeable {
+
+    private final int status;
+    private final Map<String, String> headers;
+    private final InputStream content;
+
+    public SharePointHttpStreamResponse(int status, Map<String, String> headers, InputStream content) {
+        this.status = status;
+        TreeMap<String, String> caseInsensitive = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        if (headers != null) {
+            caseInsensitive.putAll(headers);
+        }
+        this.headers = Collections.unmodifiableMap(caseInsensitive);
+        this.content = content;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @return the body, closing it closes the response
+     */
+    public InputStream getContent() {
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        content.close();
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointHttpStreamResponse{" +
+                "status=" + status +
+                '}';
+    }
+}
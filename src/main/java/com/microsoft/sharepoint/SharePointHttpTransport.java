@@ -0,0 +1,26 @@
+package com.microsoft.sharepoint;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Sends one authenticated HTTP request to SharePoint. Authentication (NTLM, cookies, bearer tokens) is up to the
+ * implementation - the connector only builds the requests, e.g. the {@code $batch} requests of
+ * {@link SharePointBatchExecutor}.
+ */
+@FunctionalInterface
+public interface SharePointHttpTransport {
+
+    SharePointHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException;
+
+    /**
+     * Sends a request without a body and returns once the status and headers are read, leaving the body on the
+     * connection - used for file downloads, whose body may not fit in memory. The caller closes the response.
+     * <p>
+     * The default reads the whole body through {@link #execute}; transports used for large downloads override it.
+     */
+    default SharePointHttpStreamResponse executeStreaming(String method, String url, Map<String, String> headers) throws IOException {
+        SharePointHttpResponse response = execute(method, url, headers, null);
+        return new SharePointHttpStreamResponse(response.getStatus(), response.getHeaders(), response.getContent());
+    }
+}
@@ -0,0 +1,121 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Encoding/decoding of SharePoint internal names, where every character that is not allowed in an
+ * internal name is escaped as {@code _xHHHH_} (e.g. {@code Shared_x0020_Documents}).
+ * <p>
+ * The same library titles and entity type names are decoded again on every scan, so decoded names
+ * are kept in a small bounded cache.
+ */
+public final class SharePointInternalNames {
+
+    private static final int DECODED_CACHE_SIZE = 4096;
+
+    private static final int ESCAPE_LENGTH = 7; // _xHHHH_
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final Cache<String, String> decodedNames = CacheBuilder.newBuilder()
+            .maximumSize(DECODED_CACHE_SIZE)
+            .build();
+
+    private SharePointInternalNames() {
+    }
+
+    public static String decode(String name) {
+        if (name == null || name.isEmpty() || name.indexOf("_x") < 0) {
+            return name;
+        }
+        String decoded = decodedNames.getIfPresent(name);
+        if (decoded == null) {
+            decoded = decodeUncached(name);
+            decodedNames.put(name, decoded);
+        }
+        return decoded;
+    }
+
+    static String decodeUncached(String name) {
+        int length = name.length();
+        char[] result = new char[length];
+        int resultLength = 0;
+        int i = 0;
+        while (i < length) {
+            char c = name.charAt(i);
+            if (c == '_' && isEscapeAt(name, i)) {
+                result[resultLength++] = (char) hexValue(name, i + 2);
+                i += ESCAPE_LENGTH;
+            } else {
+                result[resultLength++] = c;
+                i++;
+            }
+        }
+        return new String(result, 0, resultLength);
+    }
+
+    /**
+     * Escapes every character other than ASCII letters, digits and {@code . - * _} as {@code _xHHHH_}.
+     * An underscore that would otherwise be read back as the start of an escape is escaped as well,
+     * so {@code decode(encode(s))} always returns {@code s}.
+     */
+    public static String encode(String name) {
+        if (name == null) {
+            return null;
+        }
+        int length = name.length();
+        int i = 0;
+        while (i < length && !needsEscape(name, i)) {
+            i++;
+        }
+        if (i == length) {
+            return name;
+        }
+
+        StringBuilder sb = new StringBuilder(length + 16);
+        sb.append(name, 0, i);
+        for (; i < length; i++) {
+            char c = name.charAt(i);
+            if (needsEscape(name, i)) {
+                sb.append('_').append('x')
+                        .append(HEX_DIGITS[(c >> 12) & 0xF])
+                        .append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF])
+                        .append(HEX_DIGITS[c & 0xF])
+                        .append('_');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean needsEscape(String name, int i) {
+        char c = name.charAt(i);
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*') {
+            return false;
+        }
+        return c != '_' || isEscapeAt(name, i);
+    }
+
+    private static boolean isEscapeAt(String name, int i) {
+        return i + ESCAPE_LENGTH <= name.length()
+                && name.charAt(i + 1) == 'x'
+                && name.charAt(i + 6) == '_'
+                && hexValue(name, i + 2) >= 0;
+    }
+
+    private static int hexValue(String name, int from) {
+        int result = 0;
+        for (int i = from; i < from + 4; i++) {
+            int digit = Character.digit(name.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            result = result << 4 | digit;
+        }
+        return result;
+    }
+}
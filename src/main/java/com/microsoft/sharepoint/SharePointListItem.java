@@ -1,51 +1,118 @@
 package com.microsoft.sharepoint;
 
 import com.middleware.share.FileSystemObjectType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.time.format.DateTimeParseException;
+
+/**
+ * A single list item as returned by the list items REST call.
+ * <p>
+ * Ids, timestamps (epoch millis, UTC), size and the object type are kept as primitives; the String getters and
+ * setters are kept for existing callers and convert on the way in/out. A Created/Modified value that would not
+ * format back to the same String (no trailing Z, unparsable, normalized by parsing) is kept as given.
+ */
 public class SharePointListItem {
 
+    private static final Logger logger = LoggerFactory.getLogger(SharePointListItem.class);
+
+    public static final int NO_ID = -1;
+    public static final long NO_TIME = Long.MIN_VALUE;
+    public static final long NO_SIZE = -1L;
+    static final byte NO_OBJECT_TYPE = -1;
+
+    private static final FileSystemObjectType[] OBJECT_TYPES = FileSystemObjectType.values();
+
     String fileRef;
 
-    String id;
+    SharePointPath fileRefPath;
+
+    int id = NO_ID;
 
     boolean listItemHavingUniqueAcls;
 
-    FileSystemObjectType fileSystemObjectType;
-    private String authorId;
-    private String modified;
-    private String created;
+    byte fileSystemObjectType = NO_OBJECT_TYPE;
+    int authorId = NO_ID;
+    long modified = NO_TIME;
+    long created = NO_TIME;
+    // The server's value when formatting the time does not give it back, otherwise null
+    String modifiedText;
+    String createdText;
     private String loginName;
-    private Long size;
+    long size = NO_SIZE;
 
     @Override
     public String toString() {
         final StringBuffer sb = new StringBuffer("SharePointListItem{");
-        sb.append("fileRef='").append(fileRef).append('\'');
-        sb.append(", id='").append(id).append('\'');
+        sb.append("fileRef='").append(getFileRef()).append('\'');
+        sb.append(", id='").append(getId()).append('\'');
         sb.append(", listItemHavingUniqueAcls=").append(listItemHavingUniqueAcls);
-        sb.append(", fileSystemObjectType=").append(fileSystemObjectType);
-        sb.append(", authorId='").append(authorId).append('\'');
-        sb.append(", modified='").append(modified).append('\'');
-        sb.append(", created='").append(created).append('\'');
+        sb.append(", fileSystemObjectType=").append(getFileSystemObjectType());
+        sb.append(", authorId='").append(getAuthorId()).append('\'');
+        sb.append(", modified='").append(getModified()).append('\'');
+        sb.append(", created='").append(getCreated()).append('\'');
         sb.append(", loginName='").append(loginName).append('\'');
-        sb.append(", size=").append(size);
+        sb.append(", size=").append(getSize());
         sb.append('}');
         return sb.toString();
     }
-    
+
+    /**
+     * Resets every field so the instance can be reused as a flyweight (see {@link SharePointListItemColumns#read}).
+     */
+    void clear() {
+        fileRef = null;
+        fileRefPath = null;
+        id = NO_ID;
+        listItemHavingUniqueAcls = false;
+        fileSystemObjectType = NO_OBJECT_TYPE;
+        authorId = NO_ID;
+        modified = NO_TIME;
+        created = NO_TIME;
+        modifiedText = null;
+        createdText = null;
+        loginName = null;
+        size = NO_SIZE;
+    }
+
     public String getFileRef() {
+        if (fileRef == null && fileRefPath != null) {
+            return fileRefPath.toString();
+        }
         return fileRef;
     }
 
     public void setFileRef(String fileRef) {
         this.fileRef = fileRef;
+        this.fileRefPath = null;
+    }
+
+    public SharePointPath getFileRefPath() {
+        return fileRefPath;
+    }
+
+    /**
+     * Keeps the file ref as an interned path node instead of a String; {@link #getFileRef()} materializes it on demand.
+     */
+    public void setFileRefPath(SharePointPath fileRefPath) {
+        this.fileRefPath = fileRefPath;
+        this.fileRef = null;
     }
 
     public String getId() {
+        return id == NO_ID ? null : Integer.toString(id);
+    }
+
+    public int getIdAsInt() {
         return id;
     }
 
     public void setId(String id) {
+        this.id = parseId(id, "id");
+    }
+
+    public void setIdAsInt(int id) {
         this.id = id;
     }
 
@@ -58,37 +125,81 @@ public class SharePointListItem {
     }
 
     public FileSystemObjectType getFileSystemObjectType() {
-        return fileSystemObjectType;
+        return fileSystemObjectType == NO_OBJECT_TYPE ? null : OBJECT_TYPES[fileSystemObjectType];
     }
 
     public void setFileSystemObjectType(FileSystemObjectType fileSystemObjectType) {
-        this.fileSystemObjectType = fileSystemObjectType;
+        this.fileSystemObjectType = fileSystemObjectType == null ? NO_OBJECT_TYPE : (byte) fileSystemObjectType.ordinal();
+    }
+
+    /**
+     * @param ordinal the REST FileSystemObjectType value (which is the enum ordinal), e.g. 1 for a folder
+     */
+    public void setFileSystemObjectTypeOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= OBJECT_TYPES.length) {
+            throw new IllegalArgumentException("Unknown FileSystemObjectType: " + ordinal);
+        }
+        this.fileSystemObjectType = (byte) ordinal;
+    }
+
+    public boolean isFolder() {
+        return fileSystemObjectType == FileSystemObjectType.FOLDER.ordinal();
     }
 
     public void setAuthorId(String authorId) {
-        this.authorId = authorId;
+        this.authorId = parseId(authorId, "author id");
     }
 
     public String getAuthorId() {
+        return authorId == NO_ID ? null : Integer.toString(authorId);
+    }
+
+    public int getAuthorIdAsInt() {
         return authorId;
     }
 
+    /**
+     * @param modified in the REST layout ({@code yyyy-MM-dd'T'HH:mm:ssZ})
+     */
     public void setModified(String modified) {
-        this.modified = modified;
+        this.modified = parseTime(modified, "modified");
+        this.modifiedText = keepText(modified, this.modified);
     }
 
+    /**
+     * @return the modification time as the server sent it
+     */
     public String getModified() {
+        return modifiedText != null ? modifiedText : formatTime(modified);
+    }
+
+    public long getModifiedTime() {
         return modified;
     }
 
+    public void setModifiedTime(long modified) {
+        this.modified = modified;
+        this.modifiedText = null;
+    }
+
     public void setCreated(String created) {
-        this.created = created;
+        this.created = parseTime(created, "created");
+        this.createdText = keepText(created, this.created);
     }
 
     public String getCreated() {
+        return createdText != null ? createdText : formatTime(created);
+    }
+
+    public long getCreatedTime() {
         return created;
     }
 
+    public void setCreatedTime(long created) {
+        this.created = created;
+        this.createdText = null;
+    }
+
     public void setLoginName(String loginName) {
         this.loginName = loginName;
     }
@@ -98,10 +209,53 @@ public class SharePointListItem {
     }
 
     public Long getSize() {
-        return size;
+        return size == NO_SIZE ? null : size;
     }
 
     public void setSize(Long size) {
+        this.size = size == null ? NO_SIZE : size;
+    }
+
+    public long getSizeValue() {
+        return size;
+    }
+
+    public void setSizeValue(long size) {
         this.size = size;
     }
+
+    private static int parseId(String value, String field) {
+        if (value == null) {
+            return NO_ID;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring non numeric list item {}: {}", field, value);
+            return NO_ID;
+        }
+    }
+
+    private static long parseTime(String value, String field) {
+        if (value == null) {
+            return NO_TIME;
+        }
+        try {
+            return SharePointTimestampParser.parseEpochMillis(value, value.endsWith("Z"));
+        } catch (DateTimeParseException e) {
+            logger.warn("Ignoring unparsable list item {} time: {}", field, value);
+            return NO_TIME;
+        }
+    }
+
+    private static String keepText(String value, long time) {
+        if (value == null || (time != NO_TIME && SharePointTimestampParser.isCanonical(value))) {
+            return null;
+        }
+        return value;
+    }
+
+    private static String formatTime(long time) {
+        return time == NO_TIME ? null : SharePointTimestampParser.format(time, true);
+    }
 }
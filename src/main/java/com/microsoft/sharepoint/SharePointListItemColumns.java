@@ -0,0 +1,174 @@
+package com.microsoft.sharepoint;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar form of a list items page - one primitive array per field instead of one object per item.
+ * <p>
+ * Rows are appended while parsing and read back either into a reused {@link SharePointListItem}
+ * ({@link #read(int, SharePointListItem)}) for bulk conversion, or materialized with {@link #toItems()}.
+ */
+public class SharePointListItemColumns implements Serializable {
+
+    private static final int DEFAULT_CAPACITY = 128;
+
+    private int size;
+
+    // Per row either the String or the interned path is set
+    private String[] fileRefs;
+    private transient SharePointPath[] fileRefPaths;
+    private int[] ids;
+    private int[] authorIds;
+    private long[] modified;
+    private long[] created;
+    // Allocated once a row keeps its server time value (see SharePointListItem), otherwise null
+    private String[] modifiedTexts;
+    private String[] createdTexts;
+    private long[] sizes;
+    private byte[] objectTypes;
+    private boolean[] uniqueAcls;
+    private String[] loginNames;
+
+    public SharePointListItemColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SharePointListItemColumns(int capacity) {
+        capacity = Math.max(capacity, 1);
+        fileRefs = new String[capacity];
+        fileRefPaths = new SharePointPath[capacity];
+        ids = new int[capacity];
+        authorIds = new int[capacity];
+        modified = new long[capacity];
+        created = new long[capacity];
+        sizes = new long[capacity];
+        objectTypes = new byte[capacity];
+        uniqueAcls = new boolean[capacity];
+        loginNames = new String[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void add(SharePointListItem item) {
+        if (size == ids.length) {
+            grow();
+        }
+        int row = size++;
+        fileRefs[row] = item.fileRef;
+        fileRefPaths[row] = item.fileRefPath;
+        ids[row] = item.id;
+        authorIds[row] = item.authorId;
+        modified[row] = item.modified;
+        created[row] = item.created;
+        if (item.modifiedText != null || item.createdText != null) {
+            if (modifiedTexts == null) {
+                modifiedTexts = new String[ids.length];
+                createdTexts = new String[ids.length];
+            }
+            modifiedTexts[row] = item.modifiedText;
+            createdTexts[row] = item.createdText;
+        }
+        sizes[row] = item.size;
+        objectTypes[row] = item.fileSystemObjectType;
+        uniqueAcls[row] = item.listItemHavingUniqueAcls;
+        loginNames[row] = item.getLoginName();
+    }
+
+    /**
+     * Fills {@code target} with the given row and returns it. The instance is overwritten on the next call,
+     * so callers must not keep it.
+     */
+    public SharePointListItem read(int row, SharePointListItem target) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        target.clear();
+        if (fileRefPaths != null && fileRefPaths[row] != null) {
+            target.setFileRefPath(fileRefPaths[row]);
+        } else {
+            target.setFileRef(fileRefs[row]);
+        }
+        target.id = ids[row];
+        target.authorId = authorIds[row];
+        target.modified = modified[row];
+        target.created = created[row];
+        if (modifiedTexts != null) {
+            target.modifiedText = modifiedTexts[row];
+            target.createdText = createdTexts[row];
+        }
+        target.size = sizes[row];
+        target.fileSystemObjectType = objectTypes[row];
+        target.listItemHavingUniqueAcls = uniqueAcls[row];
+        target.setLoginName(loginNames[row]);
+        return target;
+    }
+
+    /**
+     * Replaces the rows' file ref Strings by nodes interned into {@code pathTable}.
+     */
+    public void internFileRefs(SharePointPathTable pathTable) {
+        for (int row = 0; row < size; row++) {
+            if (fileRefs[row] != null && fileRefPaths[row] == null) {
+                fileRefPaths[row] = pathTable.intern(fileRefs[row]);
+                fileRefs[row] = null;
+            }
+        }
+    }
+
+    public List<SharePointListItem> toItems() {
+        List<SharePointListItem> items = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            items.add(read(row, new SharePointListItem()));
+        }
+        return items;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        fileRefs = Arrays.copyOf(fileRefs, capacity);
+        fileRefPaths = Arrays.copyOf(fileRefPaths, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        authorIds = Arrays.copyOf(authorIds, capacity);
+        modified = Arrays.copyOf(modified, capacity);
+        created = Arrays.copyOf(created, capacity);
+        if (modifiedTexts != null) {
+            modifiedTexts = Arrays.copyOf(modifiedTexts, capacity);
+            createdTexts = Arrays.copyOf(createdTexts, capacity);
+        }
+        sizes = Arrays.copyOf(sizes, capacity);
+        objectTypes = Arrays.copyOf(objectTypes, capacity);
+        uniqueAcls = Arrays.copyOf(uniqueAcls, capacity);
+        loginNames = Arrays.copyOf(loginNames, capacity);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // Path nodes are not serializable - write the materialized form of the rows that hold one
+        String[] pathFileRefs = new String[size];
+        for (int row = 0; row < size; row++) {
+            if (fileRefPaths[row] != null) {
+                pathFileRefs[row] = fileRefPaths[row].toString();
+            }
+        }
+        out.writeObject(pathFileRefs);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        String[] pathFileRefs = (String[]) in.readObject();
+        for (int row = 0; row < pathFileRefs.length; row++) {
+            if (pathFileRefs[row] != null) {
+                fileRefs[row] = pathFileRefs[row];
+            }
+        }
+        fileRefPaths = new SharePointPath[ids.length];
+    }
+}
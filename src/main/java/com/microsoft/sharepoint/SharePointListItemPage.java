@@ -7,8 +7,14 @@ public class SharePointListItemPage implements Serializable {
 
     List<SharePointListItem> items;
 
+    SharePointListItemColumns columns;
+
     String nextUrl;
 
+    long responseBytes = -1;
+
+    long parseNanos = -1;
+
     public SharePointListItemPage() {
     }
 
@@ -16,12 +22,37 @@ public class SharePointListItemPage implements Serializable {
         this.items = result;
     }
 
+    public SharePointListItemPage(SharePointListItemColumns columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * For a columnar page the item objects are materialized on first access.
+     */
     public List<SharePointListItem> getItems() {
+        if (items == null && columns != null) {
+            items = columns.toItems();
+        }
         return items;
     }
 
+    public int size() {
+        if (columns != null) {
+            return columns.size();
+        }
+        return items == null ? 0 : items.size();
+    }
+
     public void setItems(List<SharePointListItem> items) {
         this.items = items;
+        this.columns = null;
+    }
+
+    /**
+     * @return the columnar form, or null when the page was built from item objects
+     */
+    public SharePointListItemColumns getColumns() {
+        return columns;
     }
 
     public String getNextUrl() {
@@ -31,4 +62,26 @@ public class SharePointListItemPage implements Serializable {
     public void setNextUrl(String nextUrl) {
         this.nextUrl = nextUrl;
     }
+
+    /**
+     * @return size of the response the page was parsed from, -1 if unknown
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    public void setResponseBytes(long responseBytes) {
+        this.responseBytes = responseBytes;
+    }
+
+    /**
+     * @return time spent reading and parsing the response, -1 if unknown
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    public void setParseNanos(long parseNanos) {
+        this.parseNanos = parseNanos;
+    }
 }
@@ -0,0 +1,121 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.queryoptions.IQueryOption;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The list item fields a scan needs. Generates the matching {@code $select}/{@code $expand} query options, so
+ * SharePoint sends only those fields, and is understood by
+ * {@link SharePointParseUtils#parseSharePointListItems(java.io.InputStream, SharePointPathTable, SharePointListItemProjection)}.
+ * <p>
+ * E.g. {@link #METADATA} - FileRef, Id, object type, unique ACLs, Modified and Length, without the Author expansion.
+ */
+public final class SharePointListItemProjection {
+
+    public enum Field {
+        ID("Id", null),
+        FILE_REF("FileRef", null),
+        OBJECT_TYPE("FileSystemObjectType", null),
+        UNIQUE_ACLS("HasUniqueRoleAssignments", null),
+        AUTHOR_ID("AuthorId", null),
+        MODIFIED("Modified", null),
+        CREATED("Created", null),
+        AUTHOR_LOGIN("Author/LoginName", "Author"),
+        LENGTH("File/Length", "File");
+
+        private final String select;
+        private final String expand;
+
+        Field(String select, String expand) {
+            this.select = select;
+            this.expand = expand;
+        }
+    }
+
+    public static final SharePointListItemProjection FULL = of(EnumSet.allOf(Field.class));
+
+    public static final SharePointListItemProjection METADATA = of(EnumSet.of(
+            Field.ID, Field.FILE_REF, Field.OBJECT_TYPE, Field.UNIQUE_ACLS, Field.MODIFIED, Field.LENGTH));
+
+    private final Set<Field> fields;
+    private final String select;
+    private final String expand;
+
+    private SharePointListItemProjection(Set<Field> fields) {
+        this.fields = Collections.unmodifiableSet(EnumSet.copyOf(fields));
+        Set<String> selects = new LinkedHashSet<>();
+        Set<String> expands = new LinkedHashSet<>();
+        for (Field field : this.fields) {
+            selects.add(field.select);
+            if (field.expand != null) {
+                expands.add(field.expand);
+            }
+        }
+        this.select = String.join(",", selects);
+        this.expand = expands.isEmpty() ? null : String.join(",", expands);
+    }
+
+    public static SharePointListItemProjection of(Field first, Field... rest) {
+        return new SharePointListItemProjection(EnumSet.of(first, rest));
+    }
+
+    public static SharePointListItemProjection of(Set<Field> fields) {
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("A projection needs at least one field");
+        }
+        return new SharePointListItemProjection(fields);
+    }
+
+    public boolean contains(Field field) {
+        return fields.contains(field);
+    }
+
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    public String getSelect() {
+        return select;
+    }
+
+    /**
+     * @return the navigation properties to expand, null when none is needed
+     */
+    public String getExpand() {
+        return expand;
+    }
+
+    public void addQueryOptions(List<IQueryOption> queryOptions) {
+        queryOptions.add(new ODataOption("$select", select));
+        if (expand != null) {
+            queryOptions.add(new ODataOption("$expand", expand));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointListItemProjection{" +
+                "fields=" + fields +
+                '}';
+    }
+
+    private static class ODataOption implements IQueryOption {
+        private final String name;
+        private final String value;
+
+        private ODataOption(String name, String value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + value;
+        }
+    }
+}
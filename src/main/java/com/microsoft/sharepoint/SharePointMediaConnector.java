@@ -17,6 +17,8 @@ import com.progress.ProgressTracker;
 import com.utils.FileTypeUtils;
 import com.utils.Pair;
 import com.utils.TimeSource;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.middleware.share.*;
@@ -28,11 +30,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.*;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -49,6 +56,14 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
             "/iwconvertedforms", "/formservertemplates", "/sitepages", "/m");
     private static final String EXCLUDED_LIB_PREFIX = "odata__";
 
+    private static final int DEFAULT_CHANGES_PAGE_SIZE = 1000;
+
+    // Widest ID range read in one query when converting a page of list items (the list view threshold)
+    private static final int MAX_LIST_ITEMS_ID_RANGE = 5000;
+
+    // Separates the listing from the offset in browse cursors of listings kept between pages
+    private static final char BROWSE_CURSOR_SEPARATOR = ':';
+
     private String host;
     private String port;
     private String scheme;
@@ -65,6 +80,39 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
     private TimeSource timeSource = TimeSource.create();
 
+    private int changesPageSize = DEFAULT_CHANGES_PAGE_SIZE;
+
+    private SharePointHttpTransport httpTransport;
+    private volatile SharePointBatchExecutor batchExecutor;
+    private final AtomicInteger listPermissionLookups = new AtomicInteger();
+
+    private SharePointListItemProjection listItemProjection;
+
+    private SharePointAdaptivePageSizer pageSizer;
+
+    private Function<ScanTaskParameters, Collection<String>> fileTypeExtensionsResolver;
+    private boolean folderScopedListing;
+    // Set on the connector of one scan only, see scanConnector
+    private SharePointFileTypeRestriction scanFileTypeRestriction;
+    private final Set<String> fileTypeFilterFailedLists = ConcurrentHashMap.newKeySet();
+
+    private Function<ScanTaskParameters, SharePointTraversalMode> traversalModeResolver;
+    private Function<SharePointFolderTree.FolderListing, DirListingPayload> dirListingFactory;
+    private boolean searchSiteDiscovery;
+    private SharePointRangedDownload rangedDownload;
+
+    // Sorted listings of the folders browsed in pages without the transport, by folder and listing
+    private final Cache<String, List<ServerResourceDto>> browseListings = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicLong listItemPages = new AtomicLong();
+    private final AtomicLong listItemResponseBytes = new AtomicLong();
+    private final AtomicLong listItemParseNanos = new AtomicLong();
+
+    private final SharePointChangeHeadTracker changeHeadTracker = new SharePointChangeHeadTracker(this::getChangesAfter);
+
     protected SharePointMediaConnector(SharePointConnectionParametersDto sharePointConnectionDetailsDto,
                                        MSAppInfo appInfo,
                                        int maxRetries,
@@ -175,12 +223,32 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
     private SharePointMediaConnector recreateConnectorWithAdjustedParams(String basePathAddendum) {
         logger.trace("Recreating sharepoint-connector with addendum: {}", basePathAddendum);
+        return recreateConnector(SharePointParseUtils.normalizePath(url + "/" + basePathAddendum));
+    }
+
+    /**
+     * The listing of a list by the recursive action goes through {@link #listItems} without the scan, so a scan with a
+     * file type restriction hands the action a connector of its own that applies it. This connector's
+     * {@link #listItems} stays unfiltered for everyone else.
+     *
+     * @return this connector when there is no restriction
+     */
+    private SharePointMediaConnector scanConnector(SharePointFileTypeRestriction fileTypeRestriction) {
+        if (fileTypeRestriction == null) {
+            return this;
+        }
+        SharePointMediaConnector connector = recreateConnector(url);
+        connector.scanFileTypeRestriction = fileTypeRestriction;
+        return connector;
+    }
+
+    private SharePointMediaConnector recreateConnector(String connectorUrl) {
         SharePointConnectionParametersDto dto = new SharePointConnectionParametersDto();
         dto.setUsername(userName);
         dto.setPassword(password);
         dto.setDomain(domain);
-        dto.setUrl(SharePointParseUtils.normalizePath(url + "/" + basePathAddendum));
-        return new SharePointMediaConnector(dto,
+        dto.setUrl(connectorUrl);
+        SharePointMediaConnector connector = new SharePointMediaConnector(dto,
                 appInfo,
                 maxRetries,
                 pageSize,
@@ -194,6 +262,18 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                 maxIdenticalNameInPath,
                 pathMismatchSkip,
                 charsToFilter);
+        connector.setChangesPageSize(changesPageSize);
+        connector.setHttpTransport(httpTransport);
+        connector.setListItemProjection(listItemProjection);
+        connector.setPageSizer(pageSizer);
+        connector.setFileTypeExtensionsResolver(fileTypeExtensionsResolver);
+        connector.scanFileTypeRestriction = scanFileTypeRestriction;
+        connector.setFolderScopedListing(folderScopedListing);
+        connector.setTraversalModeResolver(traversalModeResolver);
+        connector.setDirListingFactory(dirListingFactory);
+        connector.setSearchSiteDiscovery(searchSiteDiscovery);
+        connector.setRangedDownload(rangedDownload);
+        return connector;
     }
 
     @SuppressWarnings("unchecked")
@@ -327,6 +407,33 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         return listFilesAsServerResources(subSite, parentFolder, maxRetries);
     }
 
+    /**
+     * Lazy {@link #listFilesAsServerResources(String, String)}: with the HTTP transport the files of the folder are
+     * read one page per request (ordered by name) as the stream is consumed, and closing the stream stops the paging.
+     * Without the transport the files are listed whole, as before.
+     */
+    public Stream<ServerResourceDto> streamFilesAsServerResources(String subSite, String path, int pageSize) {
+        if (httpTransport == null) {
+            return listFilesAsServerResources(subSite, path).stream();
+        }
+        String parentFolder = calculateParentFolder(path);
+        String baseUri = createBaseUri(false);
+        SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+        return SharePointPageSpliterator.stream(
+                (offset, count) -> conn.getFolderEntries(parentFolder, "Files", "$select=Name,ServerRelativeUrl", offset, count,
+                        SharePointParseUtils::parseFiles),
+                pageSize, "files under " + parentFolder)
+                .map(file -> {
+                    String fullName = SharePointParseUtils.removeUnneededDoubleSlashes(baseUri + file.getServerRelativeUrl());
+                    if (!StringUtils.isEmpty(subSite)) {
+                        fullName = SharePointParseUtils.applySiteMark(fullName, subSite);
+                    }
+                    ServerResourceDto serverResourceDto = new ServerResourceDto(fullName, file.getName());
+                    serverResourceDto.setHasChildren(false);
+                    return serverResourceDto;
+                });
+    }
+
     @Override
     public List<ServerResourceDto> browseSubFolders(String folderMediaEntityId) {
         String path = Optional.ofNullable(folderMediaEntityId).orElse("/");
@@ -344,11 +451,123 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
     }
 
+    /**
+     * Pages of {@link #browseSubFolders(String)}, for folders with too many sub folders to load at once.
+     * <p>
+     * With the HTTP transport, folders of the root site are read one page per request, ordered by name on the server
+     * ($orderby/$skip/$top on the folder's Folders), so the first page costs one page. Sites, sub-site roots and
+     * connectors without the transport are listed and sorted whole on the first page; the listing is kept for the
+     * following pages (their cursor names it) until the last page or until it is not read for 10 minutes.
+     *
+     * @param cursor the {@link SharePointBrowsePage#getNextCursor()} of the previous page, null for the first page
+     */
+    public SharePointBrowsePage browseSubFolders(String folderMediaEntityId, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        int separator = cursor == null ? -1 : cursor.lastIndexOf(BROWSE_CURSOR_SEPARATOR);
+        String listing = separator < 0 ? null : cursor.substring(0, separator);
+        int offset = parseBrowseCursor(cursor, separator < 0 ? cursor : cursor.substring(separator + 1));
+        String path = Optional.ofNullable(folderMediaEntityId).orElse("/");
+        if (!"/".equals(path) && httpTransport != null && SharePointParseUtils.splitPathAndSubsite(path).getSite() == null
+                && !SharePointParseUtils.normalizePath(path).equalsIgnoreCase(SharePointParseUtils.normalizePath(baseUriWithBasePath))) {
+            return browseFolderPage(path, offset, pageSize);
+        }
+        String listingKey = listing == null ? null : path + BROWSE_CURSOR_SEPARATOR + listing;
+        List<ServerResourceDto> folders = listingKey == null ? null : browseListings.getIfPresent(listingKey);
+        if (folders == null) {
+            folders = browseSubFolders(folderMediaEntityId);
+            if (listing == null) {
+                listing = UUID.randomUUID().toString();
+                listingKey = path + BROWSE_CURSOR_SEPARATOR + listing;
+            } else {
+                logger.debug("Listing {} of {} expired, listing it again", listing, path);
+            }
+        }
+        int from = Math.min(offset, folders.size());
+        int to = Math.min(folders.size(), from + pageSize);
+        String nextCursor = null;
+        if (to < folders.size()) {
+            browseListings.put(listingKey, folders);
+            nextCursor = listing + BROWSE_CURSOR_SEPARATOR + to;
+        } else {
+            browseListings.invalidate(listingKey);
+        }
+        return new SharePointBrowsePage(new ArrayList<>(folders.subList(from, to)), nextCursor);
+    }
+
+    private SharePointBrowsePage browseFolderPage(String path, int offset, int pageSize) {
+        String baseUri = createBaseUri(false);
+        String itemPath = SharePointParseUtils.splitPathAndSubsite(path).getPath();
+        String updatedPath = itemPath.startsWith(baseUri) ? itemPath.substring(baseUri.length()) : path;
+        long start = System.currentTimeMillis();
+        List<SharePointExtendedFolder> folders = getFolderEntries(updatedPath, "Folders", "$expand=Properties", offset, pageSize,
+                SharePointParseUtils::parseFolders);
+        List<ServerResourceDto> result = toServerResources(null, folders, baseUri);
+        String nextCursor = folders.size() < pageSize ? null : Integer.toString(offset + folders.size());
+        logger.debug("Got {} folders at {} from offset {} in {} ms", result.size(), path, offset, System.currentTimeMillis() - start);
+        return new SharePointBrowsePage(result, nextCursor);
+    }
+
+    @FunctionalInterface
+    private interface FolderEntriesParser<T> {
+        List<T> parse(InputStream content) throws Exception;
+    }
+
+    /**
+     * One page of a folder's Folders or Files, ordered by name, read through the HTTP transport.
+     *
+     * @param query  extra OData options, e.g. $select or $expand
+     * @param parser parses the collection's entries, e.g. {@link SharePointParseUtils#parseFiles}
+     */
+    private <T> List<T> getFolderEntries(String folderPath, String collection, String query, int offset, int count,
+                                         FolderEntriesParser<T> parser) {
+        String url = microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY) +
+                "Web/GetFolderByServerRelativeUrl('" + SharePointParseUtils.encodeUrlWithSlash(folderPath.replace("'", "''")) +
+                "')/" + collection + "?" + query + "&$orderby=Name&$skip=" + offset + "&$top=" + count;
+        try {
+            Map<String, String> headers = Maps.newHashMap();
+            headers.put("Accept", SharePointODataBatch.DEFAULT_ACCEPT);
+            SharePointHttpResponse response = httpTransport.execute("GET", url, headers, null);
+            if (!response.isSuccessful()) {
+                throw new SharePointHttpStatusException("Failed to list sharePoint " + collection.toLowerCase() + " at " + folderPath, response);
+            }
+            return parser.parse(response.getContent());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to list sharePoint {} at {}", collection.toLowerCase(), folderPath, e);
+            throw new RuntimeException("Failed to list sharePoint " + collection.toLowerCase() + " at " + folderPath + " (" + e.getMessage() + ")", e);
+        }
+    }
+
+    /**
+     * @param offset the offset part of the cursor - the whole cursor on transport pages, after the listing otherwise
+     */
+    private static int parseBrowseCursor(String cursor, String offset) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            int value = Integer.parseInt(offset);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new IllegalArgumentException("Illegal browse cursor: " + cursor);
+    }
+
     private void streamFileScanDetailsFromSite(ConcurrentStreamData<StreamSiteData> concurrentStreamSiteData) {
         logger.debug("Stream files from each library under the site {}", concurrentStreamSiteData.getStreamData().getPath());
 
         streamSitesFolders(concurrentStreamSiteData);
-        streamSubSites(concurrentStreamSiteData);
+        //noinspection unchecked
+        if (!discoverSubSites(concurrentStreamSiteData.getStreamData(),
+                siteData -> streamSitesFolders(new ConcurrentStreamData(concurrentStreamSiteData, siteData)))) {
+            streamSubSites(concurrentStreamSiteData);
+        }
     }
 
 
@@ -357,7 +576,118 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         logger.debug("Stream files from each library under the site {}", streamSiteData.getPath());
 
         streamSitesFolders(streamSiteData);
-        streamSubSites(streamSiteData);
+        if (!discoverSubSites(streamSiteData, this::streamSitesFolders)) {
+            streamSubSites(streamSiteData);
+        }
+    }
+
+    /**
+     * With search site discovery, all the webs under the site are found with a few search queries and the libraries
+     * of each one are streamed as soon as its result page arrives, instead of walking the sub-sites level by level.
+     *
+     * @return false when discovery is off or its first query failed - the caller walks the sub-sites level by level
+     */
+    private boolean discoverSubSites(StreamSiteData streamSiteData, Consumer<StreamSiteData> siteConsumer) {
+        if (!searchSiteDiscovery || httpTransport == null) {
+            return false;
+        }
+        ScanTaskParameters scanParams = streamSiteData.getParams().getScanParams();
+        String rootUrl = SharePointParseUtils.removeUnneededDoubleSlashes(SharePointParseUtils.normalizePath(createBaseUri(true) + "/" +
+                Optional.ofNullable(streamSiteData.getSubSite()).orElse(StringUtils.EMPTY)));
+        String siteId;
+        try {
+            siteId = getSiteCollectionId(rootUrl);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read the site collection of {}, walking its sub-sites level by level", rootUrl, e);
+            return false;
+        }
+        SharePointSiteDiscovery discovery = new SharePointSiteDiscovery(rootUrl);
+        logger.info("Discovering SUB-SITES under {} (site collection {}) with search", rootUrl, siteId);
+        long start = System.currentTimeMillis();
+        int pages = 0;
+        int startRow = 0;
+        int streamed = 0;
+        while (true) {
+            SharePointSiteDiscovery.SearchPage page;
+            try {
+                page = searchWebs(rootUrl, siteId, startRow);
+            } catch (RuntimeException e) {
+                if (pages == 0) {
+                    logger.warn("Failed to discover sub-sites under {} with search, walking them level by level", rootUrl, e);
+                    return false;
+                }
+                logger.error("Failed to discover sub-sites under {} after {} sites", rootUrl, streamed, e);
+                streamSiteData.getParams().getFilePropertiesConsumer().accept(ClaFilePropertiesDto.create()
+                        .setFolder(true)
+                        .addError(createScanError("Failed to discover sub-sites under " + rootUrl, e,
+                                scanParams.getPath(), scanParams.getRunId())));
+                return true;
+            }
+            pages++;
+            for (String webUrl : page.getWebUrls()) {
+                SharePointSiteDiscovery.Site site = discovery.add(webUrl);
+                if (site == null) {
+                    continue;
+                }
+                int depth = streamSiteData.getCurrentDepth() + site.getDepth();
+                if (siteCrawlMaxDepth != -1 && depth > siteCrawlMaxDepth) {
+                    logger.debug("Skipping site {} beyond max site depth {} (depth={})", webUrl, siteCrawlMaxDepth, depth);
+                    continue;
+                }
+                ServerResourceDto dto = new ServerResourceDto(site.getUrl(), site.getName());
+                try {
+                    applySubSiteMark(dto);
+                    siteConsumer.accept(getStreamSiteData(streamSiteData, dto, depth));
+                    streamed++;
+                } catch (Exception e) {
+                    reportSubSiteStreamError(streamSiteData, dto, scanParams, e);
+                }
+            }
+            startRow += page.getRowCount();
+            if (page.getRowCount() == 0 || startRow >= page.getTotalRows()) {
+                break;
+            }
+        }
+        logger.info("Discovered {} sub-sites under {} in {} search pages, streamed {} in {} ms",
+                discovery.getSites().size(), rootUrl, pages, streamed, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private String getSiteCollectionId(String rootUrl) {
+        String failure = "Failed to read the site collection id of " + rootUrl;
+        try {
+            return SharePointSiteDiscovery.parseSiteId(
+                    getVerboseJson(SharePointSiteDiscovery.SITE_ID_RELATIVE_URL, failure).getContent());
+        } catch (IOException e) {
+            throw new RuntimeException(failure, e);
+        }
+    }
+
+    private SharePointSiteDiscovery.SearchPage searchWebs(String rootUrl, String siteId, int startRow) {
+        String failure = "Failed to search webs under " + rootUrl;
+        try {
+            return SharePointSiteDiscovery.parse(getVerboseJson(SharePointSiteDiscovery.createRelativeUrl(rootUrl, siteId,
+                    startRow, SharePointSiteDiscovery.MAX_ROW_LIMIT), failure).getContent());
+        } catch (IOException e) {
+            throw new RuntimeException(failure, e);
+        }
+    }
+
+    private SharePointHttpResponse getVerboseJson(String relativeUrl, String failure) {
+        String url = microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY) + relativeUrl;
+        try {
+            Map<String, String> headers = Maps.newHashMap();
+            headers.put("Accept", SharePointSiteDiscovery.CONTENT_TYPE);
+            SharePointHttpResponse response = httpTransport.execute("GET", url, headers, null);
+            if (!response.isSuccessful()) {
+                throw new SharePointHttpStatusException(failure, response);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(failure, e);
+        }
     }
 
     private void streamSubSites(StreamSiteData streamSiteData) {
@@ -412,6 +742,10 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
     }
 
     private StreamSiteData getStreamSiteData(StreamSiteData streamSiteData, ServerResourceDto dto, ScanTaskParameters scanParams) {
+        return getStreamSiteData(streamSiteData, dto, streamSiteData.getCurrentDepth() + 1);
+    }
+
+    private StreamSiteData getStreamSiteData(StreamSiteData streamSiteData, ServerResourceDto dto, int depth) {
         final String site = SharePointParseUtils.splitPathAndSubsite(dto.getFullName()).getSite();
         String siteFinal = Optional.ofNullable(streamSiteData.getSubSite())
                 .map(sbSite -> site.startsWith(sbSite) ? site.substring(sbSite.length()) : site)
@@ -419,7 +753,7 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
         String normalizedPath = SharePointParseUtils.normalizePath(streamSiteData.getPath());
         String nextPath = SharePointParseUtils.splitPathAndSubsite(normalizedPath).getPath() + SharePointParseUtils.normalizePath(siteFinal);
-        return new StreamSiteData(streamSiteData.getParams(), nextPath, site, streamSiteData.getCurrentDepth() + 1);
+        return new StreamSiteData(streamSiteData.getParams(), nextPath, site, depth);
     }
 
     private void streamSitesFolders(ConcurrentStreamData<StreamSiteData> concurrentStreamSiteData) {
@@ -525,18 +859,26 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         }
 
         logger.info("Stream files from SharePoint list {}", streamListData.getListId());
+        onStreamList(streamListData.getSubSite(), streamListData.getListId(), streamListData.getPath());
 
         String mediaItemId = Optional.ofNullable(streamListData.getSubSite())
                 .map(site -> SharePointParseUtils.calculateMediaItemId(site, streamListData.getListId()))
                 .orElse(streamListData.getListId());
 
         Predicate<? super String> fileTypesPredicate = FileTypeUtils.createFileTypesPredicate(streamListData.getParams().getScanParams().getScanTypeSpecification());
+        SharePointFileTypeRestriction fileTypeRestriction = resolveFileTypeRestriction(streamListData.getParams().getScanParams());
         streamListData.getParams().setDirectoryListingConsumer(concurrentStreamListData.getDirectoryListingConsumer());
         streamListData.getParams().setFileTypesPredicate(fileTypesPredicate);
 
+        String listId = SharePointMediaItemId.parse(mediaItemId).getListId();
+        if (getTraversalMode(streamListData.getParams().getScanParams()) == SharePointTraversalMode.LIST_RECURSIVE) {
+            streamListRecursively(streamListData, listId, fileTypesPredicate, fileTypeRestriction);
+            return;
+        }
+
         MicrosoftRecursiveAction action = (MicrosoftRecursiveAction) MicrosoftRecursiveAction.Builder.create()
-                .withMicrosoftConnectorBase(this)
-                .withListId(SharePointParseUtils.splitMediaItemIdAndSite(mediaItemId).getListId())
+                .withMicrosoftConnectorBase(scanConnector(fileTypeRestriction))
+                .withListId(listId)
                 .withSubSite(streamListData.getSubSite())
                 .withPath(streamListData.getPath())
                 .withParams(streamListData.getParams())
@@ -547,18 +889,136 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
     private void streamFileScanDetailsFromList(StreamListData streamListData) {
         logger.info("Stream files from SharePoint list {}", streamListData.getListId());
+        onStreamList(streamListData.getSubSite(), streamListData.getListId(), streamListData.getPath());
         Predicate<? super String> fileTypesPredicate =
                 FileTypeUtils.createFileTypesPredicate(streamListData.getParams().getScanParams().getScanTypeSpecification());
+        SharePointFileTypeRestriction fileTypeRestriction = resolveFileTypeRestriction(streamListData.getParams().getScanParams());
 
         streamListData.getParams().setFileTypesPredicate(fileTypesPredicate);
 
-        streamFilesAndSubFolders(streamListData.getPath(),
+        if (getTraversalMode(streamListData.getParams().getScanParams()) == SharePointTraversalMode.LIST_RECURSIVE) {
+            String mediaItemId = Optional.ofNullable(streamListData.getSubSite())
+                    .map(site -> SharePointParseUtils.calculateMediaItemId(site, streamListData.getListId()))
+                    .orElse(streamListData.getListId());
+            streamListRecursively(streamListData, SharePointMediaItemId.parse(mediaItemId).getListId(), fileTypesPredicate,
+                    fileTypeRestriction);
+            return;
+        }
+
+        scanConnector(fileTypeRestriction).streamFilesAndSubFolders(streamListData.getPath(),
                 streamListData.getListId(),
                 streamListData.getSubSite(),
                 streamListData.getParams());
     }
 
-    
+    private SharePointTraversalMode getTraversalMode(ScanTaskParameters scanParams) {
+        SharePointTraversalMode mode = traversalModeResolver == null ? null : traversalModeResolver.apply(scanParams);
+        return mode == null ? SharePointTraversalMode.FOLDER_RECURSIVE : mode;
+    }
+
+    /**
+     * {@link SharePointTraversalMode#LIST_RECURSIVE}: the list's items are paged in ID order (the Items query covers
+     * all folders), so the request count depends on the item count only and not on the folder count. The directory
+     * listings (sub folder names and file counts, see {@link SharePointFolderTree}) are rebuilt from the items' server
+     * relative paths, rooted at the scanned library or folder, and emitted after the last page.
+     * <p>
+     * The query is limited to the scanned folder's items like the folder by folder listing is (FileRef prefix or folder
+     * scoped pages); items outside it that still come back (e.g. SharePoint Online without folder scoped listing) are
+     * dropped.
+     */
+    private void streamListRecursively(StreamListData streamListData, String listId, Predicate<? super String> fileTypesPredicate,
+                                       SharePointFileTypeRestriction fileTypeRestriction) {
+        StreamMediaItemsParams params = streamListData.getParams();
+        String subSite = streamListData.getSubSite();
+        Consumer<DirListingPayload> directoryListingConsumer = params.getDirectoryListingConsumer();
+        String rootPath = toServerRelativePath(streamListData.getPath());
+        String pathPrefix = rootPath.endsWith("/") ? rootPath : rootPath + "/";
+        SharePointFolderTree folderTree = dirListingFactory == null || directoryListingConsumer == null
+                ? null : new SharePointFolderTree(rootPath);
+        if (folderTree == null && directoryListingConsumer != null) {
+            logger.debug("No directory listing factory set, list {} is streamed without directory listings", listId);
+        }
+        long start = System.currentTimeMillis();
+        int pages = 0;
+        long emitted = 0;
+        try {
+            SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+            String pageIdentifier = null;
+            do {
+                ListItemFilesPage page = conn.listItemFiles(listId, pageSize, pageIdentifier, pathPrefix, fileTypeRestriction);
+                pages++;
+                for (ClaFilePropertiesDto fileProperties : page.files) {
+                    String path = toServerRelativePath(fileProperties.getFileName());
+                    if (!path.startsWith(pathPrefix)) {
+                        continue;
+                    }
+                    if (folderTree != null) {
+                        folderTree.add(path, fileProperties.isFolder());
+                    }
+                    if (fileProperties.isFolder() || fileTypesPredicate.test(fileProperties.getFileName())) {
+                        params.getFilePropertiesConsumer().accept(fileProperties);
+                        emitted++;
+                    }
+                }
+                pageIdentifier = page.nextUrl;
+            } while (pageIdentifier != null);
+        } catch (RuntimeException e) {
+            logger.error("Failed to stream list {} recursively after {} pages", listId, pages, e);
+            params.getFilePropertiesConsumer().accept(ClaFilePropertiesDto.create()
+                    .setFolder(true)
+                    .addError(createScanError("Failed to list items of list " + listId, e,
+                            streamListData.getPath(), params.getScanParams().getRunId())));
+            return;
+        }
+        if (folderTree != null) {
+            folderTree.forEach(listing -> directoryListingConsumer.accept(dirListingFactory.apply(listing)));
+        }
+        logger.info("Streamed {} items of list {} under {} recursively in {} pages ({} folders) in {} ms", emitted, listId,
+                rootPath, pages, folderTree == null ? "-" : folderTree.getFolderCount(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param path a scan path or file name - a full URL, possibly with a sub-site mark, or already server relative
+     * @return the server relative path, without a trailing slash (except for the root)
+     */
+    String toServerRelativePath(String path) {
+        String itemPath = SharePointParseUtils.splitPathAndSubsite(path).getPath();
+        String baseUri = createBaseUri(false);
+        if (itemPath.startsWith(baseUri)) {
+            itemPath = itemPath.substring(baseUri.length());
+        }
+        if (!itemPath.startsWith("/")) {
+            itemPath = "/" + itemPath;
+        }
+        return itemPath.length() > 1 && itemPath.endsWith("/") ? itemPath.substring(0, itemPath.length() - 1) : itemPath;
+    }
+
+    /**
+     * The client side file types predicate stays in place; the restriction only saves listing the items it would
+     * drop anyway.
+     *
+     * @return the scan's restriction, null to list all items
+     */
+    private SharePointFileTypeRestriction resolveFileTypeRestriction(ScanTaskParameters scanParams) {
+        if (fileTypeExtensionsResolver == null) {
+            return null;
+        }
+        Collection<String> extensions = fileTypeExtensionsResolver.apply(scanParams);
+        SharePointFileTypeRestriction restriction = SharePointFileTypeRestriction.of(extensions);
+        if (restriction == null && extensions != null && !extensions.isEmpty()) {
+            logger.debug("Not filtering {} file types on the server, listing all items", extensions.size());
+        }
+        return restriction;
+    }
+
+    /**
+     * Called before the items of a list are streamed by a full scan.
+     *
+     * @param path the scanned library or folder of the list
+     */
+    protected void onStreamList(String subSite, String listId, String path) {
+    }
+
     @SuppressWarnings("unused")
     public List<ServerResourceDto> listFolders(String subSite, final String path) {
         logger.debug("List folders under sharePoint parent: {}", path);
@@ -566,17 +1026,9 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
             List<Folder> folders = execAsyncTask(() -> service.getFolders(subSite, path));
             List<ServerResourceDto> result = new ArrayList<>();
             for (Folder folder : folders) {
-                String name = folder.getName();
-                if (StringUtils.isEmpty(name) || name.startsWith("_")) {
-                    //Internal folder
-                    continue;
+                if (!isInternalFolder(folder.getName())) {
+                    result.add(toFolderResource(path, folder.getName(), folder.getItemCount()));
                 }
-                String fullName = path + "/" + name;
-                ServerResourceDto serverResourceDto = new ServerResourceDto(fullName, name);
-                serverResourceDto.setHasChildren(folder.getItemCount() > 0);
-                serverResourceDto.setType(ServerResourceType.FOLDER);
-                result.add(serverResourceDto);
-
             }
 
             return result;
@@ -586,6 +1038,40 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         }
     }
 
+    /**
+     * Lazy {@link #listFolders(String, String)}: with the HTTP transport the folders are read one page per request
+     * (ordered by name) as the stream is consumed, and closing the stream stops the paging. Without the transport the
+     * folders are listed whole, as before.
+     * <p>
+     * Use in try-with-resources when the stream may not be consumed to the end.
+     */
+    public Stream<ServerResourceDto> streamFolders(String subSite, final String path, int pageSize) {
+        if (httpTransport == null) {
+            return listFolders(subSite, path).stream();
+        }
+        logger.debug("Stream folders under sharePoint parent: {}", path);
+        SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+        return SharePointPageSpliterator.stream(
+                (offset, count) -> conn.getFolderEntries(path, "Folders", "$select=Name,ServerRelativeUrl,ItemCount", offset, count,
+                        SharePointParseUtils::parseFolders),
+                pageSize, "folders under " + path)
+                .filter(folder -> !isInternalFolder(folder.getName()))
+                .map(folder -> toFolderResource(path, folder.getName(), Optional.ofNullable(folder.getItemCount()).orElse(0)));
+    }
+
+    private static boolean isInternalFolder(String name) {
+        //Internal folder
+        return StringUtils.isEmpty(name) || name.startsWith("_");
+    }
+
+    private static ServerResourceDto toFolderResource(String path, String name, int itemCount) {
+        String fullName = path + "/" + name;
+        ServerResourceDto serverResourceDto = new ServerResourceDto(fullName, name);
+        serverResourceDto.setHasChildren(itemCount > 0);
+        serverResourceDto.setType(ServerResourceType.FOLDER);
+        return serverResourceDto;
+    }
+
     private String calculateParentFolder(String path) {
         if (path == null && basePath == null) {
             return "/";
@@ -634,7 +1120,7 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                 String libraryListId = getFolderProperties(null, nameSuffix).getListId();
                 claFilePropertiesDto.setMediaItemId(libraryListId);
                 if (fetchAcls) {
-                    List<SharePointRoleAssignment> listPermissions = microsoftDocAuthorityClient.getListPermissions(null, libraryListId);
+                    List<SharePointRoleAssignment> listPermissions = getListPermissions(libraryListId);
                     logger.debug("List (library: {} ) has {} permissions", nameSuffix, listPermissions.size());
                     addListItemPermissionsToClaFileProperties(claFilePropertiesDto, listPermissions);
                     claFilePropertiesDto.calculateAclSignature();
@@ -648,6 +1134,38 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
     }
 
     public ClaFilePropertiesPageDto listItems(String listId, int count, String pageIdentifier, String pathPrefix) {
+        return listItems(listId, count, pageIdentifier, pathPrefix, scanFileTypeRestriction);
+    }
+
+    /**
+     * @param fileTypeRestriction the scan's file type filter, null to list all items
+     */
+    public ClaFilePropertiesPageDto listItems(String listId, int count, String pageIdentifier, String pathPrefix,
+                                              SharePointFileTypeRestriction fileTypeRestriction) {
+        ListItemFilesPage page = listItemFiles(listId, count, pageIdentifier, pathPrefix, fileTypeRestriction);
+        return new ClaFilePropertiesPageDto(page.files, page.nextUrl);
+    }
+
+    /**
+     * @param fileTypeRestriction the scan's file type filter for the first page, null to list all items
+     */
+    private ListItemFilesPage listItemFiles(String listId, int count, String pageIdentifier, String pathPrefix,
+                                            SharePointFileTypeRestriction fileTypeRestriction) {
+        return listItemFiles(listId, count, pageIdentifier, pathPrefix, fileTypeRestriction, 0);
+    }
+
+    /**
+     * @param throttledRetries how many times this page was throttled already
+     */
+    private ListItemFilesPage listItemFiles(String listId, int count, String pageIdentifier, String pathPrefix,
+                                            SharePointFileTypeRestriction fileTypeRestriction, int throttledRetries) {
+        String pageUrl = pageIdentifier;
+        if (pageSizer != null) {
+            count = pageSizer.getPageSize(listId);
+            awaitRetryAfter(listId);
+        }
+        SharePointFileTypeRestriction fileTypeFilter = pageIdentifier == null && !isFolderScopedListing(pathPrefix)
+                && !fileTypeFilterFailedLists.contains(listId) ? fileTypeRestriction : null;
         try {
             long start = System.currentTimeMillis();
             SharePointListItemPage listItemsPage;
@@ -655,36 +1173,289 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                 //This is the URL to send - sanitize it first
                 logger.debug("List items using Url: {}", pageIdentifier);
                 pageIdentifier = pageIdentifier.substring(microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY).length());
-                listItemsPage = microsoftDocAuthorityClient.getListItems(pageIdentifier);
+                if (SharePointRenderListData.isRenderListDataUrl(pageIdentifier)) {
+                    listItemsPage = getFolderScopedPage(listId, count, pageIdentifier, SharePointRenderListData.getRootFolder(pageIdentifier));
+                } else {
+                    if (pageSizer != null) {
+                        pageIdentifier = SharePointAdaptivePageSizer.withTop(pageIdentifier, count);
+                    }
+                    listItemsPage = getListItemsPage(pageIdentifier);
+                }
+            } else if (isFolderScopedListing(pathPrefix)) {
+                listItemsPage = getFolderScopedPage(listId, count, null, StringUtils.removeEnd(pathPrefix, "/"));
             } else {
                 List<IQueryOption> queryOptions = Lists.newArrayList();
                 //http://ec2-54-200-41-63.us-west-2.compute.amazonaws.com/sites/test/_api/web/lists('f1f04276-593b-454b-8ee1-006f83af18d3')
                 // /Items?$top=5&$expand=FieldValuesAsText/fileref&$filter=startswith(FileRef,%20%27/sites%27)
                 queryOptions.add(new SharepointPagingToken(null, count));
+                IFilterRestriction filterRestriction = null;
                 if (!sharePointOnline && pathPrefix != null) {
-                    queryOptions.add(new Filter(new SharePointStartsWithRestriction("FileRef", pathPrefix)));
+                    filterRestriction = new SharePointStartsWithRestriction("FileRef", pathPrefix);
+                }
+                if (fileTypeFilter != null) {
+                    filterRestriction = filterRestriction == null ? fileTypeFilter :
+                            new SharePointAndRestriction(filterRestriction, fileTypeFilter);
+                }
+                if (filterRestriction != null) {
+                    queryOptions.add(new Filter(filterRestriction));
                 }
                 queryOptions.add(new OrderBy(new PropertyOrder("ID")));
-                microsoftDocAuthorityClient.addDefaultListItemQueryOptions(queryOptions);
-                listItemsPage = microsoftDocAuthorityClient.getListItems(listId, queryOptions);
+                if (listItemProjection != null) {
+                    listItemProjection.addQueryOptions(queryOptions);
+                    listItemsPage = getListItemsPage("Web/Lists(guid'" + listId + "')/Items" + SharePointParseUtils.createQueryOptionsUrl(queryOptions));
+                } else {
+                    microsoftDocAuthorityClient.addDefaultListItemQueryOptions(queryOptions);
+                    listItemsPage = microsoftDocAuthorityClient.getListItems(listId, queryOptions);
+                }
             }
-            List<SharePointListItem> listItems = listItemsPage.getItems();
             long duration = System.currentTimeMillis() - start;
+            recordListItemPage(listItemsPage);
+            if (pageSizer != null) {
+                pageSizer.onPage(listId, count, listItemsPage.size(), listItemsPage.getResponseBytes(), duration);
+            }
             String nextUrl = listItemsPage.getNextUrl();
-            List<ClaFilePropertiesDto> claFilePropertiesDtos = convertSharePointListItemsToFiles(listId, listItems);
+            List<ClaFilePropertiesDto> claFilePropertiesDtos = convertSharePointListItemsToFiles(listId, listItemsPage);
             if (pageIdentifier != null) {
-                logger.debug("List up to {} items from url {} got {} items (pathPrefix={}) in {} ms.\nNext Page: {}",
-                        count, pageIdentifier, claFilePropertiesDtos.size(), pathPrefix, duration, nextUrl);
+                logger.debug("List up to {} items from url {} got {} items (pathPrefix={}) in {} ms ({} bytes, parsed in {} ms).\nNext Page: {}",
+                        count, pageIdentifier, claFilePropertiesDtos.size(), pathPrefix, duration,
+                        listItemsPage.getResponseBytes(), listItemsPage.getParseNanos() / 1_000_000, nextUrl);
             } else {
-                logger.debug("List up to {} items from the beginning got {} items (pathPrefix={}) in {} ms.\nNext Page: {}",
-                        count, claFilePropertiesDtos.size(), pathPrefix, duration, nextUrl);
+                logger.debug("List up to {} items from the beginning got {} items (pathPrefix={}) in {} ms ({} bytes, parsed in {} ms).\nNext Page: {}",
+                        count, claFilePropertiesDtos.size(), pathPrefix, duration,
+                        listItemsPage.getResponseBytes(), listItemsPage.getParseNanos() / 1_000_000, nextUrl);
+            }
+            return new ListItemFilesPage(claFilePropertiesDtos, nextUrl);
+        } catch (ServiceException | RuntimeException e) {
+            if (pageSizer != null && pageSizer.onFailure(listId, e)) {
+                if (throttledRetries < pageSizer.getMaxThrottledRetries()) {
+                    logger.debug("Listing list {} was throttled, requesting the page again with {} items",
+                            listId, pageSizer.getPageSize(listId));
+                    return listItemFiles(listId, count, pageUrl, pathPrefix, fileTypeRestriction, throttledRetries + 1);
+                }
+                logger.warn("Listing list {} was still throttled after {} retries of the page", listId, throttledRetries);
+            } else if (fileTypeFilter != null && !SharePointAdaptivePageSizer.isThrottling(e)
+                    && fileTypeFilterFailedLists.add(listId)) {
+                // e.g. a large list whose File_x0020_Type column is not indexed exceeds the list view threshold
+                logger.warn("Failed to list items of list {} filtered by file type, listing all items instead", listId, e);
+                return listItemFiles(listId, count, null, pathPrefix, null, throttledRetries);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
             }
-            return new ClaFilePropertiesPageDto(claFilePropertiesDtos, nextUrl);
-        } catch (ServiceException e) {
             throw new RuntimeException("Failed to list items from list " + listId, e);
         }
     }
 
+    /**
+     * With a projection and a transport the page is fetched directly and read by the projection parser, which only
+     * looks for the projected fields. Otherwise the client fetches it (the next page link keeps the $select/$expand).
+     */
+    private SharePointListItemPage getListItemsPage(String relativeUrl) throws ServiceException {
+        if (listItemProjection == null || httpTransport == null) {
+            return microsoftDocAuthorityClient.getListItems(relativeUrl);
+        }
+        String url = microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY) + relativeUrl;
+        try {
+            Map<String, String> headers = Maps.newHashMap();
+            headers.put("Accept", SharePointODataBatch.DEFAULT_ACCEPT);
+            SharePointHttpResponse response = httpTransport.execute("GET", url, headers, null);
+            if (!response.isSuccessful()) {
+                throw new SharePointHttpStatusException("Failed to list items from " + url, response);
+            }
+            return SharePointParseUtils.parseSharePointListItems(response.getContent(), null, listItemProjection);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to list items from " + url, e);
+        }
+    }
+
+    private void awaitRetryAfter(String listId) {
+        long delay = pageSizer.getRetryDelayMillis(listId);
+        if (delay > 0) {
+            logger.debug("Listing list {} was throttled, waiting {} ms as asked by Retry-After", listId, delay);
+            try {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting to list items of list " + listId, e);
+            }
+        }
+    }
+
+    private boolean isFolderScopedListing(String pathPrefix) {
+        return folderScopedListing && sharePointOnline && httpTransport != null && pathPrefix != null;
+    }
+
+    /**
+     * A page of the items under the folder (recursively) through RenderListDataAsStream. Its rows carry no
+     * HasUniqueRoleAssignments, that is read for the page in $batch requests - and one by one for the items the
+     * batches did not answer, a failed lookup fails the page.
+     */
+    private SharePointListItemPage getFolderScopedPage(String listId, int count, String pageUrl, String folder) {
+        String apiUrl = microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY);
+        String url = pageUrl != null ? apiUrl + pageUrl : apiUrl + SharePointRenderListData.createRelativeUrl(listId, null);
+        try {
+            SharePointHttpResponse response = postRenderListData(url, SharePointRenderListData.createBody(folder, count), true);
+            if (!response.isSuccessful()) {
+                throw new SharePointHttpStatusException("Failed to list items under " + folder, response);
+            }
+            SharePointListItemPage page = SharePointRenderListData.parse(response.getContent());
+            List<SharePointListItem> items = page.getItems();
+            if (!items.isEmpty()) {
+                Map<Integer, Boolean> uniqueAcls = getListItemsHavingUniqueAcls(null, listId,
+                        items.stream().map(SharePointListItem::getIdAsInt).collect(Collectors.toList()));
+                int missing = 0;
+                for (SharePointListItem item : items) {
+                    Boolean unique = uniqueAcls.get(item.getIdAsInt());
+                    if (unique == null) {
+                        unique = isListItemHavingUniqueAcls(null, listId, item.getIdAsInt());
+                        missing++;
+                    }
+                    item.setListItemHavingUniqueAcls(unique);
+                }
+                if (missing > 0) {
+                    logger.debug("Read HasUniqueRoleAssignments of {} of {} items under {} one by one", missing, items.size(), folder);
+                }
+            }
+            if (page.getNextUrl() != null) {
+                page.setNextUrl(apiUrl + SharePointRenderListData.createRelativeUrl(listId,
+                        SharePointRenderListData.withRootFolder(page.getNextUrl(), folder)));
+            }
+            return page;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to list items under " + folder + " from " + url, e);
+        }
+    }
+
+    private SharePointHttpResponse postRenderListData(String url, byte[] body, boolean retryWithNewDigest) throws Exception {
+        SharePointBatchExecutor executor = getBatchExecutor();
+        Map<String, String> headers = Maps.newHashMap();
+        headers.put("Accept", SharePointRenderListData.CONTENT_TYPE);
+        headers.put("Content-Type", SharePointRenderListData.CONTENT_TYPE);
+        headers.put("X-RequestDigest", executor.getFormDigest());
+        SharePointHttpResponse response = httpTransport.execute("POST", url, headers, body);
+        if (response.getStatus() == 403 && retryWithNewDigest) {
+            executor.invalidateFormDigest();
+            return postRenderListData(url, body, false);
+        }
+        return response;
+    }
+
+    private void recordListItemPage(SharePointListItemPage page) {
+        if (page.getResponseBytes() >= 0) {
+            listItemPages.incrementAndGet();
+            listItemResponseBytes.addAndGet(page.getResponseBytes());
+            listItemParseNanos.addAndGet(page.getParseNanos());
+        }
+    }
+
+    /**
+     * Selects the list item fields {@link #listItems} asks for; null uses the client's default query options.
+     *
+     * @throws IllegalArgumentException if the projection lacks {@link SharePointListItemProjection.Field#UNIQUE_ACLS},
+     *                                  which the ACL inheritance of every listed item is read from
+     */
+    public void setListItemProjection(SharePointListItemProjection listItemProjection) {
+        if (listItemProjection != null && !listItemProjection.contains(SharePointListItemProjection.Field.UNIQUE_ACLS)) {
+            throw new IllegalArgumentException("List item projection without unique ACLs: " + listItemProjection);
+        }
+        this.listItemProjection = listItemProjection;
+    }
+
+    /**
+     * Lets {@link #listItems} choose the page size per list from observed latency, response size and throttling
+     * instead of taking the caller's count; null keeps the caller's count.
+     */
+    public void setPageSizer(SharePointAdaptivePageSizer pageSizer) {
+        this.pageSizer = pageSizer;
+    }
+
+    /**
+     * @return the adaptive page sizer, its stats hold the chosen page sizes and items/sec per list
+     */
+    public SharePointAdaptivePageSizer getPageSizer() {
+        return pageSizer;
+    }
+
+    /**
+     * Turns the scan's type specification into the file extensions to filter by on the server ($filter on
+     * File_x0020_Type, folders always included). Null, or no extensions, lists all items.
+     */
+    public void setFileTypeExtensionsResolver(Function<ScanTaskParameters, Collection<String>> fileTypeExtensionsResolver) {
+        this.fileTypeExtensionsResolver = fileTypeExtensionsResolver;
+    }
+
+    /**
+     * On SharePoint Online a {@link #listItems} with a path prefix lists only the items under that folder
+     * (RenderListDataAsStream, recursive scope) instead of the whole library filtered on the client. Needs the
+     * HTTP transport; without it the whole library is listed as before.
+     */
+    public void setFolderScopedListing(boolean folderScopedListing) {
+        this.folderScopedListing = folderScopedListing;
+    }
+
+    /**
+     * Picks the traversal of each scan, e.g. {@code params -> SharePointTraversalMode.LIST_RECURSIVE} for all scans.
+     * Null (or a null mode) walks the libraries folder by folder.
+     */
+    public void setTraversalModeResolver(Function<ScanTaskParameters, SharePointTraversalMode> traversalModeResolver) {
+        this.traversalModeResolver = traversalModeResolver;
+    }
+
+    /**
+     * Creates the directory listing events of {@link SharePointTraversalMode#LIST_RECURSIVE} scans from the rebuilt
+     * folders; without it those scans emit no directory listings.
+     */
+    public void setDirListingFactory(Function<SharePointFolderTree.FolderListing, DirListingPayload> dirListingFactory) {
+        this.dirListingFactory = dirListingFactory;
+    }
+
+    /**
+     * Site scans find all the sub-sites with the search API and start on each one's libraries as soon as it is
+     * found, instead of listing the sub-sites one level at a time. Needs the HTTP transport and a crawled search
+     * index; if the first search query fails the sub-sites are walked level by level as before.
+     */
+    public void setSearchSiteDiscovery(boolean searchSiteDiscovery) {
+        this.searchSiteDiscovery = searchSiteDiscovery;
+    }
+
+    /**
+     * Large files are read through {@link #getInputStream(String)} as byte ranges fetched in parallel, files below
+     * its threshold or on servers that do not serve ranges as one stream as before. Needs the HTTP transport.
+     */
+    public void setRangedDownload(SharePointRangedDownload rangedDownload) {
+        this.rangedDownload = rangedDownload;
+    }
+
+    public long getListItemPages() {
+        return listItemPages.get();
+    }
+
+    public long getListItemResponseBytes() {
+        return listItemResponseBytes.get();
+    }
+
+    public long getListItemParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(listItemParseNanos.get());
+    }
+
+    private List<ClaFilePropertiesDto> convertSharePointListItemsToFiles(String listId, SharePointListItemPage listItemsPage) {
+        SharePointListItemColumns columns = listItemsPage.getColumns();
+        if (columns == null) {
+            return convertSharePointListItemsToFiles(listId, listItemsPage.getItems());
+        }
+        // Columnar page - convert row by row through a single reused item instead of materializing the page
+        List<ClaFilePropertiesDto> filePropertiesDtos = new ArrayList<>(columns.size());
+        SharePointListItem listItem = new SharePointListItem();
+        for (int row = 0; row < columns.size(); row++) {
+            filePropertiesDtos.add(convertToClaFilePropertiesDto(null, listId, columns.read(row, listItem)));
+        }
+        return filePropertiesDtos;
+    }
+
     private List<ClaFilePropertiesDto> convertSharePointListItemsToFiles(String listId, List<SharePointListItem> sharePointListItems) {
         List<ClaFilePropertiesDto> filePropertiesDtos = new ArrayList<>();
         for (SharePointListItem listItem : sharePointListItems) {
@@ -695,67 +1466,187 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         return filePropertiesDtos;
     }
 
+    /**
+     * FileRef, object type and HasUniqueRoleAssignments of the whole page are read with expanded list items queries
+     * on the page's ID ranges (one query per up to 5000 IDs). The per item getFieldValues / HasUniqueRoleAssignments
+     * calls are only made for items those queries did not return (or for all of them if they failed).
+     */
     @SuppressWarnings("unused")
     public List<ClaFilePropertiesDto> convertListItemsToFiles(String subSite, String listId, List<ListItem> listItems) throws Exception {
-        List<ClaFilePropertiesDto> filePropertiesDtos = new ArrayList<>();
+        Map<Integer, SharePointListItem> pageItems = getListItemsInIdRange(subSite, listId, listItems);
+        List<ListItem> missingItems = listItems.stream()
+                .filter(listItem -> pageItems.get(listItem.getId()) == null || pageItems.get(listItem.getId()).getFileRef() == null)
+                .collect(Collectors.toList());
+        Map<Integer, Boolean> uniqueAcls = missingItems.size() > 1
+                ? getListItemsHavingUniqueAcls(subSite, listId, missingItems.stream().map(ListItem::getId).collect(Collectors.toList()))
+                : Collections.emptyMap();
+
+        List<ClaFilePropertiesDto> filePropertiesDtos = new ArrayList<>(listItems.size());
         for (ListItem listItem : listItems) {
-            List<FieldValue> fieldValues = execAsyncTask(() -> service.getFieldValues(subSite, listId, listItem.getId()));
-            Map<String, FieldValue> fieldValuesMap = fieldValues.stream()
-                    .collect(Collectors.toMap(FieldValue::getName, Function.identity()));
-            FieldValue fileRef = fieldValuesMap.get("FileRef");
-            //Created_x005f_x0020_x005f_By, Id (listItemId), Created_x005f_x0020_x005f_Date     7/26/2016 1:47 PM
-            //Author ,Modified    7/26/2016 1:47 PM, Last_x005f_x0020_x005f_Modified    7/26/2016 1:47 PM
-            //getListItemPermissions(listId, listItem);
-            boolean listItemHavingUniqueAcls = isListItemHavingUniqueAcls(subSite, listId, listItem);
-            ClaFilePropertiesDto filePropertyDto = ClaFilePropertiesDto.create();
-            filePropertyDto.setFileName(microsoftDocAuthorityClient.convertFileRefToFileUrl(fileRef.getValue()));
-            filePropertyDto.setMediaItemId(listId + "/" + listItem.getId());
-            AclInheritanceType aclInheritanceType = listItemHavingUniqueAcls ? AclInheritanceType.NONE : AclInheritanceType.FOLDER;
-            filePropertyDto.setAclInheritanceType(aclInheritanceType);
-            if (FileSystemObjectType.FOLDER.equals(listItem.getFileSystemObjectType())) {
-                filePropertyDto.setFolder(true);
+            SharePointListItem pageItem = pageItems.get(listItem.getId());
+            if (pageItem != null && pageItem.getFileRef() != null) {
+                filePropertiesDtos.add(createListItemFileProperties(listId, listItem, pageItem.getFileRef(),
+                        pageItem.isListItemHavingUniqueAcls()));
+            } else {
+                filePropertiesDtos.add(convertListItemToFile(subSite, listId, listItem, uniqueAcls.get(listItem.getId())));
             }
-            filePropertiesDtos.add(filePropertyDto);
         }
         return filePropertiesDtos;
     }
 
+    /**
+     * HasUniqueRoleAssignments of many items in $batch requests - empty if no batch transport is set or the
+     * batch failed, so callers fall back to one request per item.
+     */
+    private Map<Integer, Boolean> getListItemsHavingUniqueAcls(String subSite, String listId, List<Integer> itemIds) {
+        SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+        SharePointBatchExecutor executor = conn.getBatchExecutor();
+        if (executor == null) {
+            return Collections.emptyMap();
+        }
+        List<String> urls = itemIds.stream()
+                .map(itemId -> "Web/Lists(guid'" + listId + "')/Items(" + itemId + ")/HasUniqueRoleAssignments")
+                .collect(Collectors.toList());
+        try {
+            List<SharePointHttpResponse> responses = executor.getAll(urls);
+            Map<Integer, Boolean> uniqueAcls = Maps.newHashMapWithExpectedSize(itemIds.size());
+            for (int i = 0; i < itemIds.size(); i++) {
+                SharePointHttpResponse response = responses.get(i);
+                if (response.isSuccessful()) {
+                    uniqueAcls.put(itemIds.get(i), isHavingUniqueRoleAssignments(response.getBodyAsString()));
+                }
+            }
+            logger.debug("Got HasUniqueRoleAssignments of {} of {} items of list {} in batches", uniqueAcls.size(), itemIds.size(), listId);
+            return uniqueAcls;
+        } catch (Exception e) {
+            logger.warn("Failed to get HasUniqueRoleAssignments of {} items of list {} in batches", itemIds.size(), listId, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * A lone lookup goes straight through the client - a one request $batch would only add the linger time and a form
+     * digest request. Lookups only share a batch while others are in flight, e.g. libraries of a concurrent scan.
+     */
+    private List<SharePointRoleAssignment> getListPermissions(String listId) throws Exception {
+        SharePointBatchExecutor executor = getBatchExecutor();
+        int lookups = listPermissionLookups.incrementAndGet();
+        try {
+            if (executor == null || lookups == 1) {
+                return microsoftDocAuthorityClient.getListPermissions(null, listId);
+            }
+            SharePointHttpResponse response = executor.get("Web/Lists(guid'" + listId + "')/RoleAssignments?$expand=Member,RoleDefinitionBindings");
+            if (!response.isSuccessful()) {
+                throw new SharePointHttpStatusException("Failed to get permissions of list " + listId, response);
+            }
+            return SharePointParseUtils.parseRoleAssignments(response.getContent());
+        } finally {
+            listPermissionLookups.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads the items' fields with ID range queries. The IDs are split into ranges of at most
+     * {@link #MAX_LIST_ITEMS_ID_RANGE} IDs, so no query asks for more rows than the list view threshold.
+     *
+     * @return the items found by ID - items of a range whose query failed are missing
+     */
+    private Map<Integer, SharePointListItem> getListItemsInIdRange(String subSite, String listId, List<ListItem> listItems) {
+        if (listItems.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        int[] ids = listItems.stream().mapToInt(ListItem::getId).sorted().toArray();
+        SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+        Map<Integer, SharePointListItem> pageItems = Maps.newHashMapWithExpectedSize(listItems.size());
+        int rangeStart = 0;
+        int ranges = 0;
+        for (int i = 1; i <= ids.length; i++) {
+            if (i == ids.length || (long) ids[i] - ids[rangeStart] + 1 > MAX_LIST_ITEMS_ID_RANGE) {
+                conn.readListItemsInIdRange(listId, ids[rangeStart], ids[i - 1], pageItems);
+                rangeStart = i;
+                ranges++;
+            }
+        }
+        logger.debug("Got {} of {} items of list {} (IDs {}-{}) in {} queries", pageItems.size(), listItems.size(),
+                listId, ids[0], ids[ids.length - 1], ranges);
+        return pageItems;
+    }
+
+    private void readListItemsInIdRange(String listId, int minId, int maxId, Map<Integer, SharePointListItem> pageItems) {
+        try {
+            List<IQueryOption> queryOptions = Lists.newArrayList();
+            queryOptions.add(new SharepointPagingToken(null, maxId - minId + 1));
+            queryOptions.add(new Filter(new SharePointRangeRestriction("ID", minId, maxId)));
+            microsoftDocAuthorityClient.addDefaultListItemQueryOptions(queryOptions);
+            SharePointListItemPage page = microsoftDocAuthorityClient.getListItems(listId, queryOptions);
+            for (SharePointListItem item : page.getItems()) {
+                pageItems.put(item.getIdAsInt(), item);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to list items {}-{} of list {} in one query, reading them one by one",
+                    minId, maxId, listId, e);
+        }
+    }
+
+    private ClaFilePropertiesDto convertListItemToFile(String subSite, String listId, ListItem listItem, Boolean uniqueAcls) throws Exception {
+        List<FieldValue> fieldValues = execAsyncTask(() -> service.getFieldValues(subSite, listId, listItem.getId()));
+        Map<String, FieldValue> fieldValuesMap = fieldValues.stream()
+                .collect(Collectors.toMap(FieldValue::getName, Function.identity()));
+        FieldValue fileRef = fieldValuesMap.get("FileRef");
+        //Created_x005f_x0020_x005f_By, Id (listItemId), Created_x005f_x0020_x005f_Date     7/26/2016 1:47 PM
+        //Author ,Modified    7/26/2016 1:47 PM, Last_x005f_x0020_x005f_Modified    7/26/2016 1:47 PM
+        //getListItemPermissions(listId, listItem);
+        boolean listItemHavingUniqueAcls = uniqueAcls != null ? uniqueAcls : isListItemHavingUniqueAcls(subSite, listId, listItem);
+        return createListItemFileProperties(listId, listItem, fileRef.getValue(), listItemHavingUniqueAcls);
+    }
+
+    private ClaFilePropertiesDto createListItemFileProperties(String listId, ListItem listItem, String fileRef, boolean listItemHavingUniqueAcls) {
+        ClaFilePropertiesDto filePropertyDto = ClaFilePropertiesDto.create();
+        filePropertyDto.setFileName(microsoftDocAuthorityClient.convertFileRefToFileUrl(fileRef));
+        filePropertyDto.setMediaItemId(listId + "/" + listItem.getId());
+        AclInheritanceType aclInheritanceType = listItemHavingUniqueAcls ? AclInheritanceType.NONE : AclInheritanceType.FOLDER;
+        filePropertyDto.setAclInheritanceType(aclInheritanceType);
+        if (FileSystemObjectType.FOLDER.equals(listItem.getFileSystemObjectType())) {
+            filePropertyDto.setFolder(true);
+        }
+        return filePropertyDto;
+    }
+
     private boolean isListItemHavingUniqueAcls(String subSite, String listId, ListItem listItem) throws Exception {
+        return isListItemHavingUniqueAcls(subSite, listId, listItem.getId());
+    }
+
+    private boolean isListItemHavingUniqueAcls(String subSite, String listId, int itemId) throws Exception {
         String hasUniqueRoleAssignments = execAsyncTask(() ->
-                service.getListItemProperty(subSite, listId, listItem.getId(), "HasUniqueRoleAssignments"));
+                service.getListItemProperty(subSite, listId, itemId, "HasUniqueRoleAssignments"));
+        return isHavingUniqueRoleAssignments(hasUniqueRoleAssignments);
+    }
+
+    private static boolean isHavingUniqueRoleAssignments(String hasUniqueRoleAssignments) {
         return hasUniqueRoleAssignments.contains(">true</d:HasUniqueRoleAssignments>");
     }
 
     public String getLastChange(String subSite, String listId) throws Exception {
-        ChangeQuery query = createItemChangeQuery();
+        // Callers start reading changes from it - a cached head would skip changes made within the cache TTL
+        SharePointChangeHeadTracker.ChangeHead head = changeHeadTracker.getExactHead(subSite, listId);
+        logger.debug("Last change of list {} is {} ({} calls)", listId, head.getToken(), head.getCalls());
+        return SharePointParseUtils.convertSharePointChangeToString(head.getToken());
+    }
 
-        List<IQueryOption> queryOptions = new ArrayList<>();
-        queryOptions.add(new Top(1));
-        queryOptions.add(new OrderBy(new PropertyOrder("time", true)));
+    public SharePointChangeHeadTracker getChangeHeadTracker() {
+        return changeHeadTracker;
+    }
 
-        ChangeToken lastChangeToken = null;
-        int i = 0;
-        while (i < 1000) {
-            if (lastChangeToken != null) {
-                query.setChangeTokenStart(lastChangeToken);
-            }
-            List<Change> changes = execAsyncTask(() -> service.getChanges(subSite, query, listId, queryOptions));
-            if (changes.size() == 0) {
-                logger.debug("No more changes after {} calls", i);
-                break;
-            }
-            Change change = changes.get(0);
-            logger.debug("Change Token: {}", change.getToken());
-            if (lastChangeToken != null && change.getToken().getChangeNumber() < lastChangeToken.getChangeNumber()) {
-                logger.debug("Change Token: {} is smaller then last one: {} after {} calls", change.getToken(), lastChangeToken, i);
-                break;
-            } else {
-                lastChangeToken = change.getToken();
-            }
-            i++;
+    private List<Change> getChangesAfter(String subSite, String listId, ChangeToken changeTokenStart, int count) throws Exception {
+        ChangeQuery query = createItemChangeQuery();
+        if (changeTokenStart != null) {
+            query.setChangeTokenStart(changeTokenStart);
         }
-        logger.debug("done after {} calls", i);
-        return SharePointParseUtils.convertSharePointChangeToString(lastChangeToken);
+        List<IQueryOption> queryOptions = new ArrayList<>();
+        queryOptions.add(new Top(count));
+        // Oldest first, so the last change of a page is the position to continue from
+        queryOptions.add(new OrderBy(new PropertyOrder("time", true)));
+        return execAsyncTask(() -> service.getChanges(subSite, query, listId, queryOptions));
     }
 
     private ChangeQuery createItemChangeQuery() {
@@ -776,31 +1667,101 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         if (listId == null) {
             throw new MediaConnectionException("listId", "null", BadRequestType.MISSING_FIELD);
         }
-        ChangeQuery query = createItemChangeQuery();
-        if (changeTokenStartJson != null) {
-            SharePointChangeTokenDto changeTokenDto = SharePointParseUtils.convertToSharePointChangeToken(changeTokenStartJson);
-            Date changeTime = new Date(changeTokenDto.getDate());
-            query.setChangeTokenStart(new ChangeToken(ChangeTokenScope.LIST, changeTokenDto.getScopeId(), changeTime, changeTokenDto.getChangeNumber()));
-        }
-        List<IQueryOption> queryOptions = new ArrayList<>();
-        queryOptions.add(new Top(count));
-        List<Change> changes = execAsyncTask(() -> service.getChanges(subSite, query, listId, queryOptions));
+        List<Change> changes = getChangesAfter(subSite, listId, toChangeToken(changeTokenStartJson), count);
         logger.debug("Got {} changes", changes.size());
         return SharePointParseUtils.convertToMediaChangeLogDtos(listId, changes);
     }
 
+    /**
+     * Reads all changes of the list after {@code changeTokenStart}, page by page, and hands one net change per item
+     * to {@code consumer} (see {@link SharePointChangeCoalescer}).
+     *
+     * @return the position of the last change read, or {@code changeTokenStart} when there were none
+     */
+    public String coalesceChanges(String subSite, String listId, String changeTokenStart,
+                                  SharePointChangeCoalescer.NetChangeConsumer<String> consumer) throws Exception {
+        if (listId == null) {
+            throw new MediaConnectionException("listId", "null", BadRequestType.MISSING_FIELD);
+        }
+        SharePointChangeCoalescer<ChangeToken> coalescer = new SharePointChangeCoalescer<>();
+        ChangeToken start = toChangeToken(changeTokenStart);
+        while (true) {
+            List<Change> changes = getChangesAfter(subSite, listId, start, changesPageSize);
+            for (Change change : changes) {
+                coalescer.add(SharePointParseUtils.changeMediaItemId(listId, change),
+                        SharePointParseUtils.convertToDiffType(change.getType()), change.getToken());
+            }
+            ChangeToken last = coalescer.getLastPosition();
+            if (changes.size() < changesPageSize || (start != null && last.getChangeNumber() <= start.getChangeNumber())) {
+                break;
+            }
+            start = last;
+        }
+        ChangeToken last = coalescer.getLastPosition();
+        logger.debug("Coalesced {} changes of list {} into {} items", coalescer.getChanges(), listId, coalescer.getItems());
+        coalescer.drainTo((mediaItemId, diffType, position) ->
+                consumer.accept(mediaItemId, diffType, SharePointParseUtils.convertSharePointChangeToString(position)));
+        return last == null ? changeTokenStart : SharePointParseUtils.convertSharePointChangeToString(last);
+    }
+
+    private static ChangeToken toChangeToken(String changeTokenStart) {
+        if (changeTokenStart == null) {
+            return null;
+        }
+        SharePointChangeTokenDto changeTokenDto = SharePointParseUtils.convertToSharePointChangeToken(changeTokenStart);
+        Date changeTime = new Date(changeTokenDto.getDate());
+        return new ChangeToken(ChangeTokenScope.LIST, changeTokenDto.getScopeId(), changeTime, changeTokenDto.getChangeNumber());
+    }
+
 
     public Stream<MediaChangeLogDto> streamSharePointChanges(String subSite, String listId, String startingToken) throws Exception {
-        List<MediaChangeLogDto> changes = getChanges(subSite, listId, startingToken, 1000);
-        boolean readNextPage = changes.size() == 1000;
-        if (readNextPage) {
-            String nextToken = changes.get(999).getChangeLogPosition();
-            Stream<MediaChangeLogDto> sharePointChangeStream = streamSharePointChanges(subSite, listId, nextToken);
+        return streamSharePointChanges(subSite, listId, startingToken, changesPageSize);
+    }
 
-            return Stream.concat(changes.stream(), sharePointChangeStream);
-        } else {
-            return changes.stream();
+    /**
+     * Lazy - each page of changes is fetched only when the stream is consumed past the previous one.
+     */
+    public Stream<MediaChangeLogDto> streamSharePointChanges(String subSite, String listId, String startingToken, int pageSize) {
+        return SharePointChangeSpliterator.stream(
+                (startToken, count) -> getChanges(subSite, listId, startToken, count), startingToken, pageSize);
+    }
+
+    public void setChangesPageSize(int changesPageSize) {
+        if (changesPageSize <= 0) {
+            throw new IllegalArgumentException("changesPageSize must be positive: " + changesPageSize);
+        }
+        this.changesPageSize = changesPageSize;
+    }
+
+    /**
+     * Requests this connector builds itself go through the transport: OData $batch for bursts of small metadata GETs
+     * (per item HasUniqueRoleAssignments, list role assignments) and projected list item pages. Null sends everything
+     * through the client, one request per call.
+     */
+    public void setHttpTransport(SharePointHttpTransport httpTransport) {
+        this.httpTransport = httpTransport;
+        this.batchExecutor = null;
+    }
+
+    /**
+     * @return the $batch executor of this connector's site, null when no transport is set
+     */
+    public SharePointBatchExecutor getBatchExecutor() {
+        if (httpTransport == null) {
+            return null;
+        }
+        SharePointBatchExecutor executor = batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchExecutor;
+                if (executor == null) {
+                    String apiUrl = microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY);
+                    executor = SharePointBatchExecutor.builder(httpTransport, apiUrl).build();
+                    batchExecutor = executor;
+                }
+            }
         }
+        return executor;
     }
 
     @SuppressWarnings("unused")
@@ -848,32 +1809,54 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         List<ServerResourceDto> result = Lists.newArrayList();
 
         for (com.middleware.share.List list : lists) {
-            String libraryBasePath = extractLibraryBasePath(subSite, list);
-            ServerResourceDto serverResourceDto = new ServerResourceDto();
-            serverResourceDto.setType(ServerResourceType.LIBRARY);
-            serverResourceDto.setId(list.getId());
-            String title = list.getTitle(); //Documents
-            title = SharePointParseUtils.parseInternalName(title); //Documents
-
-            serverResourceDto.setName(title);
-            String siteUrlPart = Optional.ofNullable(subSite)
-                    .orElse(StringUtils.EMPTY);
-            if (libraryBasePath.toLowerCase().contains(EXCLUDED_LIB_PREFIX)) {
-                continue;
-            }
-            if (!libraryBasePath.startsWith("/")) {
-                libraryBasePath = "/" + libraryBasePath;
+            ServerResourceDto serverResourceDto = toLibraryResource(subSite, list);
+            if (serverResourceDto != null) {
+                result.add(serverResourceDto);
             }
-            //http://ec2-54-200-41-63.us-west-2.compute.amazonaws.com/sites/test/small library
-            String fullName = SharePointParseUtils.normalizePath(createBaseUri(true) + "/" + siteUrlPart + libraryBasePath);
-            serverResourceDto.setFullName(fullName);
-            logger.debug("List entity (library): {} fullName: {} id: {}", libraryBasePath, fullName, list.getId());
-            result.add(serverResourceDto);
         }
         return result;
 
     }
 
+    /**
+     * Lazy {@link #listDocumentLibraries(String)}: a library is converted only when the stream reaches it. The lists
+     * of a site come back from one request (a site has tens of libraries, not thousands), so only the conversion is
+     * deferred.
+     */
+    public Stream<ServerResourceDto> streamDocumentLibraries(String subSite) {
+        logger.debug("Stream sharepoint document libraries");
+        return getDocumentLibraries(subSite).stream()
+                .map(list -> toLibraryResource(subSite, list))
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * @return the library as a server resource, null for excluded libraries
+     */
+    private ServerResourceDto toLibraryResource(String subSite, com.middleware.share.List list) {
+        String libraryBasePath = extractLibraryBasePath(subSite, list);
+        ServerResourceDto serverResourceDto = new ServerResourceDto();
+        serverResourceDto.setType(ServerResourceType.LIBRARY);
+        serverResourceDto.setId(list.getId());
+        String title = list.getTitle(); //Documents
+        title = SharePointParseUtils.parseInternalName(title); //Documents
+
+        serverResourceDto.setName(title);
+        String siteUrlPart = Optional.ofNullable(subSite)
+                .orElse(StringUtils.EMPTY);
+        if (libraryBasePath.toLowerCase().contains(EXCLUDED_LIB_PREFIX)) {
+            return null;
+        }
+        if (!libraryBasePath.startsWith("/")) {
+            libraryBasePath = "/" + libraryBasePath;
+        }
+        //http://ec2-54-200-41-63.us-west-2.compute.amazonaws.com/sites/test/small library
+        String fullName = SharePointParseUtils.normalizePath(createBaseUri(true) + "/" + siteUrlPart + libraryBasePath);
+        serverResourceDto.setFullName(fullName);
+        logger.debug("List entity (library): {} fullName: {} id: {}", libraryBasePath, fullName, list.getId());
+        return serverResourceDto;
+    }
+
     @Override
     protected String extractLibraryBasePath(String subSite, com.middleware.share.List list) {
         String libraryBasePath = list.getEntityTypeName(); ////Shared_x0020_Documents
@@ -1037,6 +2020,12 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
     private List<ServerResourceDto> browseFolders(String subSite, String path, String updatedPath, String baseUri) throws Exception {
         List<SharePointExtendedFolder> sharePointExtendedFolders = execAsyncTask(() -> microsoftDocAuthorityClient.listFolders(subSite, updatedPath));
         logger.trace("Acquired {} folders under {}", sharePointExtendedFolders.size(), path);
+        List<ServerResourceDto> result = toServerResources(subSite, sharePointExtendedFolders, baseUri);
+        logger.debug("Got {} folders (out of {} optional folders)", result.size(), sharePointExtendedFolders.size());
+        return result;
+    }
+
+    private List<ServerResourceDto> toServerResources(String subSite, List<SharePointExtendedFolder> sharePointExtendedFolders, String baseUri) {
         List<ServerResourceDto> result = new ArrayList<>();
         for (SharePointExtendedFolder sharePointExtendedFolder : sharePointExtendedFolders) {
             if (EXCLUDED_LIBS.contains("/" + sharePointExtendedFolder.getName().toLowerCase()) && !sharePointExtendedFolder.getName().startsWith("_")) {
@@ -1062,7 +2051,6 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                 result.add(serverResourceDto);
             }
         }
-        logger.debug("Got {} folders (out of {} optional folders)", result.size(), sharePointExtendedFolders.size());
         return result;
     }
 
@@ -1194,12 +2182,36 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
         try {
             MSItemKey itemKey = SharePointParseUtils.splitMediaItemIdAndSite(mediaItemId);
             SharePointMediaConnector conn = getBasePathCompatibleConnectorForSubSitePath(itemKey);
-            return conn.getInputStreamForMediaItemId(mediaItemId);
+            InputStream ranged = conn.openRangedInputStream(mediaItemId);
+            return ranged != null ? ranged : conn.getInputStreamForMediaItemId(mediaItemId);
         } finally {
             logger.debug("Function execution time={} millis", timeSource.millisSince(start));
         }
     }
 
+    /**
+     * @return the file's content read in parallel ranges, null to read it as one stream
+     */
+    private InputStream openRangedInputStream(String mediaItemId) {
+        if (rangedDownload == null || httpTransport == null) {
+            return null;
+        }
+        SharePointMediaItemId id = SharePointMediaItemId.parse(mediaItemId);
+        if (!id.hasGuidListId() || id.getItemIdAsInt() == SharePointMediaItemId.NO_ITEM_ID) {
+            return null;
+        }
+        String subSite = id.getSite();
+        SharePointMediaConnector conn = StringUtils.isEmpty(subSite) ? this : recreateConnectorWithAdjustedParams(subSite);
+        String url = conn.microsoftDocAuthorityClient.createApiUri(StringUtils.EMPTY, StringUtils.EMPTY) +
+                "Web/Lists(guid'" + id.getListId() + "')/Items(" + id.getItemIdAsInt() + ")/File/$value";
+        try {
+            return rangedDownload.open(httpTransport, url, Collections.emptyMap());
+        } catch (IOException e) {
+            logger.warn("Failed to download {} in ranges, reading it as one stream", mediaItemId, e);
+            return null;
+        }
+    }
+
     @NotNull
     private SharePointMediaConnector getBasePathCompatibleConnectorForSubSitePath(MSItemKey itemKey) {
         return Optional.ofNullable(itemKey.getBasePathAddendum())
@@ -1303,29 +2315,9 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                         .map(SharePointParseUtils::normalizePath)
                         .orElse(StringUtils.EMPTY);
 
-        final boolean isEmptyBasePath = isEmptyPath(basePath);
         try {
             List<ServerResourceDto> subSites = execAsyncTask(() -> microsoftDocAuthorityClient.listSubSitesUnderSubSite(SharePointParseUtils.normalizePath(siteWithBase)));
-            subSites.stream()
-                    .peek(dto -> {
-                        String subSiteTmp;
-                        if (isEmptyBasePath) {
-                            subSiteTmp = dto.getFullName().substring(this.createBaseUri(true).length());
-                        } else {
-                            subSiteTmp = dto.getFullName().substring(dto.getFullName().indexOf(basePath) + basePath.length());
-                        }
-                        String address = SharePointParseUtils.removeUnneededDoubleSlashes(dto.getFullName());
-                        dto.setFullName(SharePointParseUtils.applySiteMark(address, subSiteTmp));
-                    })
-                    .map(ServerResourceDto::getFullName)
-                    .map(fullName -> {
-                        fullName = SharePointParseUtils.splitPathAndSubsite(fullName).getPath();
-                        if (fullName.startsWith("/")) {
-                            fullName = fullName.substring(1);
-                        }
-                        return fullName;
-                    })
-                    .forEach(detectedSubSites::add);
+            subSites.forEach(this::applySubSiteMark);
             return subSites;
         } catch (Exception e) {
             String path = SharePointParseUtils.applySiteMark(key.getPath(), key.getSite());
@@ -1335,6 +2327,26 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
     }
 
 
+    /**
+     * Marks the sub-site part of the web's full name and records it as a detected sub-site.
+     */
+    private void applySubSiteMark(ServerResourceDto dto) {
+        String subSiteTmp;
+        if (isEmptyPath(basePath)) {
+            subSiteTmp = dto.getFullName().substring(this.createBaseUri(true).length());
+        } else {
+            subSiteTmp = dto.getFullName().substring(dto.getFullName().indexOf(basePath) + basePath.length());
+        }
+        String address = SharePointParseUtils.removeUnneededDoubleSlashes(dto.getFullName());
+        dto.setFullName(SharePointParseUtils.applySiteMark(address, subSiteTmp));
+
+        String fullName = SharePointParseUtils.splitPathAndSubsite(dto.getFullName()).getPath();
+        if (fullName.startsWith("/")) {
+            fullName = fullName.substring(1);
+        }
+        detectedSubSites.add(fullName);
+    }
+
     @Override
     public String toString() {
         return "SharePointMediaConnector{" +
@@ -1356,6 +2368,28 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
         private int scanIterationTimes = -1;
 
+        private int changesPageSize = DEFAULT_CHANGES_PAGE_SIZE;
+
+        private boolean deltaRescan;
+
+        private SharePointHttpTransport httpTransport;
+
+        private SharePointListItemProjection listItemProjection;
+
+        private SharePointAdaptivePageSizer pageSizer;
+
+        private Function<ScanTaskParameters, Collection<String>> fileTypeExtensionsResolver;
+
+        private boolean folderScopedListing;
+
+        private Function<ScanTaskParameters, SharePointTraversalMode> traversalModeResolver;
+
+        private Function<SharePointFolderTree.FolderListing, DirListingPayload> dirListingFactory;
+
+        private boolean searchSiteDiscovery;
+
+        private SharePointRangedDownload rangedDownload;
+
         public SharePointMediaConnectorBuilder withSiteCrawlMaxDepth(int siteCrawlMaxDepth) {
             this.siteCrawlMaxDepth = siteCrawlMaxDepth;
             return getThis();
@@ -1366,6 +2400,98 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
             return getThis();
         }
 
+        /**
+         * With {@link #withScanIterationTimes}, scan iterations after the first emit only the items changed since
+         * the previous iteration.
+         */
+        public SharePointMediaConnectorBuilder withDeltaRescan(boolean deltaRescan) {
+            this.deltaRescan = deltaRescan;
+            return getThis();
+        }
+
+        public SharePointMediaConnectorBuilder withChangesPageSize(int changesPageSize) {
+            this.changesPageSize = changesPageSize;
+            return getThis();
+        }
+
+        /**
+         * Groups bursts of small metadata requests into OData $batch requests sent through this transport, which also
+         * fetches list item pages when a projection is set.
+         */
+        public SharePointMediaConnectorBuilder withHttpTransport(SharePointHttpTransport httpTransport) {
+            this.httpTransport = httpTransport;
+            return getThis();
+        }
+
+        /**
+         * Only these list item fields are requested, e.g. {@link SharePointListItemProjection#METADATA} for scans
+         * that do not need the author.
+         */
+        public SharePointMediaConnectorBuilder withListItemProjection(SharePointListItemProjection listItemProjection) {
+            this.listItemProjection = listItemProjection;
+            return getThis();
+        }
+
+        /**
+         * List item pages are sized per list by the sizer instead of the fixed page size; share one sizer between
+         * connectors of the same farm/tenant so each list keeps what it learned.
+         */
+        public SharePointMediaConnectorBuilder withAdaptivePageSize(SharePointAdaptivePageSizer pageSizer) {
+            this.pageSizer = pageSizer;
+            return getThis();
+        }
+
+        /**
+         * Filters list items by file extension on the server; the resolver maps a scan's type specification to its
+         * extensions, e.g. {@code params -> Arrays.asList("docx", "xlsx", "pptx")} for an Office only scan.
+         */
+        public SharePointMediaConnectorBuilder withFileTypeExtensionsResolver(Function<ScanTaskParameters, Collection<String>> fileTypeExtensionsResolver) {
+            this.fileTypeExtensionsResolver = fileTypeExtensionsResolver;
+            return getThis();
+        }
+
+        /**
+         * Scans of a folder on SharePoint Online list only that folder's subtree; requires {@link #withHttpTransport}.
+         */
+        public SharePointMediaConnectorBuilder withFolderScopedListing(boolean folderScopedListing) {
+            this.folderScopedListing = folderScopedListing;
+            return getThis();
+        }
+
+        public SharePointMediaConnectorBuilder withTraversalMode(SharePointTraversalMode traversalMode) {
+            this.traversalModeResolver = traversalMode == null ? null : params -> traversalMode;
+            return getThis();
+        }
+
+        /**
+         * Picks the traversal per scan, e.g. list recursive for libraries known to be deep and narrow.
+         */
+        public SharePointMediaConnectorBuilder withTraversalModeResolver(Function<ScanTaskParameters, SharePointTraversalMode> traversalModeResolver) {
+            this.traversalModeResolver = traversalModeResolver;
+            return getThis();
+        }
+
+        public SharePointMediaConnectorBuilder withDirListingFactory(Function<SharePointFolderTree.FolderListing, DirListingPayload> dirListingFactory) {
+            this.dirListingFactory = dirListingFactory;
+            return getThis();
+        }
+
+        /**
+         * Site scans discover all sub-sites with a few search queries; requires {@link #withHttpTransport}.
+         */
+        public SharePointMediaConnectorBuilder withSearchSiteDiscovery(boolean searchSiteDiscovery) {
+            this.searchSiteDiscovery = searchSiteDiscovery;
+            return getThis();
+        }
+
+        /**
+         * Reads large files as parallel byte ranges; requires {@link #withHttpTransport}.
+         */
+        public SharePointMediaConnectorBuilder withRangedDownload(SharePointRangedDownload rangedDownload) {
+            this.rangedDownload = rangedDownload;
+            return getThis();
+        }
+
         @Override
         protected SharePointMediaConnectorBuilder getThis() {
             return this;
@@ -1373,7 +2499,7 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
 
         @Override
         public SharePointMediaConnector build() {
-            return scanIterationTimes == -1
+            SharePointMediaConnector connector = scanIterationTimes == -1
                     ? new SharePointMediaConnector(
                     sharePointConnectionParametersDto,
                     appInfo,
@@ -1404,6 +2530,30 @@ public class SharePointMediaConnector extends MicrosoftConnectorBase {
                     maxIdenticalNameInPath,
                     pathMismatchSkip,
                     charsToFilter);
+            connector.setChangesPageSize(changesPageSize);
+            connector.setHttpTransport(httpTransport);
+            connector.setListItemProjection(listItemProjection);
+            connector.setPageSizer(pageSizer);
+            connector.setFileTypeExtensionsResolver(fileTypeExtensionsResolver);
+            connector.setFolderScopedListing(folderScopedListing);
+            connector.setTraversalModeResolver(traversalModeResolver);
+            connector.setDirListingFactory(dirListingFactory);
+            connector.setSearchSiteDiscovery(searchSiteDiscovery);
+            connector.setRangedDownload(rangedDownload);
+            if (connector instanceof SharePointMediaConnectorMultiple) {
+                ((SharePointMediaConnectorMultiple) connector).setDeltaRescan(deltaRescan);
+            }
+            return connector;
+        }
+    }
+
+    private static class ListItemFilesPage {
+        private final List<ClaFilePropertiesDto> files;
+        private final String nextUrl;
+
+        private ListItemFilesPage(List<ClaFilePropertiesDto> files, String nextUrl) {
+            this.files = files;
+            this.nextUrl = nextUrl;
         }
     }
 
@@ -1,13 +1,24 @@
 package com.microsoft.sharepoint;
 
+import com.file.ClaFilePropertiesDto;
+import com.file.DiffType;
 import com.media.SharePointConnectionParametersDto;
 import com.StreamMediaItemsParams;
 import com.microsoft.MSAppInfo;
 import com.microsoft.MSConnectionConfig;
+import com.utils.FileTypeUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileNotFoundException;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 
 public class SharePointMediaConnectorMultiple extends SharePointMediaConnector {
@@ -17,6 +28,13 @@ public class SharePointMediaConnectorMultiple extends SharePointMediaConnector {
 
     private int timesToRescan;
 
+    private boolean deltaRescan;
+
+    // Change token per list streamed by the last full scan, keyed by subSite|listId
+    private final Map<String, ListCursor> listCursors = Maps.newConcurrentMap();
+
+    private volatile boolean recordingCursors;
+
 
     SharePointMediaConnectorMultiple(SharePointConnectionParametersDto sharePointConnectionDetailsDto, MSAppInfo msAppInfo,
                                      int maxRetries, int pageSize, long maxSupportFileSize, MSConnectionConfig connectionConfig,
@@ -44,6 +62,16 @@ public class SharePointMediaConnectorMultiple extends SharePointMediaConnector {
         this.timesToRescan = timesToRescan;
     }
 
+    /**
+     * In delta mode only the first iteration is a full scan. It records the change token of every list it streams,
+     * and later iterations emit just the items changed since then, under the library or folder the full scan streamed.
+     * An iteration falls back to a full scan when no list was recorded or a token can no longer be read (e.g. it
+     * expired).
+     */
+    public void setDeltaRescan(boolean deltaRescan) {
+        this.deltaRescan = deltaRescan;
+    }
+
     @Override
     public void concurrentStreamMediaItems(StreamMediaItemsParams params) {
 
@@ -51,7 +79,9 @@ public class SharePointMediaConnectorMultiple extends SharePointMediaConnector {
 
         for (int iter = 0; iter < timesToRescan; iter++) {
             logger.info("Mapping files iteration {} out of {}", iter+1, timesToRescan);
-            super.concurrentStreamMediaItems(params);
+            if (iter == 0 || !deltaRescan || !streamChangedItems(params)) {
+                fullScan(params, super::concurrentStreamMediaItems);
+            }
         }
 
     }
@@ -63,7 +93,157 @@ public class SharePointMediaConnectorMultiple extends SharePointMediaConnector {
 
         for (int iter = 0; iter < timesToRescan; iter++) {
             logger.info("Mapping files iteration {} out of {}", iter+1, timesToRescan);
-            super.streamMediaItems(params);
+            if (iter == 0 || !deltaRescan || !streamChangedItems(params)) {
+                fullScan(params, super::streamMediaItems);
+            }
+        }
+    }
+
+    private void fullScan(StreamMediaItemsParams params, Consumer<StreamMediaItemsParams> scan) {
+        if (!deltaRescan) {
+            scan.accept(params);
+            return;
+        }
+        listCursors.clear();
+        recordingCursors = true;
+        try {
+            scan.accept(params);
+        } finally {
+            recordingCursors = false;
+        }
+        logger.info("Full scan recorded change tokens of {} lists", listCursors.size());
+    }
+
+    @Override
+    protected void onStreamList(String subSite, String listId, String path) {
+        if (!recordingCursors) {
+            return;
+        }
+        String rootPath = toServerRelativePath(path);
+        String pathPrefix = rootPath.endsWith("/") ? rootPath : rootPath + "/";
+        String key = key(subSite, listId);
+        ListCursor recorded = listCursors.get(key);
+        if (recorded != null) {
+            // Another folder of a list already recorded - the earlier token covers it too
+            recorded.pathPrefixes.add(pathPrefix);
+            return;
+        }
+        // Recorded before the list is read, so changes made while it is scanned are seen by the next iteration
+        ListCursor cursor;
+        try {
+            cursor = new ListCursor(subSite, listId, getLastChange(subSite, listId), false, pathPrefix);
+        } catch (Exception e) {
+            logger.warn("Failed to get the last change of list {} (subSite={}) - next iteration will be a full scan", listId, subSite, e);
+            cursor = new ListCursor(subSite, listId, null, true, pathPrefix);
+        }
+        recorded = listCursors.putIfAbsent(key, cursor);
+        if (recorded != null) {
+            recorded.pathPrefixes.add(pathPrefix);
+        }
+    }
+
+    /**
+     * @return false when the iteration has to be a full scan instead
+     */
+    private boolean streamChangedItems(StreamMediaItemsParams params) {
+        if (listCursors.isEmpty()) {
+            logger.info("No list change tokens recorded, running a full scan");
+            return false;
+        }
+        Predicate<? super String> fileTypesPredicate =
+                FileTypeUtils.createFileTypesPredicate(params.getScanParams().getScanTypeSpecification());
+        List<ChangedItem> changedItems = Lists.newArrayList();
+        for (ListCursor cursor : listCursors.values()) {
+            if (cursor.failed) {
+                return false;
+            }
+            try {
+                cursor.nextToken = coalesceChanges(cursor.subSite, cursor.listId, cursor.token, (mediaItemId, diffType, position) -> {
+                    if (diffType != DiffType.DELETED) {
+                        changedItems.add(new ChangedItem(cursor, mediaItemId));
+                    }
+                });
+            } catch (Exception e) {
+                logger.info("Failed to read changes of list {} (subSite={}) since {} - running a full scan",
+                        cursor.listId, cursor.subSite, cursor.token, e);
+                return false;
+            }
+        }
+
+        int emitted = 0;
+        int outsideScan = 0;
+        for (ChangedItem changedItem : changedItems) {
+            ListCursor cursor = changedItem.cursor;
+            String itemId = SharePointMediaItemId.parse(changedItem.mediaItemId).getItemId();
+            String mediaItemId = SharePointParseUtils.calculateMediaItemId(cursor.subSite, cursor.listId, itemId);
+            try {
+                ClaFilePropertiesDto fileProperties = readChangedItem(mediaItemId);
+                if (!cursor.covers(toServerRelativePath(fileProperties.getFileName()))) {
+                    // The change log is per list, the full scan may have streamed one folder of it
+                    outsideScan++;
+                    continue;
+                }
+                if (fileProperties.isFolder() || fileTypesPredicate.test(fileProperties.getFileName())) {
+                    params.getFilePropertiesConsumer().accept(fileProperties);
+                    emitted++;
+                }
+            } catch (FileNotFoundException e) {
+                logger.debug("Changed item {} no longer exists", mediaItemId);
+            }
+        }
+        for (ListCursor cursor : listCursors.values()) {
+            cursor.token = cursor.nextToken;
+            cursor.nextToken = null;
+        }
+        logger.info("Delta iteration emitted {} changed items of {} lists ({} outside the scanned folders)", emitted,
+                listCursors.size(), outsideScan);
+        return true;
+    }
+
+    ClaFilePropertiesDto readChangedItem(String mediaItemId) throws FileNotFoundException {
+        return getFileAttributes(mediaItemId, true);
+    }
+
+    private static String key(String subSite, String listId) {
+        return (subSite == null ? "" : subSite) + '|' + listId;
+    }
+
+    private static class ListCursor {
+        final String subSite;
+        final String listId;
+        // Null - the list had no changes when recorded, read its log from the start
+        String token;
+        String nextToken;
+        final boolean failed;
+        // Server relative paths of the scanned library or folders, with a trailing slash
+        final Set<String> pathPrefixes = Sets.newConcurrentHashSet();
+
+        ListCursor(String subSite, String listId, String token, boolean failed, String pathPrefix) {
+            this.subSite = subSite;
+            this.listId = listId;
+            this.token = token;
+            this.failed = failed;
+            this.pathPrefixes.add(pathPrefix);
+        }
+
+        boolean covers(String path) {
+            String folderPath = path + "/";
+            for (String pathPrefix : pathPrefixes) {
+                if (path.startsWith(pathPrefix) || folderPath.equals(pathPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class ChangedItem {
+        final ListCursor cursor;
+        final String mediaItemId;
+
+        ChangedItem(ListCursor cursor, String mediaItemId) {
+            this.cursor = cursor;
+            this.mediaItemId = mediaItemId;
         }
     }
 }
@@ -0,0 +1,226 @@
+package com.microsoft.sharepoint;
+
+import com.microsoft.MSItemKey;
+
+/**
+ * Immutable, parsed form of a SharePoint media item id: {@code LISTID[/ITEMID][$SITE][~addendum]}.
+ * <p>
+ * The id is parsed once with plain index scans (no regex). A GUID list id is kept as two longs and a numeric
+ * item id as an int, so equality/hash checks don't need to touch the string. The canonical string form is kept
+ * as-is (case preserved) and the individual parts are cut from it on demand.
+ */
+public final class SharePointMediaItemId {
+
+    public static final int NO_ITEM_ID = -1;
+
+    private static final char LIST_ITEM_ID_SEPARATOR = SharePointParseUtils.LIST_ITEM_ID_SEPARATOR.charAt(0);
+    private static final char SITE_DELIMITER = SharePointParseUtils.SITE_DELIMITER.charAt(0);
+    private static final char BASE_PATH_COMPLETION_DELIMITER = SharePointParseUtils.BASE_PATH_COMPLETION_DELIMITER.charAt(0);
+
+    private static final int GUID_LENGTH = 36;
+
+    private final String value;
+
+    private final long listIdMostSigBits;
+    private final long listIdLeastSigBits;
+    private final boolean guidListId;
+
+    private final int itemId;
+
+    // Offsets into value; -1 when the part is absent
+    private final int listIdEnd;
+    private final int itemIdStart;
+    private final int itemIdEnd;
+    private final int siteStart;
+    private final int siteEnd;
+    private final int addendumStart;
+    private final int addendumEnd;
+
+    private SharePointMediaItemId(String value) {
+        this.value = value;
+        int length = value.length();
+
+        int addendumDelim = value.indexOf(BASE_PATH_COMPLETION_DELIMITER);
+        int idAndSiteEnd = addendumDelim < 0 ? length : addendumDelim;
+        if (addendumDelim < 0) {
+            addendumStart = -1;
+            addendumEnd = -1;
+        } else {
+            int next = value.indexOf(BASE_PATH_COMPLETION_DELIMITER, addendumDelim + 1);
+            int end = next < 0 ? length : next;
+            addendumStart = end > addendumDelim + 1 ? addendumDelim + 1 : -1;
+            addendumEnd = addendumStart < 0 ? -1 : end;
+        }
+
+        int siteDelim = indexOf(value, SITE_DELIMITER, 0, idAndSiteEnd);
+        int idEnd = siteDelim < 0 ? idAndSiteEnd : siteDelim;
+        if (siteDelim < 0) {
+            siteStart = -1;
+            siteEnd = -1;
+        } else {
+            int next = indexOf(value, SITE_DELIMITER, siteDelim + 1, idAndSiteEnd);
+            int end = next < 0 ? idAndSiteEnd : next;
+            siteStart = end > siteDelim + 1 ? siteDelim + 1 : -1;
+            siteEnd = siteStart < 0 ? -1 : end;
+        }
+
+        int separator = indexOf(value, LIST_ITEM_ID_SEPARATOR, 0, idEnd);
+        listIdEnd = separator < 0 ? idEnd : separator;
+        if (separator < 0) {
+            itemIdStart = -1;
+            itemIdEnd = -1;
+        } else {
+            int next = indexOf(value, LIST_ITEM_ID_SEPARATOR, separator + 1, idEnd);
+            int end = next < 0 ? idEnd : next;
+            itemIdStart = end > separator + 1 ? separator + 1 : -1;
+            itemIdEnd = itemIdStart < 0 ? -1 : end;
+        }
+
+        if (listIdEnd == GUID_LENGTH && isGuid(value, 0)) {
+            guidListId = true;
+            listIdMostSigBits = parseHex(value, 0, 8) << 32 | parseHex(value, 9, 13) << 16 | parseHex(value, 14, 18);
+            listIdLeastSigBits = parseHex(value, 19, 23) << 48 | parseHex(value, 24, 36);
+        } else {
+            guidListId = false;
+            listIdMostSigBits = 0;
+            listIdLeastSigBits = 0;
+        }
+        itemId = itemIdStart < 0 ? NO_ITEM_ID : parseItemId(value, itemIdStart, itemIdEnd);
+    }
+
+    public static SharePointMediaItemId parse(String mediaItemId) {
+        if (mediaItemId == null) {
+            throw new IllegalArgumentException("mediaItemId");
+        }
+        return new SharePointMediaItemId(mediaItemId);
+    }
+
+    /**
+     * Builds the canonical (upper-cased) id, same as {@link SharePointParseUtils#calculateMediaItemId(String, String, String)}
+     */
+    public static SharePointMediaItemId of(String listId, String listItemId, String subSite) {
+        StringBuilder sb = new StringBuilder(length(listId) + length(listItemId) + length(subSite) + 2);
+        sb.append(listId);
+        if (listItemId != null) {
+            sb.append(LIST_ITEM_ID_SEPARATOR).append(listItemId);
+        }
+        if (subSite != null) {
+            sb.append(SITE_DELIMITER).append(subSite);
+        }
+        return new SharePointMediaItemId(sb.toString().toUpperCase());
+    }
+
+    public SharePointMediaItemId withBasePathAddendum(String basePathAddendum) {
+        return new SharePointMediaItemId(value + BASE_PATH_COMPLETION_DELIMITER + basePathAddendum);
+    }
+
+    public String getListId() {
+        return value.substring(0, listIdEnd);
+    }
+
+    public boolean hasGuidListId() {
+        return guidListId;
+    }
+
+    public long getListIdMostSigBits() {
+        return listIdMostSigBits;
+    }
+
+    public long getListIdLeastSigBits() {
+        return listIdLeastSigBits;
+    }
+
+    public String getItemId() {
+        return itemIdStart < 0 ? null : value.substring(itemIdStart, itemIdEnd);
+    }
+
+    /**
+     * @return numeric item id, or {@link #NO_ITEM_ID} when the id is absent or not numeric
+     */
+    public int getItemIdAsInt() {
+        return itemId;
+    }
+
+    public String getSite() {
+        return siteStart < 0 ? null : value.substring(siteStart, siteEnd);
+    }
+
+    public String getBasePathAddendum() {
+        return addendumStart < 0 ? null : value.substring(addendumStart, addendumEnd);
+    }
+
+    public MSItemKey toItemKey() {
+        return MSItemKey.listItem(getBasePathAddendum(), getSite(), getListId(), getItemId());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SharePointMediaItemId that = (SharePointMediaItemId) o;
+        return itemId == that.itemId &&
+                listIdMostSigBits == that.listIdMostSigBits &&
+                listIdLeastSigBits == that.listIdLeastSigBits &&
+                value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static int indexOf(String s, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isGuid(String s, int from) {
+        for (int i = 0; i < GUID_LENGTH; i++) {
+            char c = s.charAt(from + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String s, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            result = result << 4 | Character.digit(s.charAt(i), 16);
+        }
+        return result;
+    }
+
+    private static int parseItemId(String s, int from, int to) {
+        if (to - from > 9) {
+            return NO_ITEM_ID;
+        }
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_ITEM_ID;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+}
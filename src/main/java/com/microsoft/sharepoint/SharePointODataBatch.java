@@ -0,0 +1,153 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Encoding of OData {@code $batch} requests (a multipart/mixed body with one {@code application/http} part per
+ * GET) and decoding of the multipart response back into one {@link SharePointHttpResponse} per part, in request
+ * order.
+ */
+public final class SharePointODataBatch {
+
+    public static final String DEFAULT_ACCEPT = "application/atom+xml";
+
+    private static final String CRLF = "\r\n";
+    private static final String BOUNDARY_PARAM = "boundary=";
+
+    private SharePointODataBatch() {
+    }
+
+    public static String newBoundary() {
+        return "batch_" + UUID.randomUUID();
+    }
+
+    public static String contentType(String boundary) {
+        return "multipart/mixed; boundary=" + boundary;
+    }
+
+    /**
+     * @param urls absolute request URLs
+     */
+    public static byte[] encodeRequest(String boundary, List<String> urls, String accept) {
+        StringBuilder sb = new StringBuilder(urls.size() * 256);
+        for (String url : urls) {
+            sb.append("--").append(boundary).append(CRLF)
+                    .append("Content-Type: application/http").append(CRLF)
+                    .append("Content-Transfer-Encoding: binary").append(CRLF)
+                    .append(CRLF)
+                    .append("GET ").append(url).append(" HTTP/1.1").append(CRLF)
+                    .append("Accept: ").append(accept).append(CRLF)
+                    .append(CRLF);
+        }
+        sb.append("--").append(boundary).append("--").append(CRLF);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static List<SharePointHttpResponse> decodeResponse(String contentType, byte[] body) {
+        String boundary = extractBoundary(contentType);
+        // ISO-8859-1 maps every byte to one char, so part bodies can be cut out of the string and restored byte exact
+        String content = new String(body, StandardCharsets.ISO_8859_1);
+        String delimiter = "--" + boundary;
+        List<SharePointHttpResponse> responses = Lists.newArrayList();
+
+        int index = content.indexOf(delimiter);
+        if (index < 0) {
+            throw new IllegalArgumentException("Batch response has no part delimited by " + boundary);
+        }
+        while (true) {
+            int partStart = index + delimiter.length();
+            if (content.startsWith("--", partStart)) {
+                break;
+            }
+            int next = content.indexOf(CRLF + delimiter, partStart);
+            int nextLf = content.indexOf("\n" + delimiter, partStart);
+            if (next < 0 && nextLf < 0) {
+                throw new IllegalArgumentException("Batch response part " + responses.size() + " is not terminated");
+            }
+            int partEnd = next >= 0 && (nextLf < 0 || next < nextLf) ? next : nextLf;
+            responses.add(decodePart(content.substring(skipLineBreak(content, partStart), partEnd)));
+            index = content.indexOf(delimiter, partEnd);
+        }
+        return responses;
+    }
+
+    static String extractBoundary(String contentType) {
+        if (contentType == null) {
+            throw new IllegalArgumentException("Batch response has no content type");
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.regionMatches(true, 0, BOUNDARY_PARAM, 0, BOUNDARY_PARAM.length())) {
+                String boundary = param.substring(BOUNDARY_PARAM.length());
+                if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                return boundary;
+            }
+        }
+        throw new IllegalArgumentException("No boundary in batch response content type " + contentType);
+    }
+
+    private static SharePointHttpResponse decodePart(String part) {
+        // MIME part headers (Content-Type: application/http ...), then the HTTP response itself
+        int httpStart = endOfHeaders(part, 0);
+        int statusLineEnd = lineEnd(part, httpStart);
+        String statusLine = part.substring(httpStart, statusLineEnd).trim();
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) {
+            throw new IllegalArgumentException("Illegal status line in batch response part: " + statusLine);
+        }
+        int status = Integer.parseInt(statusParts[1]);
+
+        Map<String, String> headers = Maps.newLinkedHashMap();
+        int lineStart = skipLineBreak(part, statusLineEnd);
+        while (lineStart < part.length()) {
+            int end = lineEnd(part, lineStart);
+            String line = part.substring(lineStart, end);
+            lineStart = skipLineBreak(part, end);
+            if (line.isEmpty()) {
+                break;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+            }
+        }
+        byte[] body = part.substring(Math.min(lineStart, part.length())).getBytes(StandardCharsets.ISO_8859_1);
+        return new SharePointHttpResponse(status, headers, body);
+    }
+
+    private static int endOfHeaders(String part, int from) {
+        int lineStart = from;
+        while (lineStart < part.length()) {
+            int end = lineEnd(part, lineStart);
+            boolean empty = end == lineStart;
+            lineStart = skipLineBreak(part, end);
+            if (empty) {
+                return lineStart;
+            }
+        }
+        throw new IllegalArgumentException("Batch response part has no HTTP response");
+    }
+
+    private static int lineEnd(String content, int from) {
+        int lf = content.indexOf('\n', from);
+        if (lf < 0) {
+            return content.length();
+        }
+        return lf > from && content.charAt(lf - 1) == '\r' ? lf - 1 : lf;
+    }
+
+    private static int skipLineBreak(String content, int index) {
+        if (content.startsWith(CRLF, index)) {
+            return index + 2;
+        }
+        return content.startsWith("\n", index) ? index + 1 : index;
+    }
+}
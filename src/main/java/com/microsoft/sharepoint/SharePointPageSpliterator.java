@@ -0,0 +1,135 @@
+package com.microsoft.sharepoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Walks an offset paged listing ($skip/$top) page by page. The next page is requested only when the consumer
+ * advances past the current one, and only the current page is held - a consumed page is released before the next
+ * one is fetched, so memory does not grow with the listing.
+ * <p>
+ * A page shorter than the page size is taken as the end of the listing. Closing the stream (or the spliterator)
+ * stops it: no page is requested after that, e.g. when a consumer stopped early with {@code limit} or
+ * {@code findFirst} inside a try-with-resources.
+ */
+public class SharePointPageSpliterator<T> implements Spliterator<T>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointPageSpliterator.class);
+
+    @FunctionalInterface
+    public interface PageFetcher<T> {
+        /**
+         * @return up to count entries starting at offset, in a stable order
+         */
+        List<T> fetch(int offset, int count) throws Exception;
+    }
+
+    private final PageFetcher<T> fetcher;
+    private final int pageSize;
+    private final String description;
+
+    private List<T> page;
+    private int pageIndex;
+    private int offset;
+    private boolean lastPage;
+    private int pagesFetched;
+    private volatile boolean closed;
+
+    public SharePointPageSpliterator(PageFetcher<T> fetcher, int pageSize, String description) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.fetcher = Objects.requireNonNull(fetcher, "fetcher");
+        this.pageSize = pageSize;
+        this.description = description;
+    }
+
+    /**
+     * @return a lazy stream that stops fetching when closed
+     */
+    public static <T> Stream<T> stream(PageFetcher<T> fetcher, int pageSize, String description) {
+        SharePointPageSpliterator<T> spliterator = new SharePointPageSpliterator<>(fetcher, pageSize, description);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if ((page == null || pageIndex == page.size()) && !fetchNextPage()) {
+            return false;
+        }
+        T next = page.get(pageIndex++);
+        action.accept(next);
+        return true;
+    }
+
+    private boolean fetchNextPage() {
+        page = null;
+        if (lastPage || closed) {
+            return false;
+        }
+        List<T> entries;
+        try {
+            entries = fetcher.fetch(offset, pageSize);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to list " + description + " from offset " + offset, e);
+        }
+        pagesFetched++;
+        if (entries == null || entries.isEmpty()) {
+            lastPage = true;
+            return false;
+        }
+        lastPage = entries.size() < pageSize;
+        offset += entries.size();
+        page = entries;
+        pageIndex = 0;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            page = null;
+            logger.trace("Closed listing of {} after {} pages ({} entries)", description, pagesFetched, offset);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return entries fetched so far, the offset of the next page
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getPagesFetched() {
+        return pagesFetched;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
@@ -9,15 +9,11 @@ import com.file.ServerResourceType;
 import com.media.MediaChangeLogDto;
 import com.microsoft.MSAppInfo;
 import com.microsoft.MSItemKey;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
 import com.middleware.share.*;
 import com.middleware.share.queryoptions.IQueryOption;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jdom2.*;
 import org.jdom2.filter.Filters;
@@ -30,11 +26,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
 import java.io.*;
-import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.*;
 import java.util.function.Function;
@@ -58,37 +50,43 @@ public class SharePointParseUtils {
     private static final String EVERYONE_TEXT = "\\Everyone";
 
 
-    private final static ObjectMapper mapper;
-
     private static final List<Namespace> DEFAULT_NAMESPACE_LIST;
 
     private static final Namespace DEFAULT_NAMESPACE;
+    private static final Namespace DATA_SERVICES_NAMESPACE;
+    private static final Namespace METADATA_NAMESPACE;
 
     private static boolean encodeSitesInUrl = true;
 
+    private static final byte[] MAIN_ID_START = "<d:ID ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MAIN_ID_END = "</d:ID>".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_MAIN_ID_LENGTH = 1024;
+
+    // Diagnostic logging of responses is limited to this many bytes/chars
+    private static final int LOG_PREFIX_LENGTH = 4096;
+
     static {
-        mapper = new ObjectMapper();
-        mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES,true);
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         Namespace defaultNameSpace = Namespace.getNamespace("a", "http://www.w3.org/2005/Atom");
         Namespace dataServicesNameSpace = Namespace.getNamespace("d", "http://schemas.microsoft.com/ado/2007/08/dataservices");
         Namespace metadataNameSpace = Namespace.getNamespace("m", "http://schemas.microsoft.com/ado/2007/08/dataservices/metadata");
 
         DEFAULT_NAMESPACE_LIST = Lists.newArrayList(defaultNameSpace, dataServicesNameSpace, metadataNameSpace);
         DEFAULT_NAMESPACE = DEFAULT_NAMESPACE_LIST.get(0);
+        DATA_SERVICES_NAMESPACE = dataServicesNameSpace;
+        METADATA_NAMESPACE = metadataNameSpace;
     }
 
     public static String extractMainId(InputStream content) {
-        String s;
+        //<d:ID m:type="Edm.Int32">6</d:ID>
+        BoundedByteCapture logPrefix = new BoundedByteCapture(LOG_PREFIX_LENGTH);
         try {
-            s = IOUtils.toString(content, StandardCharsets.UTF_8);
-            logger.debug("received xml: {}", s);
-            //<id>Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(6)</id>
-            String mainId = StringUtils.substringBetween(s, "<d:ID ", "</d:ID>");
+            String mainId = scanForMainId(content, logPrefix);
+            if (logger.isDebugEnabled()) {
+                logger.debug("received xml (prefix): {}", logPrefix);
+            }
             if (mainId == null) {
-                throw new RuntimeException("Failed to fetch folder id from response: " + s);
+                throw new RuntimeException("Failed to fetch folder id from response: " + logPrefix);
             }
-            mainId = mainId.substring(mainId.indexOf(">") + 1);
             return mainId;
         } catch (IOException e) {
             logger.error("Failed to read input stream to extact SharePoint id", e);
@@ -96,17 +94,44 @@ public class SharePointParseUtils {
         }
     }
 
-    public static SharePointListItem parseSharePointListItem(InputStream content) throws Exception {
-        SAXBuilder saxBuilder = new SAXBuilder();
-        Document document = saxBuilder.build(new InputStreamReader(content, StandardCharsets.UTF_8));
-        try {
-            Element element = document.getRootElement();
-            return parseSharePointListItem(element);
-        } catch (RuntimeException e) {
-            String documentString = new XMLOutputter().outputString(document);
-            logger.error("Failed to parse the resulting XML: {}", documentString, e);
-            throw e;
+    /**
+     * Scans the response bytes for the first {@code <d:ID ...>value</d:ID>} element without building a String
+     * of the whole response. Only the element content is buffered (up to {@link #MAX_MAIN_ID_LENGTH} bytes).
+     */
+    private static String scanForMainId(InputStream content, BoundedByteCapture logPrefix) throws IOException {
+        byte[] buffer = new byte[8192];
+        BoundedByteCapture idCapture = null;
+        int matched = 0;
+        int read;
+        while ((read = content.read(buffer)) != -1) {
+            logPrefix.write(buffer, 0, read);
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                byte[] marker = idCapture == null ? MAIN_ID_START : MAIN_ID_END;
+                if (b == marker[matched]) {
+                    matched++;
+                } else {
+                    if (idCapture != null && matched > 0) {
+                        idCapture.write(marker, 0, matched);
+                    }
+                    matched = b == marker[0] ? 1 : 0;
+                    if (idCapture != null && matched == 0) {
+                        idCapture.write(b);
+                    }
+                }
+
+                if (matched == marker.length) {
+                    matched = 0;
+                    if (idCapture == null) {
+                        idCapture = new BoundedByteCapture(MAX_MAIN_ID_LENGTH);
+                    } else {
+                        String mainId = idCapture.toString();
+                        return mainId.substring(mainId.indexOf(">") + 1);
+                    }
+                }
+            }
         }
+        return null;
     }
 
     public static String extractToken(String body) throws Exception {
@@ -116,31 +141,139 @@ public class SharePointParseUtils {
         return extractXpath(".//wsse:BinarySecurityToken", document.getRootElement(), nameSpaces);
     }
 
-    public static SharePointListItemPage parseSharePointListItems(InputStream content) throws Exception {
+    public static SharePointListItem parseSharePointListItem(InputStream content) throws Exception {
         SAXBuilder saxBuilder = new SAXBuilder();
         Document document = saxBuilder.build(content);
         try {
-            ArrayList<SharePointListItem> items = Lists.newArrayList();
+            SharePointListItem sharePointListItem = new SharePointListItem();
+            parseSharePointListItem(document.getRootElement(), sharePointListItem);
+            return sharePointListItem;
+        } catch (RuntimeException e) {
+            logger.error("Failed to parse the resulting XML (prefix): {}", outputPrefix(document), e);
+            throw e;
+        }
+    }
+
+    public static SharePointListItemPage parseSharePointListItems(InputStream content) throws Exception {
+        return parseSharePointListItems(content, null);
+    }
+
+    /**
+     * @param pathTable when given, item file refs are interned into it ({@link SharePointListItem#setFileRefPath})
+     *                  instead of being kept as full path Strings
+     */
+    public static SharePointListItemPage parseSharePointListItems(InputStream content, SharePointPathTable pathTable) throws Exception {
+        return parseSharePointListItems(content, pathTable, null);
+    }
+
+    /**
+     * @param projection when given, the response is expected to hold only the projected fields ($select/$expand of
+     *                   the same projection) and they are read directly from the entry properties and inline links;
+     *                   null reads the default list item response
+     */
+    public static SharePointListItemPage parseSharePointListItems(InputStream content, SharePointPathTable pathTable,
+                                                                  SharePointListItemProjection projection) throws Exception {
+        long start = System.nanoTime();
+        CountingInputStream countingContent = new CountingInputStream(content);
+        SAXBuilder saxBuilder = new SAXBuilder();
+        Document document = saxBuilder.build(countingContent);
+        try {
             Element rootElement = document.getRootElement();
             //Our entry elements are directly under the root element
-            for (Element element : rootElement.getChildren("entry", DEFAULT_NAMESPACE)) {
-                SharePointListItem sharePointListItem = parseSharePointListItem(element);
-                items.add(sharePointListItem);
-
+            List<Element> entries = rootElement.getChildren("entry", DEFAULT_NAMESPACE);
+            SharePointListItemColumns columns = new SharePointListItemColumns(entries.size());
+            SharePointListItem sharePointListItem = new SharePointListItem();
+            for (Element element : entries) {
+                if (projection == null) {
+                    parseSharePointListItem(element, sharePointListItem);
+                } else {
+                    parseProjectedListItem(element, sharePointListItem);
+                }
+                if (pathTable != null && sharePointListItem.fileRef != null) {
+                    sharePointListItem.setFileRefPath(pathTable.intern(sharePointListItem.fileRef));
+                }
+                columns.add(sharePointListItem);
             }
-            SharePointListItemPage result = new SharePointListItemPage(items);
+            SharePointListItemPage result = new SharePointListItemPage(columns);
             String href = extractAttributeXpath("./a:link[@rel=\"next\"]/@href", rootElement, DEFAULT_NAMESPACE_LIST);
             result.setNextUrl(href);
+            result.setResponseBytes(countingContent.getCount());
+            result.setParseNanos(System.nanoTime() - start);
+            logger.trace("Parsed {} list items from {} bytes in {} us (projection={})", entries.size(),
+                    result.getResponseBytes(), result.getParseNanos() / 1000, projection);
             return result;
         } catch (RuntimeException e) {
-            String documentString = new XMLOutputter().outputString(document);
-            logger.error("Failed to parse the resulting XML: {}", documentString, e);
+            logger.error("Failed to parse the resulting XML (prefix): {}", outputPrefix(document), e);
             throw e;
         }
     }
 
-    private static SharePointListItem parseSharePointListItem(Element element) {
-        SharePointListItem sharePointListItem = new SharePointListItem();
+    private static void parseProjectedListItem(Element element, SharePointListItem sharePointListItem) {
+        sharePointListItem.clear();
+        Element content = element.getChild("content", DEFAULT_NAMESPACE);
+        Element properties = content == null ? null : content.getChild("properties", METADATA_NAMESPACE);
+        if (properties != null) {
+            for (Element property : properties.getChildren()) {
+                String value = property.getText();
+                if (value.isEmpty()) {
+                    continue;
+                }
+                switch (property.getName()) {
+                    case "Id":
+                    case "ID":
+                        sharePointListItem.setId(value);
+                        break;
+                    case "FileRef":
+                        sharePointListItem.setFileRef(value);
+                        break;
+                    case "FileSystemObjectType":
+                        sharePointListItem.setFileSystemObjectTypeOrdinal(Integer.parseInt(value));
+                        break;
+                    case "HasUniqueRoleAssignments":
+                        sharePointListItem.setListItemHavingUniqueAcls(Boolean.parseBoolean(value));
+                        break;
+                    case "AuthorId":
+                    case "Authorid":
+                        sharePointListItem.setAuthorId(value);
+                        break;
+                    case "Modified":
+                        sharePointListItem.setModified(value);
+                        break;
+                    case "Created":
+                        sharePointListItem.setCreated(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        for (Element link : element.getChildren("link", DEFAULT_NAMESPACE)) {
+            String title = link.getAttributeValue("title");
+            if ("Author".equals(title)) {
+                String loginName = inlineProperty(link, "LoginName");
+                if (loginName != null) {
+                    sharePointListItem.setLoginName(getResolvedUsername(loginName));
+                }
+            } else if ("File".equals(title)) {
+                String length = inlineProperty(link, "Length");
+                if (length != null) {
+                    sharePointListItem.setSizeValue(Long.parseLong(length));
+                }
+            }
+        }
+    }
+
+    private static String inlineProperty(Element link, String name) {
+        Element inline = link.getChild("inline", METADATA_NAMESPACE);
+        Element entry = inline == null ? null : inline.getChild("entry", DEFAULT_NAMESPACE);
+        Element content = entry == null ? null : entry.getChild("content", DEFAULT_NAMESPACE);
+        Element properties = content == null ? null : content.getChild("properties", METADATA_NAMESPACE);
+        Element property = properties == null ? null : properties.getChild(name, DATA_SERVICES_NAMESPACE);
+        return property == null || property.getText().isEmpty() ? null : property.getText();
+    }
+
+    private static void parseSharePointListItem(Element element, SharePointListItem sharePointListItem) {
+        sharePointListItem.clear();
         //Extract fileRef from d:fileref
         String fileRef = extractXpath(".//d:FileRef", element);
         sharePointListItem.setFileRef(fileRef);
@@ -155,8 +288,7 @@ public class SharePointParseUtils {
 
         String fileSystemObjectType = extractXpath("./a:content/m:properties/d:FileSystemObjectType", element);
         if (fileSystemObjectType != null) {
-            Integer fileSystemObjectTypeInt = Integer.valueOf(fileSystemObjectType);
-            sharePointListItem.setFileSystemObjectType(FileSystemObjectType.values()[fileSystemObjectTypeInt]);
+            sharePointListItem.setFileSystemObjectTypeOrdinal(Integer.parseInt(fileSystemObjectType));
         }
 
         String authorId = extractXpath("./a:content/m:properties/d:Authorid", element);
@@ -169,13 +301,12 @@ public class SharePointParseUtils {
         String loginName = getResolvedUsername(extractXpath(".//d:LoginName", element));
         String length = extractXpath(".//d:Length", element);
         if (length != null) {
-            sharePointListItem.setSize(Long.valueOf(length));
+            sharePointListItem.setSizeValue(Long.parseLong(length));
         }
         else if (FileSystemObjectType.FILE.equals(sharePointListItem.getFileSystemObjectType())) {
             logger.warn("Failed to extract length from SharePoint list item (file)");
         }
         sharePointListItem.setLoginName(loginName);
-        return sharePointListItem;
     }
 
     public static List<SharePointExtendedFolder> parseFolders(InputStream content) throws Exception {
@@ -209,6 +340,24 @@ public class SharePointParseUtils {
         return result;
     }
 
+    /**
+     * Parses a folder's Files collection, e.g. {@code Web/GetFolderByServerRelativeUrl('...')/Files?$select=Name,ServerRelativeUrl}.
+     */
+    public static List<SharePointFileEntry> parseFiles(InputStream content) throws Exception {
+        logger.trace("Parsing files");
+        SAXBuilder saxBuilder = new SAXBuilder();
+        Document document = saxBuilder.build(content);
+        Element rootElement = document.getRootElement();
+        List<SharePointFileEntry> result = new ArrayList<>();
+        for (Element element : rootElement.getChildren("entry", DEFAULT_NAMESPACE)) {
+            SharePointFileEntry file = new SharePointFileEntry();
+            file.setName(extractXpath("./a:content/m:properties/d:Name", element));
+            file.setServerRelativeUrl(extractXpath("./a:content/m:properties/d:ServerRelativeUrl", element));
+            result.add(file);
+        }
+        return result;
+    }
+
     /**
      *
      * @param content content input stream
@@ -330,58 +479,11 @@ public class SharePointParseUtils {
 
     @SuppressWarnings("unused")
     public static String encodeToInternalName(String toEncode) {
-        //TODO - make more robust
-        try {
-            String encodedUrl = URLEncoder.encode(toEncode, "UTF8");
-            encodedUrl = encodedUrl.replace("+", "_x0020_");
-            return encodedUrl.replaceAll("%(..)", "_x00$1_");
-        } catch (UnsupportedEncodingException e) {
-            logger.error("Failed to encode string {} for sharepoint", toEncode, e);
-        }
-        return null;
+        return SharePointInternalNames.encode(toEncode);
     }
 
     static String parseInternalName(String name) {
-        if (name == null || name.length() == 0) {
-            return name;
-        }
-        if (!name.contains("_x")) {
-            return name;
-        }
-
-        try {
-            StringBuilder stringBuilder = new StringBuilder();
-            char[] chars = name.toCharArray();
-            int i = 0;
-            while (i < chars.length) {
-                char aChar = chars[i];
-                if (aChar == '_' && i + 6 < chars.length) {
-                    aChar = chars[i + 1]; //X
-                    if (aChar != 'x') {
-                        stringBuilder.append("_");
-                        i++;
-                        continue;
-                    } else {
-                        char[] numbers = new char[4];
-                        numbers[0] = chars[i + 2];
-                        numbers[1] = chars[i + 3];
-                        numbers[2] = chars[i + 4];
-                        numbers[3] = chars[i + 5];
-                        int num = Integer.valueOf(new String(numbers), 16);
-                        char result = (char) num;
-                        stringBuilder.append(result);
-                        i += 7;
-                        continue;
-                    }
-                }
-                stringBuilder.append(aChar);
-                i++;
-            }
-            return stringBuilder.toString();
-        } catch (RuntimeException e) {
-            logger.error("Failed to parse sharepoint string: ", name, e);
-            return name;
-        }
+        return SharePointInternalNames.decode(name);
     }
 
     @SuppressWarnings("unused")
@@ -431,9 +533,13 @@ public class SharePointParseUtils {
     }
 
 
-    private static MediaChangeLogDto convertToMediaChangeLogDto(String listId, Change change) {
+    static String changeMediaItemId(String listId, Change change) {
         int itemId = change instanceof ChangeItem ? ((ChangeItem) change).getItemId() : -1;
-        MediaChangeLogDto mediaChangeLogDto = new MediaChangeLogDto(listId + LIST_ITEM_ID_SEPARATOR + itemId, convertToDiffType(change.getType()));
+        return listId + LIST_ITEM_ID_SEPARATOR + itemId;
+    }
+
+    private static MediaChangeLogDto convertToMediaChangeLogDto(String listId, Change change) {
+        MediaChangeLogDto mediaChangeLogDto = new MediaChangeLogDto(changeMediaItemId(listId, change), convertToDiffType(change.getType()));
         mediaChangeLogDto.setChangeLogPosition(convertSharePointChangeToString(change.getToken()));
 
         return mediaChangeLogDto;
@@ -480,50 +586,43 @@ public class SharePointParseUtils {
 
     static String applyBasePathCompletionToMediaItemId(String pathCompletion, String mediaItemId) {
         pathCompletion = normalizePath(pathCompletion).substring(1);
-        return mediaItemId + BASE_PATH_COMPLETION_DELIMITER + pathCompletion.toLowerCase();
+        return SharePointMediaItemId.parse(mediaItemId)
+                .withBasePathAddendum(pathCompletion.toLowerCase())
+                .toString();
     }
 
     public static String calculateMediaItemId(String subSite, String mediaItemId) {
-        if (mediaItemId.contains(SITE_DELIMITER)) {
-            mediaItemId = mediaItemId.substring(0, mediaItemId.indexOf(SITE_DELIMITER));
+        int siteIdx = mediaItemId.indexOf(SITE_DELIMITER);
+        if (siteIdx >= 0) {
+            mediaItemId = mediaItemId.substring(0, siteIdx);
         }
 
-        String[] parts = mediaItemId.split(LIST_ITEM_ID_SEPARATOR);
-        String itemId = parts.length > 1 ? parts[1] : null;
-        return calculateMediaItemId(subSite, parts[0], itemId);
+        int separatorIdx = mediaItemId.indexOf(LIST_ITEM_ID_SEPARATOR);
+        if (separatorIdx < 0) {
+            return calculateMediaItemId(subSite, mediaItemId, null);
+        }
+        int itemIdEnd = mediaItemId.indexOf(LIST_ITEM_ID_SEPARATOR, separatorIdx + 1);
+        String itemId = mediaItemId.substring(separatorIdx + 1, itemIdEnd < 0 ? mediaItemId.length() : itemIdEnd);
+        return calculateMediaItemId(subSite, mediaItemId.substring(0, separatorIdx), itemId.isEmpty() ? null : itemId);
     }
 
     public static String calculateMediaItemId(String subSite, String listId, String listItemId) {
-        String itemId = Optional.ofNullable(listItemId)
-                .map(val -> LIST_ITEM_ID_SEPARATOR + val)
-                .orElse("");
-
-        String subsite = Optional.ofNullable(subSite)
-                .map(val -> SITE_DELIMITER + val)
-                .orElse("");
-        return (listId + itemId + subsite)
-                .toUpperCase();
+        return SharePointMediaItemId.of(listId, listItemId, subSite).toString();
     }
 
-    static SharePointChangeTokenDto convertToSharePointChangeToken(String changeTokenStartJson) {
-        try {
-            return mapper.readValue(changeTokenStartJson, SharePointChangeTokenDto.class);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to read illegal SharePoint changeToken string " + changeTokenStartJson, e);
-        }
+    /**
+     * @param changeTokenStart a change log position - compact ({@link SharePointChangeTokenCodec}) or legacy JSON
+     */
+    static SharePointChangeTokenDto convertToSharePointChangeToken(String changeTokenStart) {
+        return SharePointChangeTokenCodec.decode(changeTokenStart);
     }
 
     static String convertSharePointChangeToString(ChangeToken token) {
-        if (token == null) {
-            return null;
-        }
-        SharePointChangeTokenDto changeTokenDto = new SharePointChangeTokenDto(token);
-        try {
-            return mapper.writeValueAsString(changeTokenDto);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize change token to DTO:" + token, e);
-        }
+        return SharePointChangeTokenCodec.encode(token);
+    }
 
+    static String convertSharePointChangeTokenDtoToString(SharePointChangeTokenDto changeTokenDto) {
+        return SharePointChangeTokenCodec.encode(changeTokenDto);
     }
 
     public static String convertLoginName(String loginName) {
@@ -658,7 +757,7 @@ public class SharePointParseUtils {
     private static List<ClaFilePropertiesDto> convertFileItemListToFileList(InputStream is, Function<Element, ClaFilePropertiesDto> dataExtractor) throws JDOMException, IOException {
         List<ClaFilePropertiesDto> files = Lists.newArrayList();
         SAXBuilder saxBuilder = new SAXBuilder();
-        Document document = saxBuilder.build(new InputStreamReader(is, StandardCharsets.UTF_8));
+        Document document = saxBuilder.build(is);
         Element rootElement = document.getRootElement();
         for (Element element : rootElement.getChildren("entry", DEFAULT_NAMESPACE)) {
             files.add(dataExtractor.apply(element));
@@ -691,7 +790,7 @@ public class SharePointParseUtils {
 
     private static ClaFilePropertiesDto convertFileItemFileProperty(InputStream inputStream, Function<Element, ClaFilePropertiesDto> dataExtractor) throws JDOMException, IOException {
         SAXBuilder saxBuilder = new SAXBuilder();
-        Document document = saxBuilder.build(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        Document document = saxBuilder.build(inputStream);
         Element rootElement = document.getRootElement();
         return dataExtractor.apply(rootElement);
     }
@@ -714,14 +813,7 @@ public class SharePointParseUtils {
     }
 
     public static long getTimeInMillis(String time, boolean endsWithZ) {
-        String pattern = "yyyy-MM-dd'T'HH:mm:ss";
-        if (endsWithZ) {
-            pattern += "'Z'";
-        }
-        return LocalDateTime.parse(time, DateTimeFormatter.ofPattern(pattern))
-                .atOffset(ZoneOffset.UTC)
-                .toInstant()
-                .toEpochMilli();
+        return SharePointTimestampParser.parseEpochMillis(time, endsWithZ);
     }
 
     public static String normalizePath(String path) {
@@ -772,7 +864,7 @@ public class SharePointParseUtils {
 
     private static <T> List<T> parseXml(InputStream inputStream, Function<Element, T> dataExtractor) throws JDOMException, IOException {
         SAXBuilder saxBuilder = new SAXBuilder();
-        Document document = saxBuilder.build(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        Document document = saxBuilder.build(inputStream);
         Element rootElement = document.getRootElement();
 
         final List<T> items = Lists.newArrayList();
@@ -874,16 +966,7 @@ public class SharePointParseUtils {
 
 
     public static MSItemKey splitMediaItemIdAndSite(String mediaItemId) {
-        String[] basePathCompletionAndMediaId = mediaItemId.split(BASE_PATH_COMPLETION_DELIMITER);
-        String basePathCompletion = basePathCompletionAndMediaId.length > 1 ? basePathCompletionAndMediaId[1] : null;
-
-        String[] siteAndMediaId = basePathCompletionAndMediaId[0].split("\\" + SITE_DELIMITER);
-        String site = siteAndMediaId.length > 1 ? siteAndMediaId[1] : null;
-
-        String[] mediaIdSplit = siteAndMediaId[0].split(LIST_ITEM_ID_SEPARATOR);
-        String itemId = mediaIdSplit.length > 1 ? mediaIdSplit[1] : null;
-
-        MSItemKey key = MSItemKey.listItem(basePathCompletion, site, mediaIdSplit[0], itemId);
+        MSItemKey key = SharePointMediaItemId.parse(mediaItemId).toItemKey();
         logger.trace("sub-site mappings: splitMediaItemIdAndSite({})={}", mediaItemId, key);
         return key;
     }
@@ -898,4 +981,79 @@ public class SharePointParseUtils {
     public static void setEncodeSitesInUrl(boolean encodeSitesInUrl) {
         SharePointParseUtils.encodeSitesInUrl = encodeSitesInUrl;
     }
+
+    private static String outputPrefix(Document document) {
+        BoundedStringWriter writer = new BoundedStringWriter(LOG_PREFIX_LENGTH);
+        try {
+            new XMLOutputter().output(document, writer);
+        } catch (IOException e) {
+            // Limit reached (or failed to output) - log what we have
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Keeps the first {@code limit} bytes written to it, discarding the rest.
+     */
+    private static class BoundedByteCapture extends ByteArrayOutputStream {
+        private final int limit;
+
+        BoundedByteCapture(int limit) {
+            super(Math.min(limit, 256));
+            this.limit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (count < limit) {
+                super.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            super.write(b, off, Math.min(len, limit - count));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return new String(buf, 0, count, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Collects the first {@code limit} chars written to it, then aborts the write with an IOException
+     * so the caller doesn't serialize the rest of the document.
+     */
+    private static class BoundedStringWriter extends Writer {
+        private final StringBuilder sb;
+        private final int limit;
+
+        BoundedStringWriter(int limit) {
+            this.sb = new StringBuilder(Math.min(limit, 1024));
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int toWrite = Math.min(len, limit - sb.length());
+            sb.append(cbuf, off, toWrite);
+            if (toWrite < len) {
+                throw new EOFException("Log prefix limit reached");
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package com.microsoft.sharepoint;
+
+import java.util.Objects;
+
+/**
+ * Compact path representation - a reference to the parent folder node plus the leaf name.
+ * <p>
+ * Nodes are created through a {@link SharePointPathTable}, which interns them, so all items under the same
+ * folder share its node (and the {@code scheme://host/basePath/site/library/...} prefix is stored once).
+ * The full path string is only built when {@link #toString()} is called.
+ */
+public final class SharePointPath {
+
+    static final char SEPARATOR = '/';
+
+    private final SharePointPath parent;
+    private final String name;
+    private final int hash;
+
+    SharePointPath(SharePointPath parent, String name) {
+        this.parent = parent;
+        this.name = name;
+        this.hash = 31 * System.identityHashCode(parent) + name.hashCode();
+    }
+
+    public SharePointPath getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int length() {
+        int length = name.length();
+        for (SharePointPath node = parent; node != null; node = node.parent) {
+            length += node.name.length() + 1;
+        }
+        return length;
+    }
+
+    public boolean startsWith(SharePointPath ancestor) {
+        for (SharePointPath node = this; node != null; node = node.parent) {
+            if (node == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Nodes are interned, so two nodes are equal when they have the same parent node (by identity) and name.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SharePointPath that = (SharePointPath) o;
+        return hash == that.hash && parent == that.parent && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        char[] chars = new char[length()];
+        int end = chars.length;
+        for (SharePointPath node = this; node != null; node = node.parent) {
+            int start = end - node.name.length();
+            node.name.getChars(0, node.name.length(), chars, start);
+            if (node.parent != null) {
+                chars[--start] = SEPARATOR;
+            }
+            end = start;
+        }
+        return new String(chars);
+    }
+}
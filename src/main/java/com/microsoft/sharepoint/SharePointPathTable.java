@@ -0,0 +1,65 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Maps;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Interning table of {@link SharePointPath} nodes, meant to live for the duration of a single scan.
+ * Thread safe.
+ */
+public class SharePointPathTable {
+
+    private static final String SCHEME_SEPARATOR = "://";
+
+    private final ConcurrentMap<SharePointPath, SharePointPath> nodes = Maps.newConcurrentMap();
+
+    /**
+     * Interns the given path, e.g. {@code https://host/sites/a/Shared Documents/folder/file.docx} or
+     * {@code /sites/a/Shared Documents/folder/file.docx}. The {@code scheme://host} part (if present) is
+     * kept as a single root node; {@code toString()} of the result returns the given path.
+     * Only the folder nodes are interned.
+     */
+    public SharePointPath intern(String path) {
+        if (path == null) {
+            return null;
+        }
+        int schemeIdx = path.indexOf(SCHEME_SEPARATOR);
+        int segmentStart;
+        SharePointPath node;
+        if (schemeIdx >= 0) {
+            int hostEnd = path.indexOf(SharePointPath.SEPARATOR, schemeIdx + SCHEME_SEPARATOR.length());
+            if (hostEnd < 0) {
+                return new SharePointPath(null, path);
+            }
+            node = child(null, path.substring(0, hostEnd));
+            segmentStart = hostEnd + 1;
+        } else {
+            // Relative to the server root - the root node has an empty name so the leading "/" is kept
+            node = path.isEmpty() || path.charAt(0) != SharePointPath.SEPARATOR ? null : child(null, "");
+            segmentStart = node == null ? 0 : 1;
+        }
+
+        int segmentEnd;
+        while ((segmentEnd = path.indexOf(SharePointPath.SEPARATOR, segmentStart)) >= 0) {
+            node = child(node, path.substring(segmentStart, segmentEnd));
+            segmentStart = segmentEnd + 1;
+        }
+        // Leaves are unique per item - no point keeping them in the table
+        return new SharePointPath(node, path.substring(segmentStart));
+    }
+
+    public SharePointPath child(SharePointPath parent, String name) {
+        SharePointPath candidate = new SharePointPath(parent, name);
+        SharePointPath existing = nodes.putIfAbsent(candidate, candidate);
+        return existing != null ? existing : candidate;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void clear() {
+        nodes.clear();
+    }
+}
@@ -0,0 +1,32 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.Util;
+import com.middleware.share.queryoptions.IFilterRestriction;
+
+/**
+ * Inclusive range filter on a numeric property, e.g. {@code (ID ge 1) and (ID le 5000)}.
+ */
+public class SharePointRangeRestriction implements IFilterRestriction {
+
+    private String propertyName;
+    private long from;
+    private long to;
+
+    public SharePointRangeRestriction(String propertyName, long from, long to) {
+        if (propertyName == null) {
+            throw new IllegalArgumentException("propertyName");
+        } else if (from > to) {
+            throw new IllegalArgumentException("from > to");
+        } else {
+            this.propertyName = propertyName;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    public String toString() {
+        String property = Util.encodeUrlInputStream(this.propertyName);
+        return "(" + property + " ge " + this.from + ") and (" + property + " le " + this.to + ")";
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads large files as byte ranges over several connections at once ({@link SharePointRangedInputStream}),
+ * where a single stream cannot fill a high latency link.
+ * <p>
+ * {@link #open} checks the file first with a HEAD request: files below the size threshold, and servers that do not
+ * advertise {@code Accept-Ranges: bytes}, are left to the caller's single stream. If the first range still comes
+ * back whole (200 instead of 206), that response's body is returned unread as the single stream. Every range is sent
+ * with {@code If-Match} and the ETag of the HEAD response, so a file modified while it is downloaded fails the read
+ * (412) instead of mixing two versions.
+ */
+public class SharePointRangedDownload {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointRangedDownload.class);
+
+    // Shared by all downloads - each stream bounds its own ranges in flight
+    private static final ExecutorService fetchers = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("sp-range-%d").setDaemon(true).build());
+
+    private final long minFileSize;
+    private final int rangeSize;
+    private final int parallelism;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+
+    private SharePointRangedDownload(Builder builder) {
+        this.minFileSize = builder.minFileSize;
+        this.rangeSize = builder.rangeSize;
+        this.parallelism = builder.parallelism;
+        this.maxRetries = builder.maxRetries;
+        this.retryDelayMillis = builder.retryDelayMillis;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param url the file's content URL, e.g. {@code .../Items(5)/File/$value}
+     * @return the content - the ranged stream, or the unread body of a first range answered whole - and null when the
+     * file is below the threshold or the server does not advertise ranges; read it as one stream then
+     * @throws IOException when the first range fails, e.g. with 412 for a file modified after the HEAD request
+     */
+    public InputStream open(SharePointHttpTransport transport, String url, Map<String, String> headers) throws IOException {
+        SharePointHttpResponse head = transport.execute("HEAD", url, headers, null);
+        if (!head.isSuccessful()) {
+            logger.debug("HEAD {} returned {}, not downloading it in ranges", url, head.getStatus());
+            return null;
+        }
+        long length = parseLength(head.getHeader("Content-Length"));
+        if (length <= 0 || length < minFileSize) {
+            return null;
+        }
+        if (!"bytes".equalsIgnoreCase(head.getHeader("Accept-Ranges"))) {
+            logger.debug("Server does not accept ranges for {} ({} bytes), reading it as one stream", url, length);
+            return null;
+        }
+        Map<String, String> rangeHeaders = headers;
+        String etag = head.getHeader("ETag");
+        // If-Match compares strongly, a weak ETag would never match
+        if (etag != null && !etag.startsWith("W/")) {
+            rangeHeaders = Maps.newHashMap(headers);
+            rangeHeaders.put("If-Match", etag);
+        }
+        SharePointRangedInputStream.FetchedRange first;
+        try {
+            first = SharePointRangedInputStream.fetchRange(transport, url, rangeHeaders, 0, Math.min(length, rangeSize) - 1,
+                    maxRetries, retryDelayMillis, () -> false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading " + url);
+        }
+        if (first.whole != null) {
+            logger.warn("Server ignored Range for {}, reading it as one stream", url);
+            return first.whole.getContent();
+        }
+        logger.debug("Downloading {} ({} bytes) in ranges of {} bytes, {} in parallel", url, length, rangeSize, parallelism);
+        return new SharePointRangedInputStream(transport, url, rangeHeaders, length, rangeSize, parallelism, maxRetries,
+                retryDelayMillis, fetchers, first.bytes);
+    }
+
+    private static long parseLength(String contentLength) {
+        if (contentLength == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SharePointRangedDownload{" +
+                "minFileSize=" + minFileSize +
+                ", rangeSize=" + rangeSize +
+                ", parallelism=" + parallelism +
+                ", maxRetries=" + maxRetries +
+                '}';
+    }
+
+    public static class Builder {
+        private long minFileSize = 64L * 1024 * 1024;
+        private int rangeSize = 8 * 1024 * 1024;
+        private int parallelism = 4;
+        private int maxRetries = 3;
+        private long retryDelayMillis = 500;
+
+        private Builder() {
+        }
+
+        /**
+         * Smaller files are read as one stream.
+         */
+        public Builder withMinFileSize(long minFileSize) {
+            this.minFileSize = minFileSize;
+            return this;
+        }
+
+        public Builder withRangeSize(int rangeSize) {
+            this.rangeSize = rangeSize;
+            return this;
+        }
+
+        /**
+         * Ranges requested at once per file; a stream holds at most this many ranges plus the one being read.
+         */
+        public Builder withParallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Retries of a failed range, {@code retryDelayMillis} times the attempt apart.
+         */
+        public Builder withRetries(int maxRetries, long retryDelayMillis) {
+            this.maxRetries = maxRetries;
+            this.retryDelayMillis = retryDelayMillis;
+            return this;
+        }
+
+        public SharePointRangedDownload build() {
+            if (minFileSize < 0 || rangeSize <= 0 || parallelism <= 0 || maxRetries < 0 || retryDelayMillis < 0) {
+                throw new IllegalArgumentException("Illegal ranged download parameters: minFileSize=" + minFileSize +
+                        ", rangeSize=" + rangeSize + ", parallelism=" + parallelism + ", maxRetries=" + maxRetries +
+                        ", retryDelayMillis=" + retryDelayMillis);
+            }
+            return new SharePointRangedDownload(this);
+        }
+    }
+}
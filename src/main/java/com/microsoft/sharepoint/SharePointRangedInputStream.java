@@ -0,0 +1,262 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Reads a file as byte ranges fetched in parallel, in order. Up to {@code parallelism} ranges after the one being
+ * read are requested ahead, so at most {@code parallelism + 1} ranges are held in memory whatever the file size;
+ * a range is requested again only once the reader consumed one.
+ * <p>
+ * A range that fails (I/O error, throttling, 5xx, or a response that is not the requested range) is retried up to
+ * {@code maxRetries} times before the read fails. A range answered with the whole file (200) fails the read without
+ * its body being read. Closing the stream cancels the ranges requested ahead.
+ * <p>
+ * Created by {@link SharePointRangedDownload#open}, which also checks that the server honours Range.
+ */
+public class SharePointRangedInputStream extends InputStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharePointRangedInputStream.class);
+
+    private final SharePointHttpTransport transport;
+    private final String url;
+    private final Map<String, String> headers;
+    private final long length;
+    private final int rangeSize;
+    private final int parallelism;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+    private final ExecutorService executor;
+    private final int rangeCount;
+
+    private final Deque<Future<byte[]>> ahead = new ArrayDeque<>();
+    private int nextRange;
+
+    private byte[] current;
+    private int position;
+    private long bytesRead;
+    private volatile boolean closed;
+
+    SharePointRangedInputStream(SharePointHttpTransport transport, String url, Map<String, String> headers, long length,
+                                int rangeSize, int parallelism, int maxRetries, long retryDelayMillis,
+                                ExecutorService executor, byte[] firstRange) {
+        this.transport = transport;
+        this.url = url;
+        this.headers = headers;
+        this.length = length;
+        this.rangeSize = rangeSize;
+        this.parallelism = parallelism;
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+        this.executor = executor;
+        this.rangeCount = (int) ((length + rangeSize - 1) / rangeSize);
+        this.current = firstRange;
+        this.nextRange = 1;
+        requestAhead();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        bytesRead++;
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, count);
+        position += count;
+        bytesRead += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<byte[]> future : ahead) {
+            future.cancel(true);
+        }
+        ahead.clear();
+        current = null;
+        logger.trace("Closed ranged stream of {} after {} of {} bytes", url, bytesRead, length);
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    private boolean ensureCurrent() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (current == null || position == current.length) {
+            Future<byte[]> next = ahead.poll();
+            if (next == null) {
+                current = null;
+                return false;
+            }
+            current = await(next);
+            position = 0;
+            requestAhead();
+        }
+        return true;
+    }
+
+    private void requestAhead() {
+        while (ahead.size() < parallelism && nextRange < rangeCount) {
+            int range = nextRange++;
+            ahead.add(executor.submit(() -> fetchRange(range)));
+        }
+    }
+
+    private byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while reading " + url);
+        } catch (CancellationException e) {
+            throw new IOException("Stream closed", e);
+        } catch (ExecutionException e) {
+            close();
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Failed to read " + url, cause);
+        }
+    }
+
+    private byte[] fetchRange(int range) throws IOException, InterruptedException {
+        long start = (long) range * rangeSize;
+        long end = Math.min(length, start + rangeSize) - 1;
+        FetchedRange fetched = fetchRange(transport, url, headers, start, end, maxRetries, retryDelayMillis, () -> closed);
+        if (fetched.whole != null) {
+            // Do not read the whole file into this range
+            closeUnread(fetched.whole);
+            throw new IOException("Server ignored Range " + start + "-" + end + " of " + url + " after serving the first range");
+        }
+        return fetched.bytes;
+    }
+
+    /**
+     * @return exactly the requested bytes of a 206, or the open, unread 200 response of a server that ignored Range
+     */
+    static FetchedRange fetchRange(SharePointHttpTransport transport, String url, Map<String, String> headers,
+                                   long start, long end, int maxRetries, long retryDelayMillis,
+                                   BooleanSupplier cancelled) throws IOException, InterruptedException {
+        Map<String, String> rangeHeaders = Maps.newHashMap(headers);
+        rangeHeaders.put("Range", "bytes=" + start + "-" + end);
+        int expected = (int) (end - start + 1);
+        IOException failure = null;
+        for (int attempt = 0; attempt <= maxRetries && !cancelled.getAsBoolean(); attempt++) {
+            if (attempt > 0) {
+                logger.debug("Retrying range {}-{} of {} (attempt {}): {}", start, end, url, attempt, failure.getMessage());
+                Thread.sleep(retryDelayMillis * attempt);
+            }
+            SharePointHttpStreamResponse response;
+            try {
+                response = transport.executeStreaming("GET", url, rangeHeaders);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+                continue;
+            }
+            int status = response.getStatus();
+            if (status == 200) {
+                return new FetchedRange(null, response);
+            }
+            if (status == 206) {
+                try (SharePointHttpStreamResponse partial = response) {
+                    byte[] bytes = readExactly(partial.getContent(), expected);
+                    if (bytes != null) {
+                        return new FetchedRange(bytes, null);
+                    }
+                    failure = new IOException("Failed to read range " + start + "-" + end + " of " + url +
+                            ", the response is not " + expected + " bytes");
+                } catch (InterruptedIOException e) {
+                    throw e;
+                } catch (IOException e) {
+                    failure = e;
+                }
+                continue;
+            }
+            closeUnread(response);
+            failure = new IOException("Failed to read range " + start + "-" + end + " of " + url + ", status " + status);
+            if (status == 412) {
+                throw new IOException(url + " was modified during the download, " + failure.getMessage());
+            }
+            if (status != 429 && status < 500) {
+                // not found, access denied - retrying will not help
+                throw failure;
+            }
+        }
+        throw failure != null ? failure : new IOException("Stream closed");
+    }
+
+    /**
+     * @return the body if it is exactly {@code expected} bytes long, null otherwise
+     */
+    private static byte[] readExactly(InputStream in, int expected) throws IOException {
+        byte[] bytes = new byte[expected];
+        int count = 0;
+        while (count < expected) {
+            int read = in.read(bytes, count, expected - count);
+            if (read == -1) {
+                return null;
+            }
+            count += read;
+        }
+        return in.read() == -1 ? bytes : null;
+    }
+
+    private static void closeUnread(SharePointHttpStreamResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            logger.trace("Failed to close an unread response", e);
+        }
+    }
+
+    /**
+     * A range as fetched: either the requested bytes or the whole file's response.
+     */
+    static final class FetchedRange {
+        final byte[] bytes;
+        final SharePointHttpStreamResponse whole;
+
+        private FetchedRange(byte[] bytes, SharePointHttpStreamResponse whole) {
+            this.bytes = bytes;
+            this.whole = whole;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.io.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Folder scoped list item pages through {@code RenderListDataAsStream}: a CAML view with
+ * {@code Scope="RecursiveAll"} rooted at {@code FolderServerRelativeUrl} returns the items of that subtree only,
+ * which SharePoint Online cannot do with a {@code startswith(FileRef, ...)} filter on large lists.
+ * <p>
+ * The request is a POST to {@code Web/Lists(guid'...')/RenderListDataAsStream} with the view in the body; the next
+ * page is requested with the response's {@code NextHref} query string ({@code ?Paged=TRUE&p_ID=...}) on the URL.
+ */
+public final class SharePointRenderListData {
+
+    public static final String CONTENT_TYPE = "application/json;odata=verbose";
+
+    private static final String ENDPOINT = "/RenderListDataAsStream";
+    private static final String ROOT_FOLDER_PARAM = "RootFolder=";
+
+    // RenderOptions.ListData - rows and paging only, no list schema or context info
+    private static final int RENDER_LIST_DATA = 2;
+
+    private static final String[] VIEW_FIELDS = {"ID", "FileRef", "FSObjType", "Modified", "Created", "Author", "File_x0020_Size"};
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private SharePointRenderListData() {
+    }
+
+    /**
+     * @param paging the {@code NextHref} of the previous page, null for the first page
+     * @return the URL relative to the REST root
+     */
+    public static String createRelativeUrl(String listId, String paging) {
+        return "Web/Lists(guid'" + listId + "')" + ENDPOINT + (paging == null ? "" : paging);
+    }
+
+    public static boolean isRenderListDataUrl(String url) {
+        return url != null && url.contains(ENDPOINT);
+    }
+
+    public static byte[] createBody(String folderServerRelativeUrl, int rowLimit) {
+        StringBuilder viewXml = new StringBuilder("<View Scope=\"RecursiveAll\"><Query><OrderBy><FieldRef Name=\"ID\" Ascending=\"TRUE\"/></OrderBy></Query><ViewFields>");
+        for (String field : VIEW_FIELDS) {
+            viewXml.append("<FieldRef Name=\"").append(field).append("\"/>");
+        }
+        viewXml.append("</ViewFields><RowLimit Paged=\"TRUE\">").append(rowLimit).append("</RowLimit></View>");
+
+        ObjectNode parameters = mapper.createObjectNode();
+        parameters.putObject("__metadata").put("type", "SP.RenderListDataParameters");
+        parameters.put("RenderOptions", RENDER_LIST_DATA);
+        parameters.put("ViewXml", viewXml.toString());
+        if (folderServerRelativeUrl != null) {
+            parameters.put("FolderServerRelativeUrl", folderServerRelativeUrl);
+        }
+        ObjectNode body = mapper.createObjectNode();
+        body.set("parameters", parameters);
+        try {
+            return mapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create RenderListDataAsStream parameters", e);
+        }
+    }
+
+    /**
+     * The folder is kept on the paging query string so a page URL alone is enough to request the next one.
+     */
+    public static String withRootFolder(String paging, String folderServerRelativeUrl) {
+        if (folderServerRelativeUrl == null || paging.contains(ROOT_FOLDER_PARAM)) {
+            return paging;
+        }
+        try {
+            return paging + (paging.contains("?") ? "&" : "?") + ROOT_FOLDER_PARAM + URLEncoder.encode(folderServerRelativeUrl, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the decoded {@code RootFolder} of a page URL, null if it has none
+     */
+    public static String getRootFolder(String url) {
+        int index = url.indexOf(ROOT_FOLDER_PARAM);
+        if (index < 0 || (index > 0 && url.charAt(index - 1) != '?' && url.charAt(index - 1) != '&')) {
+            return null;
+        }
+        int end = url.indexOf('&', index);
+        String value = url.substring(index + ROOT_FOLDER_PARAM.length(), end < 0 ? url.length() : end);
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the page, its next URL is the raw {@code NextHref} query string (null on the last page)
+     */
+    public static SharePointListItemPage parse(InputStream content) throws IOException {
+        return parse(content, null);
+    }
+
+    /**
+     * @param pathTable when given, item file refs are interned into it
+     */
+    public static SharePointListItemPage parse(InputStream content, SharePointPathTable pathTable) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream countingContent = new CountingInputStream(content);
+        JsonNode root = mapper.readTree(countingContent);
+        JsonNode rows = root.path("Row");
+        List<SharePointListItem> items = Lists.newArrayListWithCapacity(rows.size());
+        for (JsonNode row : rows) {
+            SharePointListItem item = new SharePointListItem();
+            item.setId(text(row, "ID"));
+            String fileRef = text(row, "FileRef");
+            if (pathTable != null && fileRef != null) {
+                item.setFileRefPath(pathTable.intern(fileRef));
+            } else {
+                item.setFileRef(fileRef);
+            }
+            String objectType = text(row, "FSObjType");
+            if (objectType != null) {
+                item.setFileSystemObjectTypeOrdinal(Integer.parseInt(objectType));
+            }
+            // "Modified" is formatted for display, "Modified." holds the ISO value
+            item.setModified(text(row, "Modified."));
+            item.setCreated(text(row, "Created."));
+            JsonNode author = row.path("Author");
+            if (author.isArray() && author.size() > 0) {
+                item.setAuthorId(text(author.get(0), "id"));
+            }
+            String size = text(row, "File_x0020_Size");
+            if (size != null) {
+                item.setSizeValue(Long.parseLong(size));
+            }
+            items.add(item);
+        }
+        SharePointListItemPage page = new SharePointListItemPage(items);
+        page.setNextUrl(text(root, "NextHref"));
+        page.setResponseBytes(countingContent.getCount());
+        page.setParseNanos(System.nanoTime() - start);
+        return page;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        String text = value.asText();
+        return text.isEmpty() ? null : text;
+    }
+}
@@ -0,0 +1,221 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds all the webs under a site with the search API ({@code contentclass:STS_Web} under the site's path), a few
+ * pages of up to {@link #MAX_ROW_LIMIT} webs instead of one {@code Webs} request per site per level, and rebuilds
+ * their tree locally. The query is limited to the site's collection ({@code SiteId}), so other site collections under
+ * the same URL prefix (e.g. {@code /sites/*} under the root site) are not taken for sub-sites, like the {@code Webs}
+ * walk.
+ * <p>
+ * A web's parent is its URL without the last segment (sub-sites are always created directly under their parent),
+ * so each web's depth is known as soon as it is found, whatever order the results come in.
+ * <p>
+ * Search results reflect the search index - a web created since the last crawl is missing until it is indexed.
+ */
+public class SharePointSiteDiscovery {
+
+    public static final String CONTENT_TYPE = "application/json;odata=verbose";
+
+    // the search API returns at most 500 rows per query
+    public static final int MAX_ROW_LIMIT = 500;
+
+    // the site collection's id, the SiteId the search is limited to
+    public static final String SITE_ID_RELATIVE_URL = "site?$select=Id";
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String rootUrl;
+
+    // sorted by URL, so a web comes before its sub-sites
+    private final Map<String, Site> sites = Maps.newTreeMap();
+
+    public SharePointSiteDiscovery(String rootUrl) {
+        this.rootUrl = trimSlash(rootUrl);
+    }
+
+    /**
+     * @param siteId the id of the site collection {@code rootUrl} is in, see {@link #parseSiteId}
+     * @return the URL relative to the REST root
+     */
+    public static String createRelativeUrl(String rootUrl, String siteId, int startRow, int rowLimit) {
+        String queryText = "contentclass:STS_Web SiteId:" + siteId + " path:\"" + trimSlash(rootUrl) + "/\"";
+        return "search/query?querytext='" + encode(queryText.replace("'", "''")) + "'" +
+                "&selectproperties='Path'&trimduplicates=false" +
+                "&rowlimit=" + Math.min(rowLimit, MAX_ROW_LIMIT) + "&startrow=" + startRow;
+    }
+
+    /**
+     * @param content the response to {@link #SITE_ID_RELATIVE_URL}
+     */
+    public static String parseSiteId(InputStream content) throws IOException {
+        JsonNode root = mapper.readTree(content);
+        String siteId = (root.has("d") ? root.path("d") : root).path("Id").asText(null);
+        if (siteId == null || siteId.isEmpty()) {
+            throw new IOException("No site collection id in the response");
+        }
+        return siteId;
+    }
+
+    public static SearchPage parse(InputStream content) throws IOException {
+        JsonNode root = mapper.readTree(content);
+        JsonNode query = root.has("d") ? root.path("d").path("query") : root;
+        JsonNode relevantResults = query.path("PrimaryQueryResult").path("RelevantResults");
+        List<String> webUrls = Lists.newArrayList();
+        for (JsonNode row : results(relevantResults.path("Table").path("Rows"))) {
+            for (JsonNode cell : results(row.path("Cells"))) {
+                if ("Path".equals(cell.path("Key").asText())) {
+                    String path = cell.path("Value").asText(null);
+                    if (path != null && !path.isEmpty()) {
+                        webUrls.add(path);
+                    }
+                    break;
+                }
+            }
+        }
+        return new SearchPage(webUrls, relevantResults.path("RowCount").asInt(webUrls.size()),
+                relevantResults.path("TotalRows").asInt(webUrls.size()));
+    }
+
+    /**
+     * @return the web, null for the root itself, a web outside the root or a web already added
+     */
+    public Site add(String webUrl) {
+        if (webUrl == null) {
+            return null;
+        }
+        String url = trimSlash(webUrl);
+        if (url.length() <= rootUrl.length() || url.charAt(rootUrl.length()) != '/'
+                || !url.regionMatches(true, 0, rootUrl, 0, rootUrl.length())) {
+            return null;
+        }
+        String relativePath = url.substring(rootUrl.length() + 1);
+        String key = relativePath.toLowerCase();
+        if (sites.containsKey(key)) {
+            return null;
+        }
+        Site site = new Site(url, relativePath);
+        sites.put(key, site);
+        return site;
+    }
+
+    /**
+     * @return the webs found so far, each one before its sub-sites
+     */
+    public Collection<Site> getSites() {
+        return Collections.unmodifiableCollection(sites.values());
+    }
+
+    public String getRootUrl() {
+        return rootUrl;
+    }
+
+    private static Iterable<JsonNode> results(JsonNode node) {
+        return node.has("results") ? node.get("results") : node;
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    public static class Site {
+        private final String url;
+        private final String relativePath;
+        private final int depth;
+
+        private Site(String url, String relativePath) {
+            this.url = url;
+            this.relativePath = relativePath;
+            int depth = 1;
+            for (int i = 0; i < relativePath.length(); i++) {
+                if (relativePath.charAt(i) == '/') {
+                    depth++;
+                }
+            }
+            this.depth = depth;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * @return the path under the root, e.g. {@code sub1/sub2}
+         */
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * @return the parent's path under the root, null for a direct sub-site of the root
+         */
+        public String getParentPath() {
+            int index = relativePath.lastIndexOf('/');
+            return index < 0 ? null : relativePath.substring(0, index);
+        }
+
+        public String getName() {
+            return relativePath.substring(relativePath.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * @return 1 for a direct sub-site of the root
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        @Override
+        public String toString() {
+            return "Site{" +
+                    "url='" + url + '\'' +
+                    ", depth=" + depth +
+                    '}';
+        }
+    }
+
+    public static class SearchPage {
+        private final List<String> webUrls;
+        private final int rowCount;
+        private final int totalRows;
+
+        private SearchPage(List<String> webUrls, int rowCount, int totalRows) {
+            this.webUrls = webUrls;
+            this.rowCount = rowCount;
+            this.totalRows = totalRows;
+        }
+
+        public List<String> getWebUrls() {
+            return webUrls;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getTotalRows() {
+            return totalRows;
+        }
+    }
+}
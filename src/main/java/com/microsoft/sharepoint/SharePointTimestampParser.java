@@ -0,0 +1,159 @@
+package com.microsoft.sharepoint;
+
+import java.time.format.DateTimeParseException;
+
+/**
+ * Allocation free parser for the fixed {@code yyyy-MM-dd'T'HH:mm:ss['Z']} layout SharePoint uses for
+ * Created, Modified, TimeCreated, TimeLastModified and vti_timecreated values.
+ * <p>
+ * Results are identical to parsing with {@code DateTimeFormatter.ofPattern(...)} (SMART resolver) at UTC,
+ * including clamping of an out-of-range day-of-month (e.g. Apr 31 - Apr 30) and 24:00:00 as the next midnight.
+ */
+public final class SharePointTimestampParser {
+
+    private static final int LENGTH = 19;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long SECONDS_PER_DAY = 86400L;
+
+    // Days from 0000-03-01 to 1970-01-01 in the proleptic Gregorian calendar
+    private static final long DAYS_0000_TO_1970 = 719468L;
+
+    private SharePointTimestampParser() {
+    }
+
+    public static long parseEpochMillis(CharSequence time, boolean endsWithZ) {
+        if (time == null) {
+            throw new NullPointerException("time");
+        }
+        int expectedLength = endsWithZ ? LENGTH + 1 : LENGTH;
+        if (time.length() != expectedLength
+                || time.charAt(4) != '-' || time.charAt(7) != '-' || time.charAt(10) != 'T'
+                || time.charAt(13) != ':' || time.charAt(16) != ':'
+                || (endsWithZ && time.charAt(19) != 'Z')) {
+            throw error(time);
+        }
+
+        int year = digits(time, 0, 4);
+        int month = digits(time, 5, 7);
+        int day = digits(time, 8, 10);
+        int hour = digits(time, 11, 13);
+        int minute = digits(time, 14, 16);
+        int second = digits(time, 17, 19);
+
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31 || minute > 59 || second > 59) {
+            throw error(time);
+        }
+        if (hour > 23 && (hour != 24 || minute != 0 || second != 0)) {
+            throw error(time);
+        }
+
+        day = Math.min(day, lengthOfMonth(year, month));
+        long epochSeconds = toEpochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+        return epochSeconds * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Reverse of {@link #parseEpochMillis} - formats (seconds precision, UTC) in the same fixed layout.
+     */
+    public static String format(long epochMillis, boolean endsWithZ) {
+        long epochSeconds = Math.floorDiv(epochMillis, MILLIS_PER_SECOND);
+        long epochDay = Math.floorDiv(epochSeconds, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSeconds, SECONDS_PER_DAY);
+
+        long shifted = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(shifted, 146097L);
+        long dayOfEra = shifted - era * 146097L;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        if (year < 1 || year > 9999) {
+            throw new IllegalArgumentException("Epoch millis out of range: " + epochMillis);
+        }
+
+        char[] chars = new char[endsWithZ ? LENGTH + 1 : LENGTH];
+        putDigits(chars, 0, 4, year);
+        chars[4] = '-';
+        putDigits(chars, 5, 7, month);
+        chars[7] = '-';
+        putDigits(chars, 8, 10, day);
+        chars[10] = 'T';
+        putDigits(chars, 11, 13, secondOfDay / 3600);
+        chars[13] = ':';
+        putDigits(chars, 14, 16, secondOfDay / 60 % 60);
+        chars[16] = ':';
+        putDigits(chars, 17, 19, secondOfDay % 60);
+        if (endsWithZ) {
+            chars[19] = 'Z';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param time a value {@link #parseEpochMillis} accepted
+     * @return whether {@code format(parseEpochMillis(time, true), true)} gives back {@code time}, i.e. it has the
+     * trailing Z and parsing did not clamp the day or roll 24:00:00 over
+     */
+    static boolean isCanonical(CharSequence time) {
+        if (time.length() != LENGTH + 1 || time.charAt(LENGTH) != 'Z') {
+            return false;
+        }
+        int year = digits(time, 0, 4);
+        int month = digits(time, 5, 7);
+        int day = digits(time, 8, 10);
+        return digits(time, 11, 13) < 24 && day <= lengthOfMonth(year, month);
+    }
+
+    static long toEpochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400L);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int digits(CharSequence time, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            int digit = time.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw error(time);
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static void putDigits(char[] chars, int from, int to, int value) {
+        for (int i = to - 1; i >= from; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static DateTimeParseException error(CharSequence time) {
+        return new DateTimeParseException("Text '" + time + "' could not be parsed as a SharePoint timestamp", time, 0);
+    }
+}
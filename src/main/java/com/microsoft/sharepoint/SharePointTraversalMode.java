@@ -0,0 +1,19 @@
+package com.microsoft.sharepoint;
+
+/**
+ * How a full scan walks a document library.
+ */
+public enum SharePointTraversalMode {
+
+    /**
+     * Folder by folder through {@code MicrosoftRecursiveAction} - at least one listing request per folder.
+     */
+    FOLDER_RECURSIVE,
+
+    /**
+     * Pages of the list's items, which are recursive over all its folders - one request per page regardless of the
+     * folder count. The folder structure is rebuilt from FileRef and the object type of the items. Best for deep,
+     * narrow libraries (many folders of a few files each).
+     */
+    LIST_RECURSIVE
+}
@@ -0,0 +1,121 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointAdaptivePageSizerTests {
+
+    private static final String LIST = "f1f04276-593b-454b-8ee1-006f83af18d3";
+
+    private static SharePointAdaptivePageSizer createSizer() {
+        return SharePointAdaptivePageSizer.builder()
+                .withPageSizeRange(100, 5000)
+                .withInitialPageSize(500)
+                .withTargetLatencyMillis(1000)
+                .withMaxPageBytes(1_000_000)
+                .withThrottleHoldPages(2)
+                .build();
+    }
+
+    @Test
+    public void test_fastFullPagesGrowUpToMax() {
+        SharePointAdaptivePageSizer sizer = createSizer();
+        for (int i = 0; i < 50; i++) {
+            int size = sizer.getPageSize(LIST);
+            sizer.onPage(LIST, size, size, size * 10L, 50);
+        }
+        assertEquals(5000, sizer.getPageSize(LIST));
+        assertEquals(50, sizer.getStats(LIST).getPages());
+        assertTrue(sizer.getStats(LIST).getItemsPerSecond() > 0);
+    }
+
+    @Test
+    public void test_slowOrLargePagesShrink() {
+        SharePointAdaptivePageSizer sizer = createSizer();
+        // twice the target latency
+        sizer.onPage(LIST, 500, 500, 100_000, 2000);
+        assertEquals(250, sizer.getPageSize(LIST));
+        // 1.25 times the byte budget
+        sizer.onPage(LIST, 250, 250, 1_250_000, 100);
+        assertEquals(200, sizer.getPageSize(LIST));
+        // grows only while both targets are at least twice away
+        sizer.onPage(LIST, 200, 200, 10_000, 400);
+        assertEquals(250, sizer.getPageSize(LIST));
+        sizer.onPage(LIST, 250, 250, 10_000, 600);
+        assertEquals(250, sizer.getPageSize(LIST));
+    }
+
+    @Test
+    public void test_shortPagesDoNotGrow() {
+        SharePointAdaptivePageSizer sizer = createSizer();
+        sizer.onPage(LIST, 500, 12, 1000, 10);
+        assertEquals(500, sizer.getPageSize(LIST));
+    }
+
+    private static SharePointHttpStatusException statusException(int status, String retryAfter) {
+        Map<String, String> headers = Maps.newHashMap();
+        if (retryAfter != null) {
+            headers.put("Retry-After", retryAfter);
+        }
+        return new SharePointHttpStatusException("Failed to list items", new SharePointHttpResponse(status, headers, null));
+    }
+
+    @Test
+    public void test_throttlingHalvesAndHoldsGrowth() {
+        SharePointAdaptivePageSizer sizer = createSizer();
+        assertTrue(sizer.onFailure(LIST, new RuntimeException("Failed to list items", statusException(429, null))));
+        assertEquals(250, sizer.getPageSize(LIST));
+        assertEquals(0, sizer.getRetryDelayMillis(LIST));
+        sizer.onPage(LIST, 250, 250, 1000, 10);
+        sizer.onPage(LIST, 250, 250, 1000, 10);
+        assertEquals(250, sizer.getPageSize(LIST));
+        sizer.onPage(LIST, 250, 250, 1000, 10);
+        assertEquals(312, sizer.getPageSize(LIST));
+        assertEquals(1, sizer.getStats(LIST).getThrottles());
+
+        // only the transport's status counts, not numbers in messages
+        assertFalse(sizer.onFailure(LIST, new RuntimeException("Failed to list items from list " + LIST + " Items(429), status 503")));
+        assertFalse(sizer.onFailure(LIST, statusException(500, null)));
+        assertTrue(SharePointAdaptivePageSizer.isThrottling(statusException(503, null)));
+    }
+
+    @Test
+    public void test_retryAfterDelaysTheNextRequest() {
+        SharePointAdaptivePageSizer sizer = SharePointAdaptivePageSizer.builder().withMaxRetryAfterMillis(60_000).build();
+        assertTrue(sizer.onFailure(LIST, statusException(503, "30")));
+        long delay = sizer.getRetryDelayMillis(LIST);
+        assertTrue(String.valueOf(delay), delay > 25_000 && delay <= 30_000);
+        assertEquals(250, sizer.getPageSize(LIST));
+
+        // capped to the max
+        assertTrue(sizer.onFailure(LIST, statusException(429, "3600")));
+        assertTrue(sizer.getRetryDelayMillis(LIST) <= 60_000);
+        assertEquals(0, sizer.getRetryDelayMillis("other"));
+    }
+
+    @Test
+    public void test_parseRetryAfter() {
+        long now = 1_445_412_480_000L; // Wed, 21 Oct 2015 07:28:00 GMT
+        assertEquals(120_000, SharePointHttpStatusException.parseRetryAfter(" 120 ", now));
+        assertEquals(60_000, SharePointHttpStatusException.parseRetryAfter("Wed, 21 Oct 2015 07:29:00 GMT", now));
+        assertEquals(0, SharePointHttpStatusException.parseRetryAfter("Wed, 21 Oct 2015 07:00:00 GMT", now));
+        assertEquals(-1, SharePointHttpStatusException.parseRetryAfter("soon", now));
+        assertEquals(-1, SharePointHttpStatusException.parseRetryAfter(null, now));
+        assertTrue(statusException(500, "10").isThrottling());
+    }
+
+    @Test
+    public void test_withTop() {
+        assertEquals("Web/Lists(guid'a')/Items?%24skiptoken=Paged%3dTRUE%26p_ID%3d500&%24top=250",
+                SharePointAdaptivePageSizer.withTop("Web/Lists(guid'a')/Items?%24skiptoken=Paged%3dTRUE%26p_ID%3d500&%24top=500", 250));
+        assertEquals("Items?$skiptoken=Paged%3dTRUE&$top=1000&$orderby=ID",
+                SharePointAdaptivePageSizer.withTop("Items?$skiptoken=Paged%3dTRUE&$top=100&$orderby=ID", 1000));
+        assertEquals("Items?$skiptoken=x", SharePointAdaptivePageSizer.withTop("Items?$skiptoken=x", 1000));
+    }
+}
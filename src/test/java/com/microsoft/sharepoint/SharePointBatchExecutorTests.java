@@ -0,0 +1,155 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointBatchExecutorTests {
+
+    private static final String API_URL = "https://sharepoint.instance.com/sites/test/_api/";
+
+    private static final Pattern GET_LINE = Pattern.compile("GET (\\S+) HTTP/1.1");
+
+    /**
+     * Answers contextinfo with a digest and every $batch part with the requested URL as body.
+     */
+    private static class EchoBatchTransport implements SharePointHttpTransport {
+        private final AtomicInteger batches = new AtomicInteger();
+        private final AtomicInteger digests = new AtomicInteger();
+        private final AtomicInteger forbiddenLeft = new AtomicInteger();
+        private final List<Integer> batchSizes = Lists.newCopyOnWriteArrayList();
+
+        @Override
+        public SharePointHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body) {
+            assertEquals("POST", method);
+            if (url.equals(API_URL + "contextinfo")) {
+                int digest = digests.incrementAndGet();
+                String json = "{\"d\":{\"GetContextWebInformation\":{\"FormDigestTimeoutSeconds\":1800,\"FormDigestValue\":\"digest-" + digest + "\"}}}";
+                return new SharePointHttpResponse(200, null, json.getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(API_URL + "$batch", url);
+            assertTrue(headers.get("Content-Type").startsWith("multipart/mixed; boundary=batch_"));
+            if (forbiddenLeft.getAndDecrement() > 0) {
+                return new SharePointHttpResponse(403, null, new byte[0]);
+            }
+            assertEquals("digest-" + digests.get(), headers.get("X-RequestDigest"));
+            batches.incrementAndGet();
+
+            Matcher matcher = GET_LINE.matcher(new String(body, StandardCharsets.UTF_8));
+            StringBuilder response = new StringBuilder();
+            int parts = 0;
+            while (matcher.find()) {
+                parts++;
+                String requested = matcher.group(1);
+                int status = requested.endsWith("missing") ? 404 : 200;
+                response.append("--batchresponse_1\r\n")
+                        .append("Content-Type: application/http\r\n")
+                        .append("Content-Transfer-Encoding: binary\r\n\r\n")
+                        .append("HTTP/1.1 ").append(status).append(status == 200 ? " OK" : " Not Found").append("\r\n")
+                        .append("Content-Type: application/atom+xml;charset=utf-8\r\n\r\n")
+                        .append(requested).append("\r\n");
+            }
+            response.append("--batchresponse_1--\r\n");
+            batchSizes.add(parts);
+            Map<String, String> responseHeaders = Maps.newHashMap();
+            responseHeaders.put("content-type", "multipart/mixed; boundary=batchresponse_1");
+            return new SharePointHttpResponse(200, responseHeaders, response.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void test_getAllFillsWholeBatches() throws Exception {
+        EchoBatchTransport transport = new EchoBatchTransport();
+        SharePointBatchExecutor executor = SharePointBatchExecutor.builder(transport, API_URL)
+                .withMaxBatchSize(20).withLingerMillis(10_000).build();
+        List<String> urls = Lists.newArrayList();
+        for (int i = 1; i <= 45; i++) {
+            urls.add("Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(" + i + ")/HasUniqueRoleAssignments");
+        }
+        urls.set(7, "Web/missing");
+
+        List<SharePointHttpResponse> responses = executor.getAll(urls);
+
+        assertEquals(45, responses.size());
+        for (int i = 0; i < urls.size(); i++) {
+            assertEquals(API_URL + urls.get(i), responses.get(i).getBodyAsString());
+            assertEquals(i == 7 ? 404 : 200, responses.get(i).getStatus());
+        }
+        assertEquals(3, transport.batches.get());
+        assertEquals(1, transport.digests.get());
+        assertEquals(45, executor.getRequests());
+    }
+
+    @Test
+    public void test_concurrentCallersShareBatches() throws Exception {
+        EchoBatchTransport transport = new EchoBatchTransport();
+        SharePointBatchExecutor executor = SharePointBatchExecutor.builder(transport, API_URL)
+                .withMaxBatchSize(10).withLingerMillis(20).build();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        List<Future<String>> results = Lists.newArrayList();
+        for (int i = 0; i < 200; i++) {
+            String url = "Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(" + i + ")";
+            results.add(callers.submit(() -> executor.get(url).getBodyAsString()));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(API_URL + "Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(" + i + ")", results.get(i).get());
+        }
+        callers.shutdown();
+        // 8 callers block on their own request, so a batch holds up to 8 of them - far fewer round trips than 200
+        assertTrue("Too many batches: " + transport.batches.get(), transport.batches.get() <= 100);
+        assertEquals(200, transport.batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    public void test_forbiddenBatchIsRetriedWithNewDigest() throws Exception {
+        EchoBatchTransport transport = new EchoBatchTransport();
+        transport.forbiddenLeft.set(1);
+        SharePointBatchExecutor executor = SharePointBatchExecutor.builder(transport, API_URL).build();
+
+        CompletableFuture<SharePointHttpResponse> future = executor.submit("Web/Lists");
+        executor.flush();
+
+        assertEquals(API_URL + "Web/Lists", future.get().getBodyAsString());
+        assertEquals(2, transport.digests.get());
+    }
+
+    @Test
+    public void test_decodeLineFeedsAndQuotedBoundary() {
+        String body = "--b1\n" +
+                "Content-Type: application/http\n" +
+                "Content-Transfer-Encoding: binary\n\n" +
+                "HTTP/1.1 200 OK\n" +
+                "Content-Type: application/atom+xml\n\n" +
+                "<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">true</d:HasUniqueRoleAssignments>\n" +
+                "--b1\n" +
+                "Content-Type: application/http\n\n" +
+                "HTTP/1.1 204 No Content\n\n" +
+                "\n" +
+                "--b1--\n";
+
+        List<SharePointHttpResponse> responses = SharePointODataBatch.decodeResponse("multipart/mixed; boundary=\"b1\"",
+                body.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, responses.size());
+        assertEquals(200, responses.get(0).getStatus());
+        assertEquals("application/atom+xml", responses.get(0).getHeader("content-type"));
+        assertEquals("<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">true</d:HasUniqueRoleAssignments>",
+                responses.get(0).getBodyAsString());
+        assertEquals(204, responses.get(1).getStatus());
+        assertEquals(0, responses.get(1).getBody().length);
+    }
+}
@@ -0,0 +1,64 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SharePointChangeCoalescerTests {
+
+    private static List<Object[]> coalesce(DiffType... types) {
+        SharePointChangeCoalescer<Integer> coalescer = new SharePointChangeCoalescer<>();
+        for (int i = 0; i < types.length; i++) {
+            coalescer.add("LIST/1", types[i], i);
+        }
+        List<Object[]> result = new ArrayList<>();
+        coalescer.drainTo((mediaItemId, diffType, position) -> result.add(new Object[]{mediaItemId, diffType, position}));
+        return result;
+    }
+
+    private static void assertNet(DiffType expected, DiffType... types) {
+        List<Object[]> result = coalesce(types);
+        assertEquals(1, result.size());
+        assertEquals(expected, result.get(0)[1]);
+        assertEquals(types.length - 1, result.get(0)[2]);
+    }
+
+    @Test
+    public void test_netDiffTypes() {
+        assertEquals(0, coalesce(DiffType.NEW, DiffType.CONTENT_UPDATED, DiffType.CONTENT_UPDATED, DiffType.CONTENT_UPDATED,
+                DiffType.CONTENT_UPDATED, DiffType.CONTENT_UPDATED, DiffType.RENAMED, DiffType.DELETED).size());
+        assertNet(DiffType.NEW, DiffType.NEW, DiffType.CONTENT_UPDATED, DiffType.RENAMED);
+        assertNet(DiffType.UNDELETED, DiffType.UNDELETED, DiffType.ACL_UPDATED);
+        assertNet(DiffType.DELETED, DiffType.CONTENT_UPDATED, DiffType.RENAMED, DiffType.DELETED);
+        assertNet(DiffType.CONTENT_UPDATED, DiffType.RENAMED, DiffType.CONTENT_UPDATED, DiffType.ACL_UPDATED);
+        assertNet(DiffType.RENAMED, DiffType.ACL_UPDATED, DiffType.RENAMED);
+        assertNet(DiffType.ACL_UPDATED, DiffType.ACL_UPDATED, DiffType.ACL_UPDATED);
+        assertNet(DiffType.CONTENT_UPDATED, DiffType.DELETED, DiffType.UNDELETED);
+        assertNet(DiffType.DELETED, DiffType.DELETED, DiffType.UNDELETED, DiffType.DELETED);
+    }
+
+    @Test
+    public void test_orderAndLastPosition() {
+        SharePointChangeCoalescer<Integer> coalescer = new SharePointChangeCoalescer<>();
+        coalescer.add("LIST/1", DiffType.CONTENT_UPDATED, 1);
+        coalescer.add("LIST/2", DiffType.CONTENT_UPDATED, 2);
+        coalescer.add("LIST/1", DiffType.RENAMED, 3);
+        coalescer.add("LIST/3", DiffType.NEW, 4);
+        coalescer.add("LIST/3", DiffType.DELETED, 5);
+        assertEquals(Integer.valueOf(5), coalescer.getLastPosition());
+
+        List<MediaChangeLogDto> result = coalescer.drain(String::valueOf);
+        assertEquals(2, result.size());
+        assertEquals("LIST/2", result.get(0).getMediaItemId());
+        assertEquals("2", result.get(0).getChangeLogPosition());
+        assertEquals("LIST/1", result.get(1).getMediaItemId());
+        // The dropped item 3 was last - its position moves to the last emitted change
+        assertEquals("5", result.get(1).getChangeLogPosition());
+        assertEquals(0, coalescer.getItems());
+    }
+}
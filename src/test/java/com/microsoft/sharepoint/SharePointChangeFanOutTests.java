@@ -0,0 +1,116 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointChangeFanOutTests {
+
+    private static final int CHANGES = 200_000;
+
+    private static MediaChangeLogDto change(int i) {
+        MediaChangeLogDto dto = new MediaChangeLogDto("LIST/" + i, DiffType.CONTENT_UPDATED);
+        dto.setChangeLogPosition(Integer.toString(i));
+        return dto;
+    }
+
+    private static void runAll(SharePointChangeFanOut.WaitStrategy waitStrategy) {
+        Counter indexer = new Counter(0);
+        Counter acl = new Counter(0);
+        Counter audit = new Counter(1000);
+        try (SharePointChangeFanOut fanOut = SharePointChangeFanOut.builder()
+                .withBufferSize(64)
+                .withWaitStrategy(waitStrategy)
+                .addConsumer("indexer", indexer)
+                .addConsumer("acl", acl)
+                .addConsumer("audit", audit)
+                .build()) {
+            for (int i = 0; i < CHANGES; i++) {
+                fanOut.accept(change(i));
+            }
+            fanOut.close();
+            assertEquals(CHANGES, fanOut.getPublished());
+            assertEquals(CHANGES, fanOut.getConsumed("audit"));
+        }
+        assertEquals(CHANGES, indexer.count.get());
+        assertEquals(CHANGES, acl.count.get());
+        assertEquals(CHANGES, audit.count.get());
+    }
+
+    @Test
+    public void test_allConsumersSeeAllChangesInOrder() {
+        for (SharePointChangeFanOut.WaitStrategy waitStrategy : SharePointChangeFanOut.WaitStrategy.values()) {
+            // Busy spinning needs a core per thread (producer + 3 consumers)
+            if (waitStrategy == SharePointChangeFanOut.WaitStrategy.BUSY_SPIN && Runtime.getRuntime().availableProcessors() < 4) {
+                continue;
+            }
+            runAll(waitStrategy);
+        }
+    }
+
+    @Test
+    public void test_failingConsumerDoesNotStopOthers() {
+        Counter healthy = new Counter(0);
+        List<String> failedOn = new CopyOnWriteArrayList<>();
+        try (SharePointChangeFanOut fanOut = SharePointChangeFanOut.builder()
+                .withBufferSize(8)
+                .addConsumer("healthy", healthy)
+                .addConsumer("throwing", change -> {
+                    if (change.getMediaItemId().endsWith("7")) {
+                        failedOn.add(change.getMediaItemId());
+                        throw new IllegalStateException("boom");
+                    }
+                })
+                .addConsumer("dying", change -> {
+                    if ("LIST/5".equals(change.getMediaItemId())) {
+                        throw new AssertionError("fatal");
+                    }
+                })
+                .build()) {
+            for (int i = 0; i < 1000; i++) {
+                fanOut.accept(change(i));
+            }
+            fanOut.close();
+            assertEquals(100, fanOut.getErrors("throwing"));
+            assertEquals(1, fanOut.getErrors("dying"));
+            assertEquals(1000, fanOut.getConsumed("throwing"));
+        }
+        assertEquals(1000, healthy.count.get());
+        assertEquals(100, failedOn.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_acceptAfterClose() {
+        SharePointChangeFanOut fanOut = SharePointChangeFanOut.builder().addConsumer("indexer", change -> { }).build();
+        fanOut.close();
+        fanOut.accept(change(1));
+    }
+
+    private static class Counter implements Consumer<MediaChangeLogDto> {
+        private final AtomicLong count = new AtomicLong();
+        private final int pauseEvery;
+
+        private Counter(int pauseEvery) {
+            this.pauseEvery = pauseEvery;
+        }
+
+        @Override
+        public void accept(MediaChangeLogDto change) {
+            long expected = count.getAndIncrement();
+            assertTrue("Out of order: " + change.getChangeLogPosition() + " expected " + expected,
+                    Long.toString(expected).equals(change.getChangeLogPosition()));
+            if (pauseEvery > 0 && expected % pauseEvery == 0) {
+                LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.Change;
+import com.middleware.share.ChangeToken;
+import com.middleware.share.ChangeTokenScope;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SharePointChangeHeadTrackerTests {
+
+    private static final String LIST_ID = "6d2b4d5b-44a5-4b74-a9b7-0e67f7a58e11";
+    private static final int FIRST_CHANGE_NUMBER = 120_000;
+
+    /**
+     * A list change log - change numbers are shared by the whole content database, so they have gaps.
+     */
+    private static class ChangeLog implements SharePointChangeHeadTracker.ChangeFetcher {
+        final List<Integer> changeNumbers = new ArrayList<>();
+        boolean rejectProbes;
+        int calls;
+
+        ChangeLog(int changes) {
+            append(changes);
+        }
+
+        void append(int changes) {
+            int number = changeNumbers.isEmpty() ? FIRST_CHANGE_NUMBER : changeNumbers.get(changeNumbers.size() - 1);
+            for (int i = 0; i < changes; i++) {
+                number += 1 + i % 3;
+                changeNumbers.add(number);
+            }
+        }
+
+        int head() {
+            return changeNumbers.get(changeNumbers.size() - 1);
+        }
+
+        @Override
+        public List<Change> fetch(String subSite, String listId, ChangeToken startToken, int count) {
+            calls++;
+            int after = startToken == null ? 0 : startToken.getChangeNumber();
+            if (rejectProbes && startToken != null && !changeNumbers.contains(after)) {
+                throw new IllegalArgumentException("Invalid change token");
+            }
+            List<Change> result = new ArrayList<>();
+            for (int number : changeNumbers) {
+                if (number > after && result.size() < count) {
+                    result.add(change(number));
+                }
+            }
+            return result;
+        }
+    }
+
+    private static Change change(int changeNumber) {
+        Change change = mock(Change.class);
+        ChangeToken token = new ChangeToken(ChangeTokenScope.LIST, LIST_ID, new Date(1476000000000L), changeNumber);
+        when(change.getToken()).thenReturn(token);
+        return change;
+    }
+
+    @Test
+    public void test_shortLogInOneCall() throws Exception {
+        ChangeLog log = new ChangeLog(350);
+        SharePointChangeHeadTracker tracker = new SharePointChangeHeadTracker(log);
+        SharePointChangeHeadTracker.ChangeHead head = tracker.getHead(null, LIST_ID);
+        assertEquals(log.head(), head.getToken().getChangeNumber());
+        assertEquals(1, head.getCalls());
+    }
+
+    @Test
+    public void test_emptyLog() throws Exception {
+        SharePointChangeHeadTracker tracker = new SharePointChangeHeadTracker(new ChangeLog(0));
+        assertNull(tracker.getHead(null, LIST_ID).getToken());
+    }
+
+    @Test
+    public void test_longLogInLogarithmicCalls() throws Exception {
+        ChangeLog log = new ChangeLog(50_000);
+        SharePointChangeHeadTracker tracker = new SharePointChangeHeadTracker(log, 100, 64, 0);
+        SharePointChangeHeadTracker.ChangeHead head = tracker.getHead("sub", LIST_ID);
+        assertEquals(log.head(), head.getToken().getChangeNumber());
+        // Reading forward one change per call took 50,000 calls, 100 per page would take 500
+        assertTrue("calls: " + head.getCalls(), head.getCalls() <= 30);
+        assertEquals(head.getCalls(), log.calls);
+        assertEquals(head.getCalls(), tracker.getLastDiscoveryCalls("sub", LIST_ID));
+    }
+
+    @Test
+    public void test_cachedAndRefreshedHead() throws Exception {
+        ChangeLog log = new ChangeLog(5_000);
+        SharePointChangeHeadTracker tracker = new SharePointChangeHeadTracker(log, 100, 64, 60_000);
+        tracker.getHead(null, LIST_ID);
+        int calls = log.calls;
+        assertEquals(0, tracker.getHead(null, LIST_ID).getCalls());
+        assertEquals(calls, log.calls);
+
+        log.append(30);
+        tracker.invalidate(null, LIST_ID);
+        assertEquals(log.head(), tracker.getHead(null, LIST_ID).getToken().getChangeNumber());
+
+        log.append(5);
+        SharePointChangeHeadTracker.ChangeHead exact = tracker.getExactHead(null, LIST_ID);
+        assertEquals(log.head(), exact.getToken().getChangeNumber());
+        assertEquals(1, exact.getCalls());
+        assertEquals(log.head(), tracker.getHead(null, LIST_ID).getToken().getChangeNumber());
+
+        SharePointChangeHeadTracker refreshing = new SharePointChangeHeadTracker(log, 100, 64, 0);
+        refreshing.getHead(null, LIST_ID);
+        log.append(30);
+        SharePointChangeHeadTracker.ChangeHead refreshed = refreshing.getHead(null, LIST_ID);
+        assertEquals(log.head(), refreshed.getToken().getChangeNumber());
+        assertEquals(1, refreshed.getCalls());
+    }
+
+    @Test
+    public void test_fallbackWhenProbesRejected() throws Exception {
+        ChangeLog log = new ChangeLog(2_050);
+        log.rejectProbes = true;
+        SharePointChangeHeadTracker tracker = new SharePointChangeHeadTracker(log, 100, 64, 0);
+        assertEquals(log.head(), tracker.getHead(null, LIST_ID).getToken().getChangeNumber());
+    }
+}
@@ -0,0 +1,228 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+import com.middleware.share.ChangeTokenScope;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointChangePollSchedulerTests {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Change logs of several lists; tokens are SharePointChangeTokenDto JSON with the change index as change number.
+     */
+    private static class FakeFarm implements SharePointChangePollScheduler.ChangeSource, SharePointChangePollScheduler.HeadSource {
+        final Map<String, AtomicInteger> logSizes = new ConcurrentHashMap<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        // Changes up to this number are no longer kept, older tokens fail like on SharePoint
+        volatile int trimmedUpTo;
+        volatile boolean failing;
+
+        void append(String listId, int changes) {
+            logSizes.computeIfAbsent(listId, id -> new AtomicInteger()).addAndGet(changes);
+        }
+
+        static String token(String listId, int changeNumber) {
+            SharePointChangeTokenDto dto = new SharePointChangeTokenDto();
+            dto.setScope(ChangeTokenScope.LIST);
+            dto.setScopeId(listId);
+            dto.setChangeNumber(changeNumber);
+            dto.setDate(1476000000000L + changeNumber);
+            return SharePointParseUtils.convertSharePointChangeTokenDtoToString(dto);
+        }
+
+        @Override
+        public String getLastChange(String subSite, String listId) throws Exception {
+            int size = logSizes.get(listId).get();
+            return size == 0 ? null : track(() -> token(listId, size));
+        }
+
+        @Override
+        public List<MediaChangeLogDto> getChanges(String subSite, String listId, String changeTokenStart, int count) throws Exception {
+            int from = changeTokenStart == null ? 1 : SharePointParseUtils.convertToSharePointChangeToken(changeTokenStart).getChangeNumber() + 1;
+            if (failing) {
+                throw new IOException("Connection reset");
+            }
+            if (from <= trimmedUpTo) {
+                throw new RuntimeException("Failed to get changes", new IllegalStateException(
+                        "Microsoft.SharePoint.SPInvalidChangeTokenException: The change token refers to a time before the start of the current change log."));
+            }
+            int to = Math.min(logSizes.get(listId).get(), from + count - 1);
+            return track(() -> {
+                List<MediaChangeLogDto> result = new ArrayList<>();
+                for (int i = from; i <= to; i++) {
+                    MediaChangeLogDto change = new MediaChangeLogDto(listId + "/" + i, DiffType.CONTENT_UPDATED);
+                    change.setChangeLogPosition(token(listId, i));
+                    result.add(change);
+                }
+                return result;
+            });
+        }
+
+        private <T> T track(Callable<T> call) throws Exception {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+                return call.call();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void test_pollsFromHeadAndResumesFromPersistedCursor() throws Exception {
+        Path cursorFile = folder.getRoot().toPath().resolve("cursors.json");
+        FakeFarm farm = new FakeFarm();
+        farm.append("list-a", 500);
+        List<MediaChangeLogDto> received = new CopyOnWriteArrayList<>();
+
+        SharePointChangePollScheduler scheduler = SharePointChangePollScheduler.builder(farm, farm, (site, list, change) -> received.add(change))
+                .withIntervals(5, 50)
+                .withPageSize(10)
+                .withCursorFile(cursorFile)
+                .build();
+        scheduler.register("sub", "list-a");
+        scheduler.start();
+        waitFor(() -> scheduler.getRequests() >= 2);
+        // Existing history is not replayed
+        assertEquals(0, received.size());
+
+        farm.append("list-a", 25);
+        waitFor(() -> received.size() == 25);
+        assertEquals("list-a/501", received.get(0).getMediaItemId());
+        scheduler.close();
+
+        farm.append("list-a", 3);
+        List<MediaChangeLogDto> resumed = new CopyOnWriteArrayList<>();
+        SharePointChangePollScheduler restarted = SharePointChangePollScheduler.builder(farm, farm, (site, list, change) -> resumed.add(change))
+                .withIntervals(5, 50)
+                .withCursorFile(cursorFile)
+                .build();
+        restarted.register("sub", "list-a");
+        restarted.start();
+        waitFor(() -> resumed.size() == 3);
+        assertEquals("list-a/526", resumed.get(0).getMediaItemId());
+        restarted.close();
+    }
+
+    @Test
+    public void test_budgetAndAdaptiveIntervals() throws Exception {
+        FakeFarm farm = new FakeFarm();
+        for (int i = 0; i < 40; i++) {
+            farm.append("list-" + i, 1);
+        }
+        SharePointChangePollScheduler scheduler = SharePointChangePollScheduler.builder(farm, farm, (site, list, change) -> {
+        })
+                .withThreads(8)
+                .withMaxConcurrentRequests(3)
+                .withIntervals(10, 640)
+                .build();
+        for (int i = 0; i < 40; i++) {
+            scheduler.register(null, "list-" + i);
+        }
+        scheduler.start();
+        long deadline = System.currentTimeMillis() + 1500;
+        while (System.currentTimeMillis() < deadline) {
+            farm.append("list-0", 1);
+            Thread.sleep(5);
+        }
+        scheduler.close();
+
+        assertTrue("max in flight " + farm.maxInFlight.get(), farm.maxInFlight.get() <= 3);
+        assertTrue(scheduler.getIntervalMillis(null, "list-0") < scheduler.getIntervalMillis(null, "list-1"));
+        assertEquals(0, scheduler.getErrors());
+    }
+
+    @Test
+    public void test_expiredCursorReportsTheGapAndRestartsFromTheHead() throws Exception {
+        FakeFarm farm = new FakeFarm();
+        farm.append("list-a", 10);
+        List<MediaChangeLogDto> received = new CopyOnWriteArrayList<>();
+        List<String> lost = new CopyOnWriteArrayList<>();
+        SharePointChangePollScheduler.ChangeListener listener = new SharePointChangePollScheduler.ChangeListener() {
+            @Override
+            public void onChange(String subSite, String listId, MediaChangeLogDto change) {
+                received.add(change);
+            }
+
+            @Override
+            public void onChangesLost(String subSite, String listId, String expiredCursor) {
+                lost.add(expiredCursor);
+            }
+        };
+
+        SharePointChangePollScheduler scheduler = SharePointChangePollScheduler.builder(farm, farm, listener)
+                .withIntervals(5, 50)
+                .build();
+        scheduler.register("sub", "list-a");
+        scheduler.start();
+        waitFor(() -> FakeFarm.token("list-a", 10).equals(scheduler.getCursor("sub", "list-a")));
+
+        farm.trimmedUpTo = 20;
+        farm.append("list-a", 15);
+        waitFor(() -> lost.size() == 1);
+        waitFor(() -> FakeFarm.token("list-a", 25).equals(scheduler.getCursor("sub", "list-a")));
+        assertEquals(FakeFarm.token("list-a", 10), lost.get(0));
+
+        farm.append("list-a", 2);
+        waitFor(() -> received.size() == 2);
+        scheduler.close();
+        assertEquals("list-a/26", received.get(0).getMediaItemId());
+        assertEquals(1, lost.size());
+    }
+
+    @Test
+    public void test_failedPollsBackOffGradually() throws Exception {
+        FakeFarm farm = new FakeFarm();
+        farm.append("list-a", 1);
+        farm.failing = true;
+        List<MediaChangeLogDto> received = new CopyOnWriteArrayList<>();
+
+        SharePointChangePollScheduler scheduler = SharePointChangePollScheduler.builder(farm, farm, (site, list, change) -> received.add(change))
+                .withIntervals(10, 60_000)
+                .build();
+        scheduler.register(null, "list-a");
+        scheduler.start();
+        waitFor(() -> scheduler.getErrors() >= 3);
+        long interval = scheduler.getIntervalMillis(null, "list-a");
+        assertTrue("interval " + interval, interval > 10 && interval <= 160);
+
+        farm.failing = false;
+        farm.append("list-a", 1);
+        waitFor(() -> received.size() == 1);
+        scheduler.close();
+        assertEquals("list-a/2", received.get(0).getMediaItemId());
+        assertFalse(SharePointChangePollScheduler.isExpiredChangeToken(new IOException("Connection reset")));
+    }
+}
@@ -0,0 +1,80 @@
+package com.microsoft.sharepoint;
+
+import com.file.DiffType;
+import com.media.MediaChangeLogDto;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SharePointChangeSpliteratorTests {
+
+    private static final int TOTAL_CHANGES = 25;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    // Change log positions are the change index, the start token is exclusive
+    private List<MediaChangeLogDto> fetch(String startToken, int count) {
+        fetches.incrementAndGet();
+        int from = startToken == null ? 0 : Integer.parseInt(startToken) + 1;
+        List<MediaChangeLogDto> page = new ArrayList<>();
+        for (int i = from; i < Math.min(from + count, TOTAL_CHANGES); i++) {
+            MediaChangeLogDto change = new MediaChangeLogDto("LIST/" + i, DiffType.CONTENT_UPDATED);
+            change.setChangeLogPosition(String.valueOf(i));
+            page.add(change);
+        }
+        return page;
+    }
+
+    @Test
+    public void test_streamsAllPages() {
+        List<String> positions = SharePointChangeSpliterator.stream(this::fetch, null, 10)
+                .map(MediaChangeLogDto::getChangeLogPosition)
+                .collect(Collectors.toList());
+        assertEquals(TOTAL_CHANGES, positions.size());
+        assertEquals("0", positions.get(0));
+        assertEquals("24", positions.get(24));
+        assertEquals(3, fetches.get());
+    }
+
+    @Test
+    public void test_exactMultipleOfPageSize() {
+        assertEquals(TOTAL_CHANGES, SharePointChangeSpliterator.stream(this::fetch, null, 5).count());
+        // 5 full pages and an empty one to detect the end
+        assertEquals(6, fetches.get());
+    }
+
+    @Test
+    public void test_fetchesLazily() {
+        SharePointChangeSpliterator spliterator = new SharePointChangeSpliterator(this::fetch, "4", 10);
+        assertEquals(0, fetches.get());
+        List<MediaChangeLogDto> first = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            spliterator.tryAdvance(first::add);
+        }
+        assertEquals(1, fetches.get());
+        assertEquals("5", first.get(0).getChangeLogPosition());
+        assertEquals("14", spliterator.getNextToken());
+
+        spliterator.tryAdvance(first::add);
+        assertEquals(2, fetches.get());
+        assertEquals("15", first.get(10).getChangeLogPosition());
+    }
+
+    @Test
+    public void test_fetchFailure() {
+        try {
+            SharePointChangeSpliterator.stream((token, count) -> {
+                throw new IllegalStateException("boom");
+            }, null, 10).count();
+            fail("Expected failure");
+        } catch (RuntimeException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+}
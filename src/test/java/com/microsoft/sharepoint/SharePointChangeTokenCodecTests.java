@@ -0,0 +1,66 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.ChangeToken;
+import com.middleware.share.ChangeTokenScope;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SharePointChangeTokenCodecTests {
+
+    private static final String LIST_ID = "6d2b4d5b-44a5-4b74-a9b7-0e67f7a58e11";
+
+    private static void assertToken(SharePointChangeTokenDto dto, ChangeTokenScope scope, String scopeId, long date, int changeNumber, int version) {
+        assertEquals(scope, dto.getScope());
+        assertEquals(scopeId, dto.getScopeId());
+        assertEquals(date, dto.getDate());
+        assertEquals(changeNumber, dto.getChangeNumber());
+        assertEquals(version, dto.getVersion());
+    }
+
+    @Test
+    public void test_roundTrip() {
+        ChangeToken token = new ChangeToken(ChangeTokenScope.LIST, LIST_ID, new Date(1476000000123L), 123456);
+        String encoded = SharePointChangeTokenCodec.encode(token);
+        assertEquals("1|LIST|" + LIST_ID + "|1476000000123|123456|" + token.getVersion(), encoded);
+        SharePointChangeTokenDto decoded = SharePointChangeTokenCodec.decode(encoded);
+        assertToken(decoded, ChangeTokenScope.LIST, LIST_ID, 1476000000123L, 123456, token.getVersion());
+        assertEquals(encoded, SharePointChangeTokenCodec.encode(decoded));
+    }
+
+    @Test
+    public void test_emptyFields() {
+        SharePointChangeTokenDto dto = new SharePointChangeTokenDto();
+        dto.setDate(-5L);
+        String encoded = SharePointChangeTokenCodec.encode(dto);
+        assertEquals("1|||-5|0|0", encoded);
+        assertToken(SharePointChangeTokenCodec.decode(encoded), null, null, -5L, 0, 0);
+        assertNull(SharePointChangeTokenCodec.decode(null));
+        assertNull(SharePointChangeTokenCodec.encode((ChangeToken) null));
+    }
+
+    @Test
+    public void test_readsLegacyJson() {
+        String json = "{\"scope\":\"LIST\",\"version\":1,\"scopeId\":\"" + LIST_ID + "\",\"date\":1476000000000,\"changeNumber\":100005}";
+        assertToken(SharePointChangeTokenCodec.decode(json), ChangeTokenScope.LIST, LIST_ID, 1476000000000L, 100005, 1);
+        assertToken(SharePointParseUtils.convertToSharePointChangeToken("{'changeNumber':7}"), null, null, 0L, 7, 0);
+    }
+
+    @Test
+    public void test_illegalTokens() {
+        String[] illegal = {"", "1", "2|LIST|id|1|2|1", "1|LIST|id|1|2", "1|LIST|id|1|2|1|", "1|NOPE|id|1|2|1",
+                "1|LIST|id|x|2|1", "1|LIST|id||2|1", "{not json"};
+        for (String token : illegal) {
+            try {
+                SharePointChangeTokenCodec.decode(token);
+                fail("Expected failure for " + token);
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.microsoft.sharepoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SharePointFileTypeRestrictionTests {
+
+    @Test
+    public void test_filterKeepsFoldersAndNormalizesExtensions() {
+        SharePointFileTypeRestriction restriction = new SharePointFileTypeRestriction(Arrays.asList(".DOCX", "*.xlsx", "docx", " ", "o'brien"));
+
+        assertEquals("((FSObjType eq 1) or (File_x0020_Type eq 'docx') or (File_x0020_Type eq 'o''brien') or (File_x0020_Type eq 'xlsx'))",
+                restriction.toString());
+    }
+
+    @Test
+    public void test_combinedWithStartsWith() {
+        SharePointAndRestriction restriction = new SharePointAndRestriction(
+                new SharePointStartsWithRestriction("FileRef", "/sites/test/Shared Documents"),
+                new SharePointFileTypeRestriction(Collections.singletonList("pdf")));
+
+        assertEquals("(startswith(FileRef, '/sites/test/Shared Documents')) and (((FSObjType eq 1) or (File_x0020_Type eq 'pdf')))",
+                restriction.toString());
+    }
+
+    @Test
+    public void test_noRestrictionForEmptyOrTooManyExtensions() {
+        assertNull(SharePointFileTypeRestriction.of(null));
+        assertNull(SharePointFileTypeRestriction.of(Collections.singletonList(".")));
+        String[] extensions = new String[SharePointFileTypeRestriction.MAX_EXTENSIONS + 1];
+        for (int i = 0; i < extensions.length; i++) {
+            extensions[i] = "ext" + i;
+        }
+        assertNull(SharePointFileTypeRestriction.of(Arrays.asList(extensions)));
+    }
+
+    @Test
+    public void test_equalExtensionsAreEqualRestrictions() {
+        SharePointFileTypeRestriction restriction = new SharePointFileTypeRestriction(Arrays.asList(".DOCX", "pdf"));
+        assertEquals(restriction, new SharePointFileTypeRestriction(Arrays.asList("pdf", "*.docx")));
+        assertEquals(restriction.hashCode(), new SharePointFileTypeRestriction(Arrays.asList("pdf", "docx")).hashCode());
+        assertNotEquals(restriction, new SharePointFileTypeRestriction(Collections.singletonList("pdf")));
+    }
+}
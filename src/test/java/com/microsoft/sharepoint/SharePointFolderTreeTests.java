@@ -0,0 +1,50 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointFolderTreeTests {
+
+    private static final String ROOT = "/sites/test/Shared Documents";
+
+    @Test
+    public void test_rebuildsFoldersFromItemsInIdOrder() {
+        SharePointFolderTree tree = new SharePointFolderTree(ROOT + "/");
+        // a file before its folders, as list items in ID order may come
+        assertTrue(tree.add(ROOT + "/a/b/c.docx", false));
+        assertTrue(tree.add(ROOT + "/a", true));
+        assertTrue(tree.add(ROOT + "/a/b", true));
+        assertTrue(tree.add(ROOT + "/top.txt", false));
+        assertTrue(tree.add(ROOT + "/empty", true));
+        assertFalse(tree.add("/sites/test/Other/x.docx", false));
+        assertFalse(tree.add(ROOT + " Old/x.docx", false));
+
+        assertEquals(4, tree.getFolderCount());
+        assertEquals(Arrays.asList("a", "empty"), tree.getListing(ROOT).getSubFolders());
+        assertEquals(1, tree.getListing(ROOT).getFileCount());
+        assertEquals(Arrays.asList("b"), tree.getListing(ROOT + "/a").getSubFolders());
+        assertEquals(1, tree.getListing(ROOT + "/a/b").getFileCount());
+        assertEquals(0, tree.getListing(ROOT + "/a").getFileCount());
+        assertEquals(0, tree.getListing(ROOT + "/empty").getFileCount());
+        assertNull(tree.getListing(ROOT + "/missing"));
+    }
+
+    @Test
+    public void test_forEachVisitsParentsFirst() {
+        SharePointFolderTree tree = new SharePointFolderTree(null);
+        tree.add("/lib/x/y/z/file.txt", false);
+        tree.add("/lib/w", true);
+
+        List<String> paths = Lists.newArrayList();
+        tree.forEach(listing -> paths.add(listing.getPath()));
+        assertEquals(Arrays.asList("/lib", "/lib/w", "/lib/x", "/lib/x/y", "/lib/x/y/z"), paths);
+    }
+}
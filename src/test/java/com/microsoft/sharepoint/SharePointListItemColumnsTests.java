@@ -0,0 +1,153 @@
+package com.microsoft.sharepoint;
+
+import com.middleware.share.FileSystemObjectType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointListItemColumnsTests {
+
+    @Test
+    public void test_stringAccessorsRoundTrip() {
+        SharePointListItem item = new SharePointListItem();
+        item.setId("17");
+        item.setAuthorId("5");
+        item.setModified("2016-07-26T13:47:00Z");
+        item.setCreated("2016-07-25T08:00:05Z");
+        item.setSize(1024L);
+        item.setFileSystemObjectType(FileSystemObjectType.FOLDER);
+
+        assertEquals("17", item.getId());
+        assertEquals(17, item.getIdAsInt());
+        assertEquals("5", item.getAuthorId());
+        assertEquals("2016-07-26T13:47:00Z", item.getModified());
+        assertEquals(SharePointParseUtils.getTimeInMillis("2016-07-26T13:47:00Z", true), item.getModifiedTime());
+        assertEquals("2016-07-25T08:00:05Z", item.getCreated());
+        assertEquals(Long.valueOf(1024), item.getSize());
+        assertEquals(FileSystemObjectType.FOLDER, item.getFileSystemObjectType());
+        assertTrue(item.isFolder());
+
+        item.setSize(null);
+        item.setModified(null);
+        item.setFileSystemObjectType(null);
+        assertNull(item.getSize());
+        assertNull(item.getModified());
+        assertNull(item.getFileSystemObjectType());
+    }
+
+    @Test
+    public void test_columnsRoundTrip() {
+        SharePointPathTable pathTable = new SharePointPathTable();
+        SharePointListItemColumns columns = new SharePointListItemColumns(1);
+        SharePointListItem item = new SharePointListItem();
+        for (int i = 0; i < 10; i++) {
+            item.clear();
+            item.setId(String.valueOf(i + 1));
+            item.setModified("2016-07-26T13:47:0" + i + "Z");
+            item.setFileSystemObjectTypeOrdinal(i % 3 == 0 ? 1 : 0);
+            item.setListItemHavingUniqueAcls(i == 4);
+            if (i % 3 != 0) {
+                item.setSizeValue(i * 100L);
+            }
+            if (i % 2 == 0) {
+                item.setFileRefPath(pathTable.intern("/sites/test/Docs/item-" + i));
+            } else {
+                item.setFileRef("/sites/test/Docs/item-" + i);
+            }
+            columns.add(item);
+        }
+        assertEquals(10, columns.size());
+
+        List<SharePointListItem> items = new SharePointListItemPage(columns).getItems();
+        assertEquals(10, items.size());
+        for (int i = 0; i < 10; i++) {
+            SharePointListItem read = items.get(i);
+            assertEquals(String.valueOf(i + 1), read.getId());
+            assertEquals("2016-07-26T13:47:0" + i + "Z", read.getModified());
+            assertEquals(i % 3 == 0, read.isFolder());
+            assertEquals(i == 4, read.isListItemHavingUniqueAcls());
+            assertEquals(i % 3 == 0 ? null : Long.valueOf(i * 100L), read.getSize());
+            assertEquals("/sites/test/Docs/item-" + i, read.getFileRef());
+            assertNull(read.getAuthorId());
+        }
+
+        SharePointListItem flyweight = new SharePointListItem();
+        assertSame(flyweight, columns.read(2, flyweight));
+        assertEquals("3", flyweight.getId());
+        columns.read(1, flyweight);
+        assertFalse(flyweight.isFolder());
+        assertNull(flyweight.getFileRefPath());
+    }
+
+    @Test
+    public void test_timesAreReturnedAsSent() {
+        SharePointListItem item = new SharePointListItem();
+        item.setModified("2016-07-26T13:47:00");
+        item.setCreated("2016-04-31T08:00:05Z");
+        assertEquals("2016-07-26T13:47:00", item.getModified());
+        assertEquals("2016-04-31T08:00:05Z", item.getCreated());
+        assertEquals(SharePointParseUtils.getTimeInMillis("2016-07-26T13:47:00", false), item.getModifiedTime());
+
+        item.setModified("not a time");
+        assertEquals("not a time", item.getModified());
+        assertEquals(SharePointListItem.NO_TIME, item.getModifiedTime());
+
+        item.setModifiedTime(0);
+        assertEquals("1970-01-01T00:00:00Z", item.getModified());
+
+        SharePointListItemColumns columns = new SharePointListItemColumns(1);
+        columns.add(item);
+        item.clear();
+        item.setCreated("2016-07-25T08:00:05Z");
+        columns.add(item);
+        assertEquals("2016-04-31T08:00:05Z", columns.read(0, item).getCreated());
+        assertEquals("2016-07-25T08:00:05Z", columns.read(1, item).getCreated());
+    }
+
+    @Test
+    public void test_serializationKeepsInternedFileRefs() throws Exception {
+        SharePointPathTable pathTable = new SharePointPathTable();
+        SharePointListItemColumns columns = new SharePointListItemColumns(2);
+        SharePointListItem item = new SharePointListItem();
+        item.setIdAsInt(1);
+        item.setFileRefPath(pathTable.intern("/sites/test/Docs/a.docx"));
+        columns.add(item);
+        item.clear();
+        item.setIdAsInt(2);
+        item.setFileRef("/sites/test/Docs/b.docx");
+        columns.add(item);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(columns);
+        }
+        // Writing does not touch the instance
+        assertNotNull(columns.read(0, item).getFileRefPath());
+
+        SharePointListItemColumns copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (SharePointListItemColumns) in.readObject();
+        }
+        assertEquals(2, copy.size());
+        assertEquals("/sites/test/Docs/a.docx", copy.read(0, item).getFileRef());
+        assertEquals("/sites/test/Docs/b.docx", copy.read(1, item).getFileRef());
+
+        // The copy can still grow and take interned paths
+        item.clear();
+        item.setIdAsInt(3);
+        item.setFileRefPath(pathTable.intern("/sites/test/Docs/c.docx"));
+        copy.add(item);
+        assertEquals("/sites/test/Docs/c.docx", copy.read(2, new SharePointListItem()).getFileRef());
+    }
+}
@@ -0,0 +1,89 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.middleware.share.FileSystemObjectType;
+import com.middleware.share.queryoptions.IQueryOption;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointListItemProjectionTests {
+
+    private static final String FEED = "<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+            "<feed xml:base=\"https://sharepoint.instance.com/sites/test/_api/\" xmlns=\"http://www.w3.org/2005/Atom\" " +
+            "xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\" " +
+            "xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\">" +
+            "<entry><id>Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(7)</id>" +
+            "<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/File\" title=\"File\">" +
+            "<m:inline><entry><content type=\"application/xml\"><m:properties>" +
+            "<d:Length m:type=\"Edm.Int64\">1234</d:Length>" +
+            "</m:properties></content></entry></m:inline></link>" +
+            "<content type=\"application/xml\"><m:properties>" +
+            "<d:Id m:type=\"Edm.Int32\">7</d:Id>" +
+            "<d:FileRef>/sites/test/Shared Documents/a.docx</d:FileRef>" +
+            "<d:FileSystemObjectType m:type=\"Edm.Int32\">0</d:FileSystemObjectType>" +
+            "<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">true</d:HasUniqueRoleAssignments>" +
+            "<d:Modified m:type=\"Edm.DateTime\">2020-03-01T10:00:00Z</d:Modified>" +
+            "</m:properties></content></entry>" +
+            "<entry><id>Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items(8)</id>" +
+            "<link rel=\"http://schemas.microsoft.com/ado/2007/08/dataservices/related/File\" title=\"File\">" +
+            "<m:inline m:null=\"true\" /></link>" +
+            "<content type=\"application/xml\"><m:properties>" +
+            "<d:Id m:type=\"Edm.Int32\">8</d:Id>" +
+            "<d:FileRef>/sites/test/Shared Documents/folder</d:FileRef>" +
+            "<d:FileSystemObjectType m:type=\"Edm.Int32\">1</d:FileSystemObjectType>" +
+            "<d:HasUniqueRoleAssignments m:type=\"Edm.Boolean\">false</d:HasUniqueRoleAssignments>" +
+            "<d:Modified m:type=\"Edm.DateTime\">2020-03-02T10:00:00Z</d:Modified>" +
+            "</m:properties></content></entry>" +
+            "<link rel=\"next\" href=\"https://sharepoint.instance.com/sites/test/_api/Web/Lists(guid'f1f04276-593b-454b-8ee1-006f83af18d3')/Items?%24skiptoken=Paged%3dTRUE%26p_ID%3d8\" />" +
+            "</feed>";
+
+    @Test
+    public void test_queryOptions() {
+        List<IQueryOption> queryOptions = Lists.newArrayList();
+        SharePointListItemProjection.METADATA.addQueryOptions(queryOptions);
+
+        assertEquals(2, queryOptions.size());
+        assertEquals("$select=Id,FileRef,FileSystemObjectType,HasUniqueRoleAssignments,Modified,File/Length", queryOptions.get(0).toString());
+        assertEquals("$expand=File", queryOptions.get(1).toString());
+
+        queryOptions.clear();
+        SharePointListItemProjection.of(SharePointListItemProjection.Field.ID, SharePointListItemProjection.Field.FILE_REF)
+                .addQueryOptions(queryOptions);
+        assertEquals(1, queryOptions.size());
+        assertEquals("$select=Id,FileRef", queryOptions.get(0).toString());
+    }
+
+    @Test
+    public void test_parseProjectedListItems() throws Exception {
+        byte[] feed = FEED.getBytes(StandardCharsets.UTF_8);
+        SharePointListItemPage page = SharePointParseUtils.parseSharePointListItems(new ByteArrayInputStream(feed), null,
+                SharePointListItemProjection.METADATA);
+
+        List<SharePointListItem> items = page.getItems();
+        assertEquals(2, items.size());
+        assertEquals("7", items.get(0).getId());
+        assertEquals("/sites/test/Shared Documents/a.docx", items.get(0).getFileRef());
+        assertEquals(FileSystemObjectType.FILE, items.get(0).getFileSystemObjectType());
+        assertTrue(items.get(0).isListItemHavingUniqueAcls());
+        assertEquals("2020-03-01T10:00:00Z", items.get(0).getModified());
+        assertEquals(1234L, items.get(0).getSizeValue());
+        assertNull(items.get(0).getLoginName());
+
+        assertEquals("8", items.get(1).getId());
+        assertEquals(FileSystemObjectType.FOLDER, items.get(1).getFileSystemObjectType());
+        assertFalse(items.get(1).isListItemHavingUniqueAcls());
+        assertNull(items.get(1).getSize());
+
+        assertTrue(page.getNextUrl().endsWith("p_ID%3d8"));
+        assertEquals(feed.length, page.getResponseBytes());
+        assertTrue(page.getParseNanos() > 0);
+    }
+}
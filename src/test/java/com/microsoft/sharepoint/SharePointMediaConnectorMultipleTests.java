@@ -6,14 +6,22 @@ import com.media.MediaChangeLogDto;
 import com.StreamMediaItemsParams;
 import com.microsoft.MSItemKey;
 import com.microsoft.model.*;
+import com.middleware.share.Change;
+import com.middleware.share.ChangeItem;
+import com.middleware.share.ChangeQuery;
+import com.middleware.share.ChangeToken;
+import com.middleware.share.ChangeTokenScope;
+import com.middleware.share.ChangeType;
 import com.middleware.share.File;
 import com.middleware.share.Folder;
 import com.middleware.share.ServiceException;
 import com.middleware.share.User;
+import com.middleware.share.queryoptions.IQueryOption;
 import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -83,6 +91,126 @@ public class SharePointMediaConnectorMultipleTests extends SharepointConnectorTe
         assertTrue("Document library item wasn't consumed", foldersCrawled.contains(docLibPath.substring(1)));
     }
 
+    @Test
+    public void test_streamMediaItems_deltaRescanWithoutChanges() throws ServiceException {
+        SharePointMediaConnectorMultiple deltaConnector = (SharePointMediaConnectorMultiple) getEnrichedConnector(
+                SharePointMediaConnector.builder().withScanIterationTimes(timesToRescan).withDeltaRescan(true), SITE_URL);
+        initConnectorResources(deltaConnector);
+
+        String docLibPath = "/doc-lib";
+        MSFolder folder = buildFolderWithItems(docLibPath, 0);
+        MSDocumentLibrary docLib = buildDocumentLibrary(Optional.of(folder.getFiles()), 0, Optional.empty());
+        List<ClaFilePropertiesDto> accumulator = Lists.newArrayList();
+
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(anyString(), eq(docLibPath))).thenReturn(docLib.toSharePointExtendedFolder());
+        when(microsoftDocAuthorityClient.getFilesWithMediaItemId(anyString(), eq(docLibPath), eq(docLib.getListId()), anyInt(), anyInt())).thenReturn(docLib.getFilesAsClaProp());
+
+        StreamMediaItemsParams params = StreamMediaItemsParams.create()
+                .setScanParams(getScanTaskParams(SITE_URL + docLibPath)).setFilePropertiesConsumer(accumulator::add)
+                .setFilePropsProgressTracker(filePropsProgressTracker)
+                .setScanActivePredicate(aLong -> true);
+
+        deltaConnector.streamMediaItems(params);
+
+        // Only the first iteration lists the library, the list has no changes after it
+        assertEquals("Delta iterations re-listed items", docLib.getFiles().size() + 1, accumulator.size());
+        verify(microsoftDocAuthorityClient, times(1)).getFilesWithMediaItemId(anyString(), eq(docLibPath), eq(docLib.getListId()), anyInt(), anyInt());
+    }
+
+    @Test
+    public void test_streamMediaItems_deltaRescanEmitsNetChangesUnderTheScannedPath() throws Exception {
+        String docLibPath = "/doc-lib";
+        MSFolder folder = buildFolderWithItems(docLibPath, 0);
+        MSDocumentLibrary docLib = buildDocumentLibrary(Optional.of(folder.getFiles()), 0, Optional.empty());
+        SharePointMediaConnectorMultiple deltaConnector = createDeltaConnector(docLibPath, docLib);
+        List<ClaFilePropertiesDto> accumulator = Lists.newArrayList();
+
+        ClaFilePropertiesDto changedFile = docLib.getFilesAsClaProp().get(0);
+        ClaFilePropertiesDto fileOutsideScan = ClaFilePropertiesDto.create();
+        fileOutsideScan.setFileName(SITE_URL + "/other-lib/" + extractFilename(changedFile));
+        doAnswer(invocation -> {
+            String itemId = SharePointMediaItemId.parse((String) invocation.getArguments()[0]).getItemId();
+            return "1".equals(itemId) ? changedFile : fileOutsideScan;
+        }).when(deltaConnector).readChangedItem(anyString());
+        // Item 1 added then updated, item 2 deleted, item 3 changed in another folder of the list
+        List<Change> changes = Arrays.asList(
+                changeItem(docLib.getListId(), 1, ChangeType.ADD, 101),
+                changeItem(docLib.getListId(), 1, ChangeType.UPDATE, 102),
+                changeItem(docLib.getListId(), 2, ChangeType.DELETE_OBJECT, 103),
+                changeItem(docLib.getListId(), 3, ChangeType.UPDATE, 104));
+        when(service.getChanges(anyString(), any(ChangeQuery.class), eq(docLib.getListId()), anyListOf(IQueryOption.class)))
+                .thenReturn(changes, Collections.emptyList());
+
+        deltaConnector.streamMediaItems(deltaScanParams(docLibPath, accumulator));
+
+        // Full scan, then the net change of item 1 once, then nothing
+        assertEquals(docLib.getFiles().size() + 2, accumulator.size());
+        assertSame(changedFile, accumulator.get(accumulator.size() - 1));
+        ArgumentCaptor<String> readItems = ArgumentCaptor.forClass(String.class);
+        verify(deltaConnector, times(2)).readChangedItem(readItems.capture());
+        assertEquals(Arrays.asList("1", "3"), readItems.getAllValues().stream()
+                .map(mediaItemId -> SharePointMediaItemId.parse(mediaItemId).getItemId())
+                .sorted()
+                .collect(Collectors.toList()));
+        verify(microsoftDocAuthorityClient, times(1)).getFilesWithMediaItemId(anyString(), eq(docLibPath), eq(docLib.getListId()), anyInt(), anyInt());
+    }
+
+    @Test
+    public void test_streamMediaItems_deltaRescanFallsBackToAFullScanWhenTheTokenExpired() throws Exception {
+        String docLibPath = "/doc-lib";
+        MSFolder folder = buildFolderWithItems(docLibPath, 0);
+        MSDocumentLibrary docLib = buildDocumentLibrary(Optional.of(folder.getFiles()), 0, Optional.empty());
+        SharePointMediaConnectorMultiple deltaConnector = createDeltaConnector(docLibPath, docLib);
+        List<ClaFilePropertiesDto> accumulator = Lists.newArrayList();
+
+        when(service.getChanges(anyString(), any(ChangeQuery.class), eq(docLib.getListId()), anyListOf(IQueryOption.class)))
+                .thenThrow(new IllegalStateException("The change token is no longer valid"))
+                .thenReturn(Collections.emptyList());
+
+        deltaConnector.streamMediaItems(deltaScanParams(docLibPath, accumulator));
+
+        // Full scan, full scan instead of the failed delta iteration, then a delta iteration without changes
+        assertEquals(2 * (docLib.getFiles().size() + 1), accumulator.size());
+        verify(microsoftDocAuthorityClient, times(2)).getFilesWithMediaItemId(anyString(), eq(docLibPath), eq(docLib.getListId()), anyInt(), anyInt());
+        verify(deltaConnector, never()).readChangedItem(anyString());
+    }
+
+    /**
+     * A delta connector of three iterations over a document library; every list's last change is {@code 100}.
+     */
+    private SharePointMediaConnectorMultiple createDeltaConnector(String docLibPath, MSDocumentLibrary docLib) throws Exception {
+        SharePointMediaConnectorMultiple connector = (SharePointMediaConnectorMultiple) getEnrichedConnector(
+                SharePointMediaConnector.builder().withScanIterationTimes(3).withDeltaRescan(true), SITE_URL);
+        initConnectorResources(connector);
+        SharePointMediaConnectorMultiple deltaConnector = spy(connector);
+
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(anyString(), eq(docLibPath))).thenReturn(docLib.toSharePointExtendedFolder());
+        when(microsoftDocAuthorityClient.getFilesWithMediaItemId(anyString(), eq(docLibPath), eq(docLib.getListId()), anyInt(), anyInt())).thenReturn(docLib.getFilesAsClaProp());
+        doReturn(SharePointParseUtils.convertSharePointChangeToString(changeToken(docLib.getListId(), 100)))
+                .when(deltaConnector).getLastChange(anyString(), anyString());
+        return deltaConnector;
+    }
+
+    private StreamMediaItemsParams deltaScanParams(String docLibPath, List<ClaFilePropertiesDto> accumulator) {
+        return StreamMediaItemsParams.create()
+                .setScanParams(getScanTaskParams(SITE_URL + docLibPath)).setFilePropertiesConsumer(accumulator::add)
+                .setFilePropsProgressTracker(filePropsProgressTracker)
+                .setScanActivePredicate(aLong -> true);
+    }
+
+    private static Change changeItem(String listId, int itemId, ChangeType type, int changeNumber) {
+        ChangeItem change = mock(ChangeItem.class);
+        when(change.getItemId()).thenReturn(itemId);
+        when(change.getType()).thenReturn(type);
+        ChangeToken token = changeToken(listId, changeNumber);
+        when(change.getToken()).thenReturn(token);
+        return change;
+    }
+
+    private static ChangeToken changeToken(String listId, int changeNumber) {
+        return new ChangeToken(ChangeTokenScope.LIST, listId, new Date(1476000000000L + changeNumber), changeNumber);
+    }
+
     @Test
     public void test_streamMediaItems_documentLibrary() throws ServiceException {
         String docLibPath = "/doc-lib";
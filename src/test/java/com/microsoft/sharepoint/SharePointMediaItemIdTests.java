@@ -0,0 +1,59 @@
+package com.microsoft.sharepoint;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+public class SharePointMediaItemIdTests {
+
+    @Test
+    public void test_parseFullId() {
+        UUID listGuid = UUID.randomUUID();
+        String listId = listGuid.toString().toUpperCase();
+        SharePointMediaItemId id = SharePointMediaItemId.parse(listId + "/42$SUB/SITE~base/path");
+
+        assertEquals(listId, id.getListId());
+        assertEquals("42", id.getItemId());
+        assertEquals(42, id.getItemIdAsInt());
+        assertEquals("SUB/SITE", id.getSite());
+        assertEquals("base/path", id.getBasePathAddendum());
+        assertTrue(id.hasGuidListId());
+        assertEquals(listGuid.getMostSignificantBits(), id.getListIdMostSigBits());
+        assertEquals(listGuid.getLeastSignificantBits(), id.getListIdLeastSigBits());
+    }
+
+    @Test
+    public void test_parseListOnly() {
+        SharePointMediaItemId id = SharePointMediaItemId.parse("list-id");
+
+        assertEquals("list-id", id.getListId());
+        assertNull(id.getItemId());
+        assertEquals(SharePointMediaItemId.NO_ITEM_ID, id.getItemIdAsInt());
+        assertNull(id.getSite());
+        assertNull(id.getBasePathAddendum());
+        assertFalse(id.hasGuidListId());
+    }
+
+    @Test
+    public void test_nonNumericItemId() {
+        SharePointMediaItemId id = SharePointMediaItemId.parse("list-id/itemID~completion");
+
+        assertEquals("itemID", id.getItemId());
+        assertEquals(SharePointMediaItemId.NO_ITEM_ID, id.getItemIdAsInt());
+        assertNull(id.getSite());
+        assertEquals("completion", id.getBasePathAddendum());
+    }
+
+    @Test
+    public void test_ofMatchesCanonicalForm() {
+        String listId = UUID.randomUUID().toString();
+        SharePointMediaItemId id = SharePointMediaItemId.of(listId, "7", "a-sub-site");
+
+        assertEquals((listId + "/7$a-sub-site").toUpperCase(), id.toString());
+        assertEquals(id, SharePointMediaItemId.parse(id.toString()));
+        assertEquals(id.hashCode(), SharePointMediaItemId.parse(id.toString()).hashCode());
+        assertEquals(id.toString() + "~base", id.withBasePathAddendum("base").toString());
+    }
+}
@@ -0,0 +1,70 @@
+package com.microsoft.sharepoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointPageSpliteratorTests {
+
+    private static final int TOTAL = 25;
+
+    private final List<Integer> requestedOffsets = new ArrayList<>();
+
+    private List<String> fetch(int offset, int count) {
+        requestedOffsets.add(offset);
+        return IntStream.range(offset, Math.min(TOTAL, offset + count))
+                .mapToObj(i -> "entry" + i)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void test_readsAllPages() {
+        List<String> entries;
+        try (Stream<String> stream = SharePointPageSpliterator.stream(this::fetch, 10, "entries")) {
+            entries = stream.collect(Collectors.toList());
+        }
+        assertEquals(TOTAL, entries.size());
+        assertEquals("entry24", entries.get(TOTAL - 1));
+        assertEquals(3, requestedOffsets.size());
+        assertEquals(20, (int) requestedOffsets.get(2));
+    }
+
+    @Test
+    public void test_fetchesOnlyConsumedPages() {
+        try (Stream<String> stream = SharePointPageSpliterator.stream(this::fetch, 10, "entries")) {
+            assertEquals("entry10", stream.skip(10).findFirst().orElse(null));
+        }
+        assertEquals(2, requestedOffsets.size());
+    }
+
+    @Test
+    public void test_fullLastPageEndsOnEmptyPage() {
+        SharePointPageSpliterator<String> spliterator = new SharePointPageSpliterator<>(this::fetch, 5, "entries");
+        int[] count = {0};
+        while (spliterator.tryAdvance(entry -> count[0]++)) {
+        }
+        assertEquals(TOTAL, count[0]);
+        assertEquals(6, spliterator.getPagesFetched());
+        assertEquals(TOTAL, spliterator.getOffset());
+    }
+
+    @Test
+    public void test_closeStopsPaging() {
+        SharePointPageSpliterator<String> spliterator = new SharePointPageSpliterator<>(this::fetch, 10, "entries");
+        assertTrue(spliterator.tryAdvance(entry -> {
+        }));
+        spliterator.close();
+        assertTrue(spliterator.isClosed());
+        assertFalse(spliterator.tryAdvance(entry -> {
+        }));
+        assertEquals(1, requestedOffsets.size());
+    }
+}
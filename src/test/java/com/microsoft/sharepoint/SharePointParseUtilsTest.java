@@ -15,4 +15,25 @@ public class SharePointParseUtilsTest extends TestCase {
         assertEquals("CD%20O/g%20h/hh/", SharePointParseUtils.encodeSubSiteNameIfNeeded("CD O/g h/hh/"));
         assertEquals("CD%20O/g%20h/%5bhh%5d/", SharePointParseUtils.encodeSubSiteNameIfNeeded("CD O/g h/[hh]/"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParseInternalName() {
+        assertEquals("Shared Documents", SharePointParseUtils.parseInternalName("Shared_x0020_Documents"));
+        assertEquals("OData__catalogs/appfiles", SharePointParseUtils.parseInternalName("OData__x005f_catalogs_x002f_appfiles"));
+        assertEquals("Documents", SharePointParseUtils.parseInternalName("Documents"));
+        assertEquals("a_xyz_b", SharePointParseUtils.parseInternalName("a_xyz_b"));
+        assertEquals("caf\u00e9", SharePointParseUtils.parseInternalName("caf_x00e9_"));
+        assertNull(SharePointParseUtils.parseInternalName(null));
+    }
+
+    @Test
+    public void testEncodeToInternalName() {
+        assertEquals("Shared_x0020_Documents", SharePointParseUtils.encodeToInternalName("Shared Documents"));
+        assertEquals("a_x002F_b", SharePointParseUtils.encodeToInternalName("a/b"));
+        assertEquals("plain_name", SharePointParseUtils.encodeToInternalName("plain_name"));
+        String[] names = {"Shared Documents", "caf\u00e9 & co", "_x0020_ literal", "100% [done]", "a_b_xc"};
+        for (String name : names) {
+            assertEquals(name, SharePointParseUtils.parseInternalName(SharePointParseUtils.encodeToInternalName(name)));
+        }
+    }
+}
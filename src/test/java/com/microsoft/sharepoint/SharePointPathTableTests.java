@@ -0,0 +1,90 @@
+package com.microsoft.sharepoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointPathTableTests {
+
+    @Test
+    public void test_toStringRoundTrip() {
+        SharePointPathTable table = new SharePointPathTable();
+        String[] paths = {
+                "https://sharepoint.instance.com/sites/test/Shared Documents/folder/file.docx",
+                "https://sharepoint.instance.com",
+                "https://sharepoint.instance.com/",
+                "/sites/test/Shared Documents/file.docx",
+                "/",
+                "relative/file.txt",
+                "file.txt",
+                "",
+                "/sites/test//double/file.txt"
+        };
+        for (String path : paths) {
+            SharePointPath node = table.intern(path);
+            assertEquals(path, node.toString());
+            assertEquals(path.length(), node.length());
+        }
+        assertNull(table.intern(null));
+    }
+
+    @Test
+    public void test_itemsUnderAFolderShareItsNode() {
+        SharePointPathTable table = new SharePointPathTable();
+        SharePointPath a = table.intern("/sites/test/Shared Documents/folder/a.docx");
+        SharePointPath b = table.intern("/sites/test/Shared Documents/folder/b.docx");
+        SharePointPath c = table.intern("/sites/test/Shared Documents/other/c.docx");
+
+        assertSame(a.getParent(), b.getParent());
+        assertSame(a.getParent().getParent(), c.getParent().getParent());
+        assertEquals("folder", a.getParent().getName());
+        // "", sites, test, Shared Documents, folder, other - leaves are not kept
+        assertEquals(6, table.size());
+
+        assertTrue(a.startsWith(c.getParent().getParent()));
+        assertFalse(a.startsWith(c.getParent()));
+    }
+
+    @Test
+    public void test_equality() {
+        SharePointPathTable table = new SharePointPathTable();
+        SharePointPath a = table.intern("https://host/lib/folder/a.docx");
+        SharePointPath sameA = table.intern("https://host/lib/folder/a.docx");
+        SharePointPath b = table.intern("https://host/lib/folder/b.docx");
+
+        assertEquals(a, sameA);
+        assertEquals(a.hashCode(), sameA.hashCode());
+        assertNotEquals(a, b);
+        assertSame(table.child(a.getParent(), "a.docx").getParent(), a.getParent());
+
+        // Nodes of another table have other parents, so equal strings are not equal nodes
+        SharePointPath fromOtherTable = new SharePointPathTable().intern("https://host/lib/folder/a.docx");
+        assertEquals(a.toString(), fromOtherTable.toString());
+        assertNotEquals(a, fromOtherTable);
+    }
+
+    @Test
+    public void test_internColumnsFileRefs() {
+        SharePointListItemColumns columns = new SharePointListItemColumns(1);
+        SharePointListItem item = new SharePointListItem();
+        for (int id = 1; id <= 3; id++) {
+            item.clear();
+            item.setIdAsInt(id);
+            item.setFileRef("/sites/test/Shared Documents/folder/file-" + id + ".docx");
+            columns.add(item);
+        }
+        SharePointPathTable table = new SharePointPathTable();
+        columns.internFileRefs(table);
+
+        SharePointListItem first = columns.read(0, new SharePointListItem());
+        SharePointListItem third = columns.read(2, new SharePointListItem());
+        assertSame(first.getFileRefPath().getParent(), third.getFileRefPath().getParent());
+        assertEquals("/sites/test/Shared Documents/folder/file-3.docx", third.getFileRef());
+        assertEquals(5, table.size());
+    }
+}
@@ -0,0 +1,287 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointRangedDownloadTests {
+
+    private static final String URL = "https://sharepoint.instance.com/sites/test/_api/Web/Lists(guid'x')/Items(5)/File/$value";
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    /**
+     * Serves a generated file by range, failing the first request of each range listed in {@code failOnce} with a 503.
+     * The file is modified (gets a new ETag) when the range starting at {@code modifyAt} is requested. Bodies are
+     * generated as they are read, so files larger than the heap can be served.
+     */
+    private static class RangeTransport implements SharePointHttpTransport {
+        private final long length;
+        private final boolean acceptRanges;
+        private final List<Long> failOnce = Lists.newCopyOnWriteArrayList();
+        private final List<String> ranges = Lists.newCopyOnWriteArrayList();
+        private final List<String> ifMatches = Lists.newCopyOnWriteArrayList();
+        private final List<GeneratedBody> bodies = Lists.newCopyOnWriteArrayList();
+        private final AtomicInteger gets = new AtomicInteger();
+        private final AtomicLong bodyBytesRead = new AtomicLong();
+        private volatile String etag = "\"{A1B2},1\"";
+        private volatile boolean ignoreRange;
+        private volatile boolean wholeAfterFirstRange;
+        private volatile long modifyAt = -1;
+
+        private RangeTransport(long length, boolean acceptRanges) {
+            this.length = length;
+            this.acceptRanges = acceptRanges;
+        }
+
+        @Override
+        public SharePointHttpResponse execute(String method, String url, Map<String, String> headers, byte[] body) {
+            assertEquals(URL, url);
+            assertEquals("HEAD", method);
+            Map<String, String> responseHeaders = Maps.newHashMap();
+            responseHeaders.put("Content-Length", String.valueOf(length));
+            responseHeaders.put("ETag", etag);
+            if (acceptRanges) {
+                responseHeaders.put("Accept-Ranges", "bytes");
+            }
+            return new SharePointHttpResponse(200, responseHeaders, new byte[0]);
+        }
+
+        @Override
+        public SharePointHttpStreamResponse executeStreaming(String method, String url, Map<String, String> headers) {
+            assertEquals(URL, url);
+            assertEquals("GET", method);
+            gets.incrementAndGet();
+            String range = headers.get("Range");
+            Matcher matcher = range == null ? null : RANGE.matcher(range);
+            if (!acceptRanges || ignoreRange || matcher == null || !matcher.matches() ||
+                    (wholeAfterFirstRange && !range.startsWith("bytes=0-"))) {
+                return new SharePointHttpStreamResponse(200, null, body(0, length));
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long end = Math.min(length - 1, Long.parseLong(matcher.group(2)));
+            if (failOnce.remove(start)) {
+                return new SharePointHttpStreamResponse(503, null, body(0, 0));
+            }
+            if (start == modifyAt) {
+                etag = "\"{A1B2},2\"";
+            }
+            String ifMatch = headers.get("If-Match");
+            ifMatches.add(String.valueOf(ifMatch));
+            if (ifMatch != null && !ifMatch.equals(etag)) {
+                return new SharePointHttpStreamResponse(412, null, body(0, 0));
+            }
+            ranges.add(range);
+            return new SharePointHttpStreamResponse(206, null, body(start, end + 1));
+        }
+
+        private GeneratedBody body(long from, long to) {
+            GeneratedBody body = new GeneratedBody(from, to, bodyBytesRead);
+            bodies.add(body);
+            return body;
+        }
+    }
+
+    /**
+     * Bytes {@code from} (inclusive) to {@code to} (exclusive) of the generated file.
+     */
+    private static class GeneratedBody extends InputStream {
+        private final long to;
+        private final AtomicLong bytesRead;
+        private long position;
+        private volatile boolean closed;
+
+        private GeneratedBody(long from, long to, AtomicLong bytesRead) {
+            this.position = from;
+            this.to = to;
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public int read() {
+            if (position == to) {
+                return -1;
+            }
+            bytesRead.incrementAndGet();
+            return byteAt(position++) & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position == to) {
+                return -1;
+            }
+            int count = (int) Math.min(len, to - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = byteAt(position++);
+            }
+            bytesRead.addAndGet(count);
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static byte byteAt(long i) {
+        return (byte) (i * 31 + i / 256);
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = byteAt(i);
+        }
+        return content;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[7];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void test_readsRangesInOrderAndRetries() throws IOException {
+        byte[] content = content(1000);
+        RangeTransport transport = new RangeTransport(content.length, true);
+        transport.failOnce.add(300L);
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(500).withRangeSize(100).withParallelism(3).withRetries(2, 1).build();
+
+        try (InputStream in = download.open(transport, URL, Collections.emptyMap())) {
+            assertTrue(in instanceof SharePointRangedInputStream);
+            assertArrayEquals(content, readAll(in));
+        }
+        assertEquals(10, transport.ranges.size());
+        assertTrue(transport.ranges.contains("bytes=900-999"));
+        assertEquals(11, transport.gets.get());
+        assertEquals(Collections.singleton("\"{A1B2},1\""), new HashSet<>(transport.ifMatches));
+    }
+
+    @Test
+    public void test_firstRangeAnsweredWholeIsReturnedUnread() throws IOException {
+        RangeTransport transport = new RangeTransport(1000, true);
+        transport.ignoreRange = true;
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(500).withRangeSize(100).build();
+
+        try (InputStream in = download.open(transport, URL, Collections.emptyMap())) {
+            assertFalse(in instanceof SharePointRangedInputStream);
+            assertEquals(0, transport.bodyBytesRead.get());
+            assertArrayEquals(content(1000), readAll(in));
+        }
+        assertEquals(1, transport.gets.get());
+        assertTrue(transport.bodies.get(0).closed);
+    }
+
+    @Test
+    public void test_rangesAnsweredWholeAreNotBuffered() throws IOException {
+        // Far larger than any test heap - buffering one of these bodies would run out of memory
+        long bytesReadOfOneGigabyte = readUntilRangeAnsweredWhole(1L << 30);
+        long bytesReadOfSixteenGigabytes = readUntilRangeAnsweredWhole(16L << 30);
+        assertEquals(1 << 20, bytesReadOfOneGigabyte);
+        assertEquals(bytesReadOfOneGigabyte, bytesReadOfSixteenGigabytes);
+    }
+
+    /**
+     * @return the body bytes read from the transport for a file whose ranges after the first are answered whole
+     */
+    private static long readUntilRangeAnsweredWhole(long length) throws IOException {
+        RangeTransport transport = new RangeTransport(length, true);
+        transport.wholeAfterFirstRange = true;
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(0).withRangeSize(1 << 20).withParallelism(4).withRetries(0, 0).build();
+
+        long read = 0;
+        try (InputStream in = download.open(transport, URL, Collections.emptyMap())) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                read += count;
+            }
+            throw new AssertionError("Expected the range answered whole to fail the read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Server ignored Range"));
+        }
+        assertEquals(1 << 20, read);
+        return transport.bodyBytesRead.get();
+    }
+
+    @Test
+    public void test_fileModifiedDuringTheDownloadFailsTheRead() throws IOException {
+        RangeTransport transport = new RangeTransport(500, true);
+        transport.modifyAt = 200;
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(0).withRangeSize(100).withRetries(2, 1).build();
+
+        try (InputStream in = download.open(transport, URL, Collections.emptyMap())) {
+            readAll(in);
+            throw new AssertionError("Expected the modified file to fail the read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("was modified during the download"));
+        }
+        assertTrue(transport.ranges.contains("bytes=0-99"));
+        assertFalse(transport.ranges.contains("bytes=200-299"));
+    }
+
+    @Test
+    public void test_smallFilesAndServersWithoutRangesAreLeftToTheCaller() throws IOException {
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(500).withRangeSize(100).build();
+
+        RangeTransport small = new RangeTransport(499, true);
+        assertNull(download.open(small, URL, Collections.emptyMap()));
+        RangeTransport noRanges = new RangeTransport(1000, false);
+        assertNull(download.open(noRanges, URL, Collections.emptyMap()));
+        assertEquals(0, small.gets.get() + noRanges.gets.get());
+    }
+
+    @Test
+    public void test_failedRangeFailsTheRead() throws IOException {
+        byte[] content = content(300);
+        RangeTransport transport = new RangeTransport(content.length, true);
+        transport.failOnce.add(200L);
+        SharePointRangedDownload download = SharePointRangedDownload.builder()
+                .withMinFileSize(0).withRangeSize(100).withRetries(0, 0).build();
+
+        InputStream in = download.open(transport, URL, Collections.emptyMap());
+        byte[] buffer = new byte[300];
+        try {
+            int read = 0;
+            while (read < 300) {
+                read += in.read(buffer, read, 300 - read);
+            }
+            throw new AssertionError("Expected the failed range to fail the read");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("status 503"));
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.microsoft.sharepoint;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.middleware.share.FileSystemObjectType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SharePointRenderListDataTests {
+
+    private static final String FOLDER = "/sites/test/Shared Documents/deep/folder";
+
+    @Test
+    public void test_createBody() throws Exception {
+        JsonNode parameters = new ObjectMapper().readTree(SharePointRenderListData.createBody(FOLDER, 250)).get("parameters");
+
+        assertEquals("SP.RenderListDataParameters", parameters.get("__metadata").get("type").asText());
+        assertEquals(FOLDER, parameters.get("FolderServerRelativeUrl").asText());
+        assertEquals(2, parameters.get("RenderOptions").asInt());
+        String viewXml = parameters.get("ViewXml").asText();
+        assertTrue(viewXml.startsWith("<View Scope=\"RecursiveAll\">"));
+        assertTrue(viewXml.contains("<RowLimit Paged=\"TRUE\">250</RowLimit>"));
+    }
+
+    @Test
+    public void test_parse() throws Exception {
+        String json = "{\"Row\":[" +
+                "{\"ID\":\"12\",\"FileRef\":\"" + FOLDER + "/a.docx\",\"FSObjType\":\"0\",\"Modified\":\"3/1/2020 10:00 AM\"," +
+                "\"Modified.\":\"2020-03-01T10:00:00Z\",\"Author\":[{\"id\":\"7\",\"title\":\"User\"}],\"File_x0020_Size\":\"1234\"}," +
+                "{\"ID\":\"15\",\"FileRef\":\"" + FOLDER + "/sub\",\"FSObjType\":\"1\",\"Modified.\":\"2020-03-02T10:00:00Z\",\"File_x0020_Size\":\"\"}]," +
+                "\"FirstRow\":1,\"LastRow\":2,\"NextHref\":\"?Paged=TRUE&p_ID=15&PageFirstRow=3\"}";
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
+
+        SharePointListItemPage page = SharePointRenderListData.parse(new ByteArrayInputStream(content));
+
+        List<SharePointListItem> items = page.getItems();
+        assertEquals(2, items.size());
+        assertEquals(12, items.get(0).getIdAsInt());
+        assertEquals(FOLDER + "/a.docx", items.get(0).getFileRef());
+        assertEquals(FileSystemObjectType.FILE, items.get(0).getFileSystemObjectType());
+        assertEquals("2020-03-01T10:00:00Z", items.get(0).getModified());
+        assertEquals("7", items.get(0).getAuthorId());
+        assertEquals(1234L, items.get(0).getSizeValue());
+        assertEquals(FileSystemObjectType.FOLDER, items.get(1).getFileSystemObjectType());
+        assertNull(items.get(1).getSize());
+        assertEquals("?Paged=TRUE&p_ID=15&PageFirstRow=3", page.getNextUrl());
+        assertEquals(content.length, page.getResponseBytes());
+    }
+
+    @Test
+    public void test_pageUrlKeepsRootFolder() {
+        String paging = SharePointRenderListData.withRootFolder("?Paged=TRUE&p_ID=15", FOLDER);
+        String url = SharePointRenderListData.createRelativeUrl("f1f04276-593b-454b-8ee1-006f83af18d3", paging);
+
+        assertTrue(SharePointRenderListData.isRenderListDataUrl(url));
+        assertEquals(FOLDER, SharePointRenderListData.getRootFolder(url));
+        assertEquals(paging, SharePointRenderListData.withRootFolder(paging, FOLDER));
+        assertNull(SharePointRenderListData.getRootFolder("Web/Lists(guid'a')/RenderListDataAsStream?Paged=TRUE"));
+        assertFalse(SharePointRenderListData.isRenderListDataUrl("Web/Lists(guid'a')/Items?$top=10"));
+    }
+}
@@ -0,0 +1,87 @@
+package com.microsoft.sharepoint;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SharePointSiteDiscoveryTests {
+
+    private static final String ROOT = "https://sharepoint.instance.com/sites/test";
+
+    private static final String SITE_ID = "5d9a3f2c-8b1e-4c7a-9f60-2e4b1d7c8a93";
+
+    private static final String SEARCH_RESPONSE = "{\"d\":{\"query\":{\"PrimaryQueryResult\":{\"RelevantResults\":{" +
+            "\"RowCount\":3,\"TotalRows\":703,\"Table\":{\"Rows\":{\"results\":[" +
+            row(ROOT + "/sub1/inner", "Inner") + "," +
+            row(ROOT + "/sub1", "Sub 1") + "," +
+            row(ROOT, "Test") +
+            "]}}}}}}}";
+
+    private static String row(String path, String title) {
+        return "{\"Cells\":{\"results\":[" +
+                "{\"Key\":\"Rank\",\"Value\":\"16.5\",\"ValueType\":\"Edm.Double\"}," +
+                "{\"Key\":\"Path\",\"Value\":\"" + path + "\",\"ValueType\":\"Edm.String\"}," +
+                "{\"Key\":\"Title\",\"Value\":\"" + title + "\",\"ValueType\":\"Edm.String\"}]}}";
+    }
+
+    @Test
+    public void test_createRelativeUrl() {
+        assertEquals("search/query?querytext='contentclass%3ASTS_Web%20SiteId%3A" + SITE_ID +
+                        "%20path%3A%22https%3A%2F%2Fsharepoint.instance.com%2Fsites%2Ftest%2F%22'" +
+                        "&selectproperties='Path'&trimduplicates=false&rowlimit=500&startrow=1000",
+                SharePointSiteDiscovery.createRelativeUrl(ROOT + "/", SITE_ID, 1000, 5000));
+    }
+
+    @Test
+    public void test_parseSiteId() throws Exception {
+        assertEquals(SITE_ID, SharePointSiteDiscovery.parseSiteId(new ByteArrayInputStream(
+                ("{\"d\":{\"__metadata\":{\"type\":\"SP.Site\"},\"Id\":\"" + SITE_ID + "\"}}").getBytes(StandardCharsets.UTF_8))));
+        try {
+            SharePointSiteDiscovery.parseSiteId(new ByteArrayInputStream("{\"d\":{}}".getBytes(StandardCharsets.UTF_8)));
+            throw new AssertionError("Expected a response without an id to fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_parseAndBuildTree() throws Exception {
+        SharePointSiteDiscovery.SearchPage page = SharePointSiteDiscovery.parse(
+                new ByteArrayInputStream(SEARCH_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(3, page.getRowCount());
+        assertEquals(703, page.getTotalRows());
+        assertEquals(Arrays.asList(ROOT + "/sub1/inner", ROOT + "/sub1", ROOT), page.getWebUrls());
+
+        SharePointSiteDiscovery discovery = new SharePointSiteDiscovery(ROOT);
+        List<SharePointSiteDiscovery.Site> added = Lists.newArrayList();
+        for (String webUrl : page.getWebUrls()) {
+            SharePointSiteDiscovery.Site site = discovery.add(webUrl);
+            if (site != null) {
+                added.add(site);
+            }
+        }
+        // the root itself is not a sub-site
+        assertEquals(2, added.size());
+        SharePointSiteDiscovery.Site inner = added.get(0);
+        assertEquals(2, inner.getDepth());
+        assertEquals("sub1", inner.getParentPath());
+        assertEquals("inner", inner.getName());
+        assertEquals(1, added.get(1).getDepth());
+        assertNull(added.get(1).getParentPath());
+
+        assertNull(discovery.add(ROOT + "/SUB1/"));
+        assertNull(discovery.add(ROOT + "2/other"));
+
+        List<String> paths = Lists.newArrayList();
+        discovery.getSites().forEach(site -> paths.add(site.getRelativePath()));
+        assertEquals(Arrays.asList("sub1", "sub1/inner"), paths);
+    }
+}
@@ -0,0 +1,80 @@
+package com.microsoft.sharepoint;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SharePointTimestampParserTests {
+
+    private static final DateTimeFormatter WITH_Z = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private static final DateTimeFormatter WITHOUT_Z = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static long formatterMillis(String time, boolean endsWithZ) {
+        return LocalDateTime.parse(time, endsWithZ ? WITH_Z : WITHOUT_Z)
+                .atOffset(ZoneOffset.UTC)
+                .toInstant()
+                .toEpochMilli();
+    }
+
+    private static void assertSameAsFormatter(String time, boolean endsWithZ) {
+        assertEquals(time, formatterMillis(time, endsWithZ), SharePointTimestampParser.parseEpochMillis(time, endsWithZ));
+    }
+
+    @Test
+    public void test_edgeDates() {
+        String[] dates = {
+                "1970-01-01T00:00:00", "1969-12-31T23:59:59", "0001-01-01T00:00:00", "9999-12-31T23:59:59",
+                "2000-02-29T12:00:00", "2016-02-29T23:59:59", "2016-03-01T00:00:00", "1900-02-28T00:00:00",
+                "2100-03-01T00:00:00", "2400-02-29T06:30:15", "1600-02-29T00:00:00", "2016-07-26T13:47:00",
+                "2038-01-19T03:14:08", "2016-12-31T23:59:59"};
+        for (String date : dates) {
+            assertSameAsFormatter(date, false);
+            assertSameAsFormatter(date + "Z", true);
+        }
+    }
+
+    @Test
+    public void test_smartResolution() {
+        // Invalid days of month are clamped and 24:00:00 rolls over - same as the SMART resolver
+        assertSameAsFormatter("2016-04-31T10:00:00Z", true);
+        assertSameAsFormatter("2015-02-29T00:00:00Z", true);
+        assertSameAsFormatter("1900-02-29T00:00:00Z", true);
+        assertSameAsFormatter("2016-12-31T24:00:00Z", true);
+    }
+
+    @Test
+    public void test_randomDates() {
+        long min = LocalDateTime.of(1, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+        long max = LocalDateTime.of(9999, 12, 31, 23, 59, 59).toEpochSecond(ZoneOffset.UTC);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = min + (long) (random.nextDouble() * (max - min));
+            String time = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).format(WITH_Z);
+            assertSameAsFormatter(time, true);
+            assertEquals(time, SharePointTimestampParser.format(SharePointTimestampParser.parseEpochMillis(time, true), true));
+        }
+    }
+
+    @Test
+    public void test_illegalInput() {
+        String[] illegal = {"", "2016-07-26", "2016-07-26T13:47:00", "2016-07-26T13:47:00ZZ", "2016-7-26T13:47:00Z",
+                "2016-13-01T00:00:00Z", "2016-00-01T00:00:00Z", "2016-01-32T00:00:00Z", "2016-01-00T00:00:00Z",
+                "2016-01-01T25:00:00Z", "2016-01-01T24:00:01Z", "2016-01-01T00:60:00Z", "2016-01-01T00:00:60Z",
+                "0000-01-01T00:00:00Z", "2016-01-01 00:00:00Z", "2016/01/01T00:00:00Z", "2016-01-01T00:00:0aZ"};
+        for (String time : illegal) {
+            try {
+                SharePointTimestampParser.parseEpochMillis(time, true);
+                fail("Expected failure for " + time);
+            } catch (DateTimeParseException e) {
+                // expected
+            }
+        }
+    }
+}
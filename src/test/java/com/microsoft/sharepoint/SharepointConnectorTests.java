@@ -1,10 +1,15 @@
 package com.microsoft.sharepoint;
 
+import com.acl.AclInheritanceType;
 import com.file.ClaFilePropertiesDto;
+import com.file.ServerResourceDto;
 import com.StreamMediaItemsParams;
 import com.microsoft.MicrosoftTestBase;
 import com.microsoft.model.*;
+import com.middleware.share.FieldValue;
+import com.middleware.share.FileSystemObjectType;
 import com.middleware.share.Folder;
+import com.middleware.share.ListItem;
 import com.middleware.share.ListBaseType;
 import com.middleware.share.ServiceException;
 import com.middleware.share.queryoptions.Filter;
@@ -16,18 +21,25 @@ import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -283,6 +295,111 @@ public class SharepointConnectorTests extends MicrosoftTestBase {
         assertTrue("Document library item wasn't consumed", foldersCrawled.contains(docLibPath.substring(1)));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_streamMediaItems_listRecursiveSubFolder() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        SharePointExtendedFolder library = new SharePointExtendedFolder();
+        library.setListId(listId);
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(any(), anyString())).thenReturn(library);
+        when(microsoftDocAuthorityClient.convertFileRefToFileUrl(anyString())).thenAnswer(invocation -> SITE_URL + invocation.getArguments()[0]);
+        SharePointListItemColumns columns = new SharePointListItemColumns();
+        String[][] items = {
+                {"/doc-lib/sub", "1"},
+                {"/doc-lib/sub/a.docx", "0"},
+                {"/doc-lib/sub/inner", "1"},
+                {"/doc-lib/sub/inner/b.docx", "0"},
+                {"/doc-lib/other/c.docx", "0"},
+                {"/doc-lib/subway/d.docx", "0"}};
+        for (int i = 0; i < items.length; i++) {
+            SharePointListItem item = new SharePointListItem();
+            item.setIdAsInt(i + 1);
+            item.setFileRef(items[i][0]);
+            item.setFileSystemObjectTypeOrdinal(Integer.parseInt(items[i][1]));
+            columns.add(item);
+        }
+        // the server may ignore the prefix (e.g. SharePoint Online), the connector drops what is outside the folder
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenReturn(new SharePointListItemPage(columns));
+        List<String> listings = Lists.newArrayList();
+        sharePointMediaConnector.setTraversalModeResolver(scanParams -> SharePointTraversalMode.LIST_RECURSIVE);
+        sharePointMediaConnector.setDirListingFactory(listing -> {
+            listings.add(listing.getPath() + " " + listing.getSubFolders() + " " + listing.getFileCount());
+            return null;
+        });
+
+        List<ClaFilePropertiesDto> accumulator = Lists.newArrayList();
+        StreamMediaItemsParams params = StreamMediaItemsParams.create()
+                .setScanParams(getScanTaskParams(SITE_URL + "/doc-lib/sub")).setFilePropertiesConsumer(accumulator::add)
+                .setFilePropsProgressTracker(filePropsProgressTracker)
+                .setScanActivePredicate(aLong -> true);
+        params.setDirectoryListingConsumer(payload -> {
+        });
+
+        sharePointMediaConnector.streamMediaItems(params);
+
+        assertEquals(Arrays.asList(SITE_URL + "/doc-lib/sub/a.docx", SITE_URL + "/doc-lib/sub/inner", SITE_URL + "/doc-lib/sub/inner/b.docx"),
+                accumulator.stream().map(ClaFilePropertiesDto::getFileName).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("/doc-lib/sub [inner] 1", "/doc-lib/sub/inner [] 1"), listings);
+        ArgumentCaptor<List> queries = ArgumentCaptor.forClass(List.class);
+        verify(microsoftDocAuthorityClient).getListItems(eq(listId), queries.capture());
+        String query = URLDecoder.decode(SharePointParseUtils.createQueryOptionsUrl((List<IQueryOption>) queries.getValue()), "UTF-8");
+        assertTrue(query, query.contains("startswith(FileRef, '/doc-lib/sub/')"));
+    }
+
+    @Test
+    public void test_streamMediaItems_listRecursiveListingsSpanPages() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        SharePointExtendedFolder library = new SharePointExtendedFolder();
+        library.setListId(listId);
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(any(), anyString())).thenReturn(library);
+        when(microsoftDocAuthorityClient.convertFileRefToFileUrl(anyString())).thenAnswer(invocation -> SITE_URL + invocation.getArguments()[0]);
+        when(microsoftDocAuthorityClient.createApiUri(anyString(), anyString())).thenReturn(SITE_URL + "/_api/");
+        // in ID order, folder "a" gets items on every page and its sub folder only on the last one
+        SharePointListItemPage first = listItemPage(1, new String[][]{
+                {"/doc-lib/a", "1"}, {"/doc-lib/a/1.docx", "0"}, {"/doc-lib/top.docx", "0"}});
+        first.setNextUrl(SITE_URL + "/_api/Web/Lists(guid'" + listId + "')/Items?$skiptoken=Paged%3dTRUE%26p_ID%3d3&$top=3");
+        SharePointListItemPage second = listItemPage(4, new String[][]{
+                {"/doc-lib/a/2.docx", "0"}, {"/doc-lib/b", "1"}, {"/doc-lib/a/3.docx", "0"}});
+        second.setNextUrl(SITE_URL + "/_api/Web/Lists(guid'" + listId + "')/Items?$skiptoken=Paged%3dTRUE%26p_ID%3d6&$top=3");
+        SharePointListItemPage third = listItemPage(7, new String[][]{
+                {"/doc-lib/a/inner", "1"}, {"/doc-lib/a/4.docx", "0"}});
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenReturn(first);
+        when(microsoftDocAuthorityClient.getListItems(anyString())).thenReturn(second, third);
+        List<String> listings = Lists.newArrayList();
+        sharePointMediaConnector.setTraversalModeResolver(scanParams -> SharePointTraversalMode.LIST_RECURSIVE);
+        sharePointMediaConnector.setDirListingFactory(listing -> {
+            listings.add(listing.getPath() + " " + listing.getSubFolders() + " " + listing.getFileCount());
+            return null;
+        });
+
+        List<ClaFilePropertiesDto> accumulator = Lists.newArrayList();
+        StreamMediaItemsParams params = StreamMediaItemsParams.create()
+                .setScanParams(getScanTaskParams(SITE_URL + "/doc-lib")).setFilePropertiesConsumer(accumulator::add)
+                .setFilePropsProgressTracker(filePropsProgressTracker)
+                .setScanActivePredicate(aLong -> true);
+        params.setDirectoryListingConsumer(payload -> {
+        });
+
+        sharePointMediaConnector.streamMediaItems(params);
+
+        assertEquals(8, accumulator.size());
+        verify(microsoftDocAuthorityClient, times(2)).getListItems(anyString());
+        assertEquals(Arrays.asList("/doc-lib [a, b] 1", "/doc-lib/a [inner] 4", "/doc-lib/a/inner [] 0", "/doc-lib/b [] 0"),
+                listings);
+    }
+
+    private static SharePointListItemPage listItemPage(int firstId, String[][] items) {
+        SharePointListItemColumns columns = new SharePointListItemColumns();
+        for (int i = 0; i < items.length; i++) {
+            SharePointListItem item = new SharePointListItem();
+            item.setIdAsInt(firstId + i);
+            item.setFileRef(items[i][0]);
+            item.setFileSystemObjectTypeOrdinal(Integer.parseInt(items[i][1]));
+            columns.add(item);
+        }
+        return new SharePointListItemPage(columns);
+    }
+
     @Test
     public void test_streamMediaItems_documentLibrary() throws ServiceException {
         String docLibPath = "/doc-lib";
@@ -350,6 +467,102 @@ public class SharepointConnectorTests extends MicrosoftTestBase {
         verify(microsoftDocAuthorityClient, times(3)).listSubSitesUnderSubSite(anyString());
     }
 
+    @Test
+    public void test_streamMediaItems_siteDiscoveryStopsAtMaxDepthLikeTheWebsWalk() throws Exception {
+        MSSite site = buildSharepointSite("", 3);
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(anyString(), eq(""))).thenReturn(site.toSharePointExtendedFolder());
+        when(microsoftDocAuthorityClient.createApiUri(anyString(), anyString())).thenReturn(SITE_URL + "/_api/");
+        wireSiteMocks(site, "");
+        List<String> webUrls = Lists.newArrayList();
+        collectWebUrls(site, webUrls);
+
+        SharePointMediaConnector discovery = getEnrichedConnector(SharePointMediaConnector.builder()
+                .withSiteCrawlMaxDepth(1).withSearchSiteDiscovery(true), SITE_URL);
+        initConnectorResources(discovery);
+        List<String> searchUrls = Lists.newArrayList();
+        discovery.setHttpTransport((method, url, headers, body) -> {
+            if (url.endsWith(SharePointSiteDiscovery.SITE_ID_RELATIVE_URL)) {
+                return new SharePointHttpResponse(200, null, siteIdResponse().getBytes(StandardCharsets.UTF_8));
+            }
+            searchUrls.add(url);
+            return new SharePointHttpResponse(200, null, searchResponse(webUrls).getBytes(StandardCharsets.UTF_8));
+        });
+        discovery.streamMediaItems(siteScanParams());
+        int discoveredSites = getListsCalls();
+        verify(microsoftDocAuthorityClient, never()).listSubSitesUnderSubSite(anyString());
+
+        SharePointMediaConnector walk = getEnrichedConnector(SharePointMediaConnector.builder().withSiteCrawlMaxDepth(1), SITE_URL);
+        initConnectorResources(walk);
+        walk.streamMediaItems(siteScanParams());
+        int walkedSites = getListsCalls() - discoveredSites;
+
+        assertEquals(1, searchUrls.size());
+        assertTrue(searchUrls.get(0), searchUrls.get(0).contains("SiteId%3A" + SEARCH_SITE_ID));
+        // Search found all 7 webs, the deeper ones are skipped like the walk skips them
+        assertEquals(7, webUrls.size());
+        assertTrue(walkedSites < webUrls.size());
+        assertEquals(walkedSites, discoveredSites);
+        verify(microsoftDocAuthorityClient, atLeastOnce()).listSubSitesUnderSubSite(anyString());
+    }
+
+    @Test
+    public void test_streamMediaItems_siteDiscoveryFallsBackToTheWebsWalk() throws Exception {
+        MSSite site = buildSharepointSite("", 2);
+        when(microsoftDocAuthorityClient.getSharePointExtendedFolderDetails(anyString(), eq(""))).thenReturn(site.toSharePointExtendedFolder());
+        when(microsoftDocAuthorityClient.createApiUri(anyString(), anyString())).thenReturn(SITE_URL + "/_api/");
+        wireSiteMocks(site, "");
+
+        List<String> searchUrls = Lists.newArrayList();
+        sharePointMediaConnector.setSearchSiteDiscovery(true);
+        sharePointMediaConnector.setHttpTransport((method, url, headers, body) -> {
+            if (url.endsWith(SharePointSiteDiscovery.SITE_ID_RELATIVE_URL)) {
+                return new SharePointHttpResponse(200, null, siteIdResponse().getBytes(StandardCharsets.UTF_8));
+            }
+            searchUrls.add(url);
+            return new SharePointHttpResponse(503, null, null);
+        });
+        sharePointMediaConnector.streamMediaItems(siteScanParams());
+
+        assertFalse(searchUrls.isEmpty());
+        // The sub-sites are walked level by level instead, like without discovery
+        verify(microsoftDocAuthorityClient, times(3)).listSubSitesUnderSubSite(anyString());
+    }
+
+    private static final String SEARCH_SITE_ID = "5d9a3f2c-8b1e-4c7a-9f60-2e4b1d7c8a93";
+
+    private StreamMediaItemsParams siteScanParams() {
+        return StreamMediaItemsParams.create()
+                .setScanParams(getScanTaskParams(SITE_URL)).setFilePropertiesConsumer(item -> { })
+                .setFilePropsProgressTracker(filePropsProgressTracker)
+                .setScanActivePredicate(aLong -> true);
+    }
+
+    private int getListsCalls() throws ServiceException {
+        ArgumentCaptor<String> sites = ArgumentCaptor.forClass(String.class);
+        verify(service, atLeast(0)).getLists(sites.capture(), anyListOf(IQueryOption.class));
+        return sites.getAllValues().size();
+    }
+
+    private static void collectWebUrls(MSSite site, List<String> webUrls) {
+        webUrls.add(SITE_URL + site.getSiteRelativeUrl());
+        site.getSubSites().forEach(subSite -> collectWebUrls(subSite, webUrls));
+    }
+
+    private static String siteIdResponse() {
+        return "{\"d\":{\"__metadata\":{\"type\":\"SP.Site\"},\"Id\":\"" + SEARCH_SITE_ID + "\"}}";
+    }
+
+    private static String searchResponse(List<String> webUrls) {
+        StringBuilder rows = new StringBuilder();
+        for (String webUrl : webUrls) {
+            rows.append(rows.length() == 0 ? "" : ",")
+                    .append("{\"Cells\":{\"results\":[{\"Key\":\"Path\",\"Value\":\"").append(webUrl)
+                    .append("\",\"ValueType\":\"Edm.String\"}]}}");
+        }
+        return "{\"d\":{\"query\":{\"PrimaryQueryResult\":{\"RelevantResults\":{\"RowCount\":" + webUrls.size() +
+                ",\"TotalRows\":" + webUrls.size() + ",\"Table\":{\"Rows\":{\"results\":[" + rows + "]}}}}}}}";
+    }
+
     private List<com.middleware.share.List> getSiteDocLibJList(MSSite site) {
         return site.getDocLibs().stream()
                 .map(item -> (com.middleware.share.List) item)
@@ -417,4 +630,275 @@ public class SharepointConnectorTests extends MicrosoftTestBase {
 
         verify(microsoftDocAuthorityClient, times(3)).listSubSitesUnderSubSite(anyString());
     }
+
+    @Test
+    public void test_convertListItemsToFiles_onePageQuery() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        int pageSize = 50;
+        int missingId = 7;
+        List<ListItem> listItems = Lists.newArrayList();
+        SharePointListItemColumns columns = new SharePointListItemColumns();
+        for (int id = 1; id <= pageSize; id++) {
+            ListItem listItem = mock(ListItem.class);
+            when(listItem.getId()).thenReturn(id);
+            when(listItem.getFileSystemObjectType()).thenReturn(id % 10 == 0 ? FileSystemObjectType.FOLDER : FileSystemObjectType.FILE);
+            listItems.add(listItem);
+            if (id != missingId) {
+                SharePointListItem item = new SharePointListItem();
+                item.setIdAsInt(id);
+                item.setFileRef("/Shared Documents/file-" + id + ".docx");
+                item.setListItemHavingUniqueAcls(id % 3 == 0);
+                columns.add(item);
+            }
+        }
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenReturn(new SharePointListItemPage(columns));
+        when(microsoftDocAuthorityClient.convertFileRefToFileUrl(anyString())).thenAnswer(invocation -> SITE_URL + invocation.getArguments()[0]);
+        FieldValue fileRef = mock(FieldValue.class);
+        when(fileRef.getName()).thenReturn("FileRef");
+        when(fileRef.getValue()).thenReturn("/Shared Documents/file-" + missingId + ".docx");
+        when(service.getFieldValues(null, listId, missingId)).thenReturn(Collections.singletonList(fileRef));
+        when(service.getListItemProperty(null, listId, missingId, "HasUniqueRoleAssignments"))
+                .thenReturn("<d:HasUniqueRoleAssignments>true</d:HasUniqueRoleAssignments>");
+
+        List<ClaFilePropertiesDto> files = sharePointMediaConnector.convertListItemsToFiles(null, listId, listItems);
+
+        assertEquals(pageSize, files.size());
+        for (int i = 0; i < pageSize; i++) {
+            int id = i + 1;
+            ClaFilePropertiesDto file = files.get(i);
+            assertEquals(listId + "/" + id, file.getMediaItemId());
+            assertEquals(SITE_URL + "/Shared Documents/file-" + id + ".docx", file.getFileName());
+            assertEquals(id % 10 == 0, file.isFolder());
+            boolean uniqueAcls = id == missingId || id % 3 == 0;
+            assertEquals(uniqueAcls ? AclInheritanceType.NONE : AclInheritanceType.FOLDER, file.getAclInheritanceType());
+        }
+        // One query for the page, per item calls only for the item it did not return
+        verify(microsoftDocAuthorityClient, times(1)).getListItems(eq(listId), anyList());
+        verify(service, times(1)).getFieldValues(any(), anyString(), anyInt());
+        verify(service, times(1)).getListItemProperty(any(), anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_convertListItemsToFiles_splitsWideIdRanges() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        int[] ids = {1, 2, 3, 4999, 5001, 9000, 20000};
+        List<ListItem> listItems = Lists.newArrayList();
+        SharePointListItemColumns columns = new SharePointListItemColumns();
+        for (int id : ids) {
+            ListItem listItem = mock(ListItem.class);
+            when(listItem.getId()).thenReturn(id);
+            when(listItem.getFileSystemObjectType()).thenReturn(FileSystemObjectType.FILE);
+            listItems.add(listItem);
+            SharePointListItem item = new SharePointListItem();
+            item.setIdAsInt(id);
+            item.setFileRef("/Shared Documents/file-" + id + ".docx");
+            columns.add(item);
+        }
+        // The mocked query returns every item whatever the range - the connector keeps them by ID
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenReturn(new SharePointListItemPage(columns));
+        when(microsoftDocAuthorityClient.convertFileRefToFileUrl(anyString())).thenAnswer(invocation -> SITE_URL + invocation.getArguments()[0]);
+
+        List<ClaFilePropertiesDto> files = sharePointMediaConnector.convertListItemsToFiles(null, listId, listItems);
+
+        assertEquals(ids.length, files.size());
+        ArgumentCaptor<List> queries = ArgumentCaptor.forClass(List.class);
+        verify(microsoftDocAuthorityClient, times(3)).getListItems(eq(listId), queries.capture());
+        List<String> expected = Arrays.asList("(ID ge 1) and (ID le 4999)|$top=4999", "(ID ge 5001) and (ID le 9000)|$top=4000",
+                "(ID ge 20000) and (ID le 20000)|$top=1");
+        for (int i = 0; i < 3; i++) {
+            String query = URLDecoder.decode(
+                    SharePointParseUtils.createQueryOptionsUrl((List<IQueryOption>) queries.getAllValues().get(i)), "UTF-8");
+            String[] parts = expected.get(i).split("\\|");
+            assertTrue(query, query.contains(parts[0]));
+            assertTrue(query, query.contains(parts[1]));
+        }
+        verify(service, never()).getFieldValues(any(), anyString(), anyInt());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_listItemProjectionWithoutUniqueAclsIsRefused() {
+        sharePointMediaConnector.setListItemProjection(SharePointListItemProjection.of(
+                SharePointListItemProjection.Field.ID, SharePointListItemProjection.Field.FILE_REF));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void test_listItems_throttledPageIsRequestedAgainSmaller() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        sharePointMediaConnector.setPageSizer(SharePointAdaptivePageSizer.builder()
+                .withPageSizeRange(100, 5000).withInitialPageSize(400).withMaxThrottledRetries(2).build());
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList()))
+                .thenThrow(throttled()).thenThrow(throttled())
+                .thenReturn(new SharePointListItemPage(new SharePointListItemColumns()));
+
+        sharePointMediaConnector.listItems(listId, 1000, null, null);
+
+        ArgumentCaptor<List> queries = ArgumentCaptor.forClass(List.class);
+        verify(microsoftDocAuthorityClient, times(3)).getListItems(eq(listId), queries.capture());
+        List<String> tops = Arrays.asList("$top=400", "$top=200", "$top=100");
+        for (int i = 0; i < 3; i++) {
+            String query = URLDecoder.decode(
+                    SharePointParseUtils.createQueryOptionsUrl((List<IQueryOption>) queries.getAllValues().get(i)), "UTF-8");
+            assertTrue(query, query.contains(tops.get(i)));
+        }
+    }
+
+    @Test(expected = SharePointHttpStatusException.class)
+    public void test_listItems_failsWhenStillThrottledAfterTheRetries() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        sharePointMediaConnector.setPageSizer(SharePointAdaptivePageSizer.builder().withMaxThrottledRetries(2).build());
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenThrow(throttled());
+        try {
+            sharePointMediaConnector.listItems(listId, 1000, null, null);
+        } finally {
+            verify(microsoftDocAuthorityClient, times(3)).getListItems(eq(listId), anyList());
+        }
+    }
+
+    private static SharePointHttpStatusException throttled() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Retry-After", "0");
+        return new SharePointHttpStatusException("Failed to list items", new SharePointHttpResponse(429, headers, null));
+    }
+
+    @Test
+    public void test_convertListItemsToFiles_fallbackWhenQueryFails() throws Exception {
+        String listId = "f1f04276-593b-454b-8ee1-006f83af18d3";
+        List<ListItem> listItems = Lists.newArrayList();
+        for (int id = 1; id <= 3; id++) {
+            ListItem listItem = mock(ListItem.class);
+            when(listItem.getId()).thenReturn(id);
+            listItems.add(listItem);
+            FieldValue fileRef = mock(FieldValue.class);
+            when(fileRef.getName()).thenReturn("FileRef");
+            when(fileRef.getValue()).thenReturn("/Shared Documents/file-" + id + ".docx");
+            when(service.getFieldValues(null, listId, id)).thenReturn(Collections.singletonList(fileRef));
+            when(service.getListItemProperty(null, listId, id, "HasUniqueRoleAssignments"))
+                    .thenReturn("<d:HasUniqueRoleAssignments>false</d:HasUniqueRoleAssignments>");
+        }
+        when(microsoftDocAuthorityClient.getListItems(eq(listId), anyList())).thenThrow(new RuntimeException("expand not supported"));
+
+        List<ClaFilePropertiesDto> files = sharePointMediaConnector.convertListItemsToFiles(null, listId, listItems);
+
+        assertEquals(3, files.size());
+        assertFalse(files.get(0).isFolder());
+        assertEquals(AclInheritanceType.FOLDER, files.get(2).getAclInheritanceType());
+        verify(service, times(3)).getFieldValues(any(), anyString(), anyInt());
+        verify(service, times(3)).getListItemProperty(any(), anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    public void test_browseSubFoldersInPages() throws Exception {
+        List<SharePointExtendedFolder> folders = Lists.newArrayList();
+        for (String name : Arrays.asList("e", "B", "d", "a", "C")) {
+            SharePointExtendedFolder folder = new SharePointExtendedFolder();
+            folder.setName(name);
+            folder.setServerRelativeUrl("/Shared Documents/big/" + name);
+            folder.setFolderItemCount(1);
+            folders.add(folder);
+        }
+        when(microsoftDocAuthorityClient.listFolders(any(), anyString())).thenReturn(folders);
+
+        List<String> names = Lists.newArrayList();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SharePointBrowsePage page = sharePointMediaConnector.browseSubFolders(SITE_URL + "/Shared Documents/big", cursor, 2);
+            assertTrue(page.getFolders().size() <= 2);
+            page.getFolders().forEach(folder -> names.add(folder.getName()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(Arrays.asList("a", "B", "C", "d", "e"), names);
+        assertEquals(3, pages);
+        // the folder is listed and sorted once, the next pages are sliced from the kept listing
+        verify(microsoftDocAuthorityClient, times(1)).listFolders(any(), anyString());
+    }
+
+    @Test
+    public void test_browseSubFoldersInPagesThroughTransport() throws Exception {
+        when(microsoftDocAuthorityClient.createApiUri(anyString(), anyString())).thenReturn(SITE_URL + "/_api/");
+        List<String> names = Arrays.asList("a", "B", "C", "d", "e");
+        List<String> urls = Lists.newArrayList();
+        Pattern page = Pattern.compile("\\$skip=(\\d+)&\\$top=(\\d+)$");
+        sharePointMediaConnector.setHttpTransport((method, url, headers, body) -> {
+            assertEquals("GET", method);
+            urls.add(url);
+            Matcher matcher = page.matcher(url);
+            assertTrue(url, matcher.find());
+            int skip = Integer.parseInt(matcher.group(1));
+            int top = Integer.parseInt(matcher.group(2));
+            return new SharePointHttpResponse(200, null, foldersFeed(names.subList(Math.min(skip, names.size()),
+                    Math.min(names.size(), skip + top))).getBytes(StandardCharsets.UTF_8));
+        });
+
+        List<String> browsed = Lists.newArrayList();
+        List<String> cursors = Lists.newArrayList();
+        String cursor = null;
+        do {
+            SharePointBrowsePage browsePage = sharePointMediaConnector.browseSubFolders(SITE_URL + "/Shared Documents/big", cursor, 2);
+            browsePage.getFolders().forEach(folder -> browsed.add(folder.getName()));
+            cursor = browsePage.getNextCursor();
+            cursors.add(cursor);
+        } while (cursor != null);
+
+        assertEquals(names, browsed);
+        assertEquals(Arrays.asList("2", "4", null), cursors);
+        assertEquals(3, urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            assertTrue(urls.get(i), urls.get(i).startsWith(SITE_URL + "/_api/Web/GetFolderByServerRelativeUrl('"));
+            assertTrue(urls.get(i), urls.get(i).endsWith("')/Folders?$expand=Properties&$orderby=Name&$skip=" + (i * 2) + "&$top=2"));
+        }
+        verify(microsoftDocAuthorityClient, never()).listFolders(any(), anyString());
+    }
+
+    @Test
+    public void test_streamFoldersAndFilesStopPagingWhenClosed() throws Exception {
+        when(microsoftDocAuthorityClient.createApiUri(anyString(), anyString())).thenReturn(SITE_URL + "/_api/");
+        List<String> names = Arrays.asList("a", "b", "c", "d", "e", "f", "g");
+        List<String> urls = Lists.newCopyOnWriteArrayList();
+        Pattern page = Pattern.compile("\\$skip=(\\d+)&\\$top=(\\d+)$");
+        sharePointMediaConnector.setHttpTransport((method, url, headers, body) -> {
+            urls.add(url);
+            Matcher matcher = page.matcher(url);
+            assertTrue(url, matcher.find());
+            int skip = Integer.parseInt(matcher.group(1));
+            int top = Integer.parseInt(matcher.group(2));
+            return new SharePointHttpResponse(200, null, foldersFeed(names.subList(Math.min(skip, names.size()),
+                    Math.min(names.size(), skip + top))).getBytes(StandardCharsets.UTF_8));
+        });
+
+        try (Stream<ServerResourceDto> files = sharePointMediaConnector.streamFilesAsServerResources(null, "/Shared Documents/big", 2)) {
+            Iterator<ServerResourceDto> iterator = files.iterator();
+            ServerResourceDto first = iterator.next();
+            assertEquals("a", first.getName());
+            assertEquals("b", iterator.next().getName());
+            files.close();
+            assertFalse(iterator.hasNext());
+        }
+        assertEquals(1, urls.size());
+        assertTrue(urls.get(0), urls.get(0).contains("')/Files?$select=Name,ServerRelativeUrl&$orderby=Name&$skip=0&$top=2"));
+
+        urls.clear();
+        try (Stream<ServerResourceDto> folders = sharePointMediaConnector.streamFolders(null, "/Shared Documents/big", 2)) {
+            assertEquals(Arrays.asList("a", "b", "c"), folders.limit(3).map(ServerResourceDto::getName).collect(Collectors.toList()));
+        }
+        assertEquals(2, urls.size());
+        assertTrue(urls.get(1), urls.get(1).contains("')/Folders?$select=Name,ServerRelativeUrl,ItemCount&$orderby=Name&$skip=2&$top=2"));
+    }
+
+    private static String foldersFeed(List<String> names) {
+        StringBuilder feed = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>" +
+                "<feed xmlns=\"http://www.w3.org/2005/Atom\" xmlns:d=\"http://schemas.microsoft.com/ado/2007/08/dataservices\" " +
+                "xmlns:m=\"http://schemas.microsoft.com/ado/2007/08/dataservices/metadata\">");
+        for (String name : names) {
+            feed.append("<entry><content type=\"application/xml\"><m:properties>")
+                    .append("<d:Name>").append(name).append("</d:Name>")
+                    .append("<d:ServerRelativeUrl>/Shared Documents/big/").append(name).append("</d:ServerRelativeUrl>")
+                    .append("</m:properties></content></entry>");
+        }
+        return feed.append("</feed>").toString();
+    }
 }